@@ -1,11 +1,10 @@
 package com.oursocialnetworks;
 
-import com.oursocialnetworks.config.SupabaseConfig;
+import com.oursocialnetworks.component.HttpClientPools;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
@@ -18,12 +17,9 @@ public class OurSocialNetworksApplication {
     }
 
     @Bean
-    public RestTemplate restTemplate() {
-        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory();
-        factory.setConnectTimeout(15000);  // 15 seconds connect timeout
-        factory.setConnectionRequestTimeout(15000);  // 15 seconds connection request timeout
-
-        return new RestTemplate(factory);
+    public RestTemplate restTemplate(HttpClientPools httpClientPools) {
+        // Pool chung (keep-alive, timeout) cho các API ngoài Supabase; Supabase dùng pool riêng theo domain
+        return httpClientPools.shared();
     }
 
 }
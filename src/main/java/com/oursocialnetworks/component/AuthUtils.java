@@ -1,5 +1,7 @@
 package com.oursocialnetworks.component;
 
+import com.oursocialnetworks.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -12,6 +14,7 @@ import java.util.UUID;
 /**
  * Utility class để xử lý authentication chung cho các controller
  */
+@Slf4j
 @Component
 public class AuthUtils {
 
@@ -25,10 +28,10 @@ public class AuthUtils {
             try {
                 return UUID.fromString(principal);
             } catch (IllegalArgumentException e) {
-                System.err.println("Cannot parse UUID from principal: " + principal);
+                log.warn("Cannot parse UUID from principal: {}", principal);
             }
         }
-        throw new RuntimeException("Không thể xác định user hiện tại!");
+        throw new BusinessException("Không thể xác định user hiện tại!");
     }
 
     /**
@@ -0,0 +1,54 @@
+package com.oursocialnetworks.component;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Span cho mỗi controller method (vd. "AuthController.loginBasic"), con của span HTTP server.
+ * Span được đặt làm span hiện tại trong lúc controller chạy, nên các lần gọi Supabase bên trong là con của nó.
+ */
+@Component
+public class ControllerSpanInterceptor implements HandlerInterceptor {
+
+    private static final String SPAN = ControllerSpanInterceptor.class.getName() + ".span";
+    private static final String SCOPE = ControllerSpanInterceptor.class.getName() + ".scope";
+
+    private final Tracer tracer;
+
+    public ControllerSpanInterceptor(ObjectProvider<Tracer> tracer) {
+        this.tracer = tracer.getIfAvailable(() -> Tracer.NOOP);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        Span span = tracer.nextSpan()
+                .name(method.getBeanType().getSimpleName() + "." + method.getMethod().getName())
+                .start();
+        request.setAttribute(SPAN, span);
+        request.setAttribute(SCOPE, tracer.withSpan(span));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Span span = (Span) request.getAttribute(SPAN);
+        if (span == null) {
+            return;
+        }
+        ((Tracer.SpanInScope) request.getAttribute(SCOPE)).close();
+        span.tag("status", String.valueOf(response.getStatus()));
+        if (ex != null) {
+            span.error(ex);
+        }
+        span.end();
+    }
+}
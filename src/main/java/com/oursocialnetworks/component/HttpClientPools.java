@@ -0,0 +1,275 @@
+package com.oursocialnetworks.component;
+
+import com.oursocialnetworks.config.LogSampling;
+import com.oursocialnetworks.config.SupabaseConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.TraceContext;
+import io.micrometer.tracing.Tracer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.message.MessageSupport;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quản lý HTTP connection pool (HttpClient 5) cho từng Supabase domain.
+ * Mỗi domain (user, role, friends) có pool + giới hạn riêng, để domain chậm không chiếm hết connection của domain khác.
+ * Pool "shared" dùng cho các API bên ngoài khác (Resend, ...).
+ *
+ * Metrics: supabase.requests (timer theo domain / table / method / status / outcome, đo tới khi nhận response header)
+ * và httpcomponents.httpclient.pool.* (leased / pending / available) cho từng pool.
+ * Tracing: mỗi request ra ngoài là 1 span CLIENT, con của span hiện tại (controller / email worker).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HttpClientPools {
+
+    public static final String SHARED_POOL = "shared";
+
+    private final SupabaseConfig config;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<Tracer> tracerProvider;
+    private Tracer tracer;
+
+    private final Map<String, Pool> pools = new LinkedHashMap<>();
+
+    // Dùng chung 1 SSLContext để JSSE cache và tái sử dụng TLS session giữa các connection
+    private final SSLContext sslContext = SSLContexts.createSystemDefault();
+
+    private static class Pool {
+        final PoolingHttpClientConnectionManager manager;
+        final CloseableHttpClient client;
+        final RestTemplate restTemplate;
+
+        Pool(PoolingHttpClientConnectionManager manager, CloseableHttpClient client, RestTemplate restTemplate) {
+            this.manager = manager;
+            this.client = client;
+            this.restTemplate = restTemplate;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        tracer = tracerProvider.getIfAvailable(() -> Tracer.NOOP);
+        config.getDomains().forEach((name, domain) -> pools.put(name, createPool(name, domain.getPool(), true)));
+        pools.put(SHARED_POOL, createPool(SHARED_POOL, new SupabaseConfig.PoolConfig(), false));
+    }
+
+    /**
+     * RestTemplate dùng pool riêng của domain
+     */
+    public RestTemplate forDomain(String domain) {
+        Pool pool = pools.get(domain);
+        if (pool == null) {
+            throw new IllegalArgumentException("Không có HTTP pool cho domain: " + domain);
+        }
+        return pool.restTemplate;
+    }
+
+    /**
+     * RestTemplate dùng pool chung (cho API ngoài Supabase)
+     */
+    public RestTemplate shared() {
+        return pools.get(SHARED_POOL).restTemplate;
+    }
+
+    /**
+     * Thống kê pool: leased / pending / available / max cho từng domain
+     */
+    public Map<String, Map<String, Integer>> stats() {
+        Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
+        pools.forEach((name, pool) -> {
+            PoolStats total = pool.manager.getTotalStats();
+            Map<String, Integer> s = new LinkedHashMap<>();
+            s.put("leased", total.getLeased());
+            s.put("pending", total.getPending());
+            s.put("available", total.getAvailable());
+            s.put("max", total.getMax());
+            result.put(name, s);
+        });
+        return result;
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Pool pool : pools.values()) {
+            try {
+                pool.client.close();
+            } catch (IOException ignored) {}
+        }
+        pools.clear();
+    }
+
+    private Pool createPool(String name, SupabaseConfig.PoolConfig cfg, boolean supabase) {
+        PoolingHttpClientConnectionManager manager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setSSLSocketFactory(new SSLConnectionSocketFactory(sslContext))
+                // Mỗi domain chỉ có 1 host nên max per route = max total
+                .setMaxConnTotal(cfg.getMaxConnections())
+                .setMaxConnPerRoute(cfg.getMaxConnections())
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(cfg.getConnectTimeoutMs()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(cfg.getReadTimeoutMs()))
+                        .setTimeToLive(TimeValue.ofSeconds(cfg.getTimeToLiveSeconds()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(cfg.getConnectionRequestTimeoutMs()))
+                .setResponseTimeout(Timeout.ofMilliseconds(cfg.getReadTimeoutMs()))
+                .build();
+
+        TimeValue defaultKeepAlive = TimeValue.ofSeconds(cfg.getKeepAliveSeconds());
+
+        CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(manager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    // Ưu tiên header Keep-Alive: timeout=N của server, fallback về cấu hình
+                    Iterator<HeaderElement> it = MessageSupport.iterate(response, "Keep-Alive");
+                    while (it.hasNext()) {
+                        HeaderElement he = it.next();
+                        if ("timeout".equalsIgnoreCase(he.getName()) && he.getValue() != null) {
+                            try {
+                                return TimeValue.ofSeconds(Long.parseLong(he.getValue()));
+                            } catch (NumberFormatException ignored) {}
+                        }
+                    }
+                    return defaultKeepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(cfg.getIdleEvictSeconds(), TimeUnit.SECONDS))
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(manager, name).bindTo(meterRegistry);
+
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(client));
+        restTemplate.getInterceptors().add(tracing(name, supabase));
+        if (supabase) {
+            restTemplate.getInterceptors().add(timing(name));
+        }
+        return new Pool(manager, client, restTemplate);
+    }
+
+    /**
+     * Đo mỗi lần gọi PostgREST, table lấy từ path /rest/v1/{table}. Lỗi IO (timeout, hết connection) → status IO_ERROR
+     */
+    private ClientHttpRequestInterceptor timing(String domain) {
+        return (request, body, execution) -> {
+            long start = System.nanoTime();
+            String status = "IO_ERROR";
+            String outcome = "ERROR";
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                int code = response.getStatusCode().value();
+                status = String.valueOf(code);
+                outcome = code >= 500 ? "SERVER_ERROR" : code >= 400 ? "CLIENT_ERROR" : "SUCCESS";
+                return response;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                String table = table(request.getURI().getPath());
+                Timer.builder("supabase.requests")
+                        .description("Latency of PostgREST calls per Supabase domain")
+                        .tag("domain", domain)
+                        .tag("table", table)
+                        .tag("method", request.getMethod().name())
+                        .tag("status", status)
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(nanos, TimeUnit.NANOSECONDS);
+                logExchange(domain, table, request.getMethod().name(), status, outcome, nanos / 1_000_000);
+            }
+        };
+    }
+
+    /**
+     * Span CLIENT cho mỗi request: "supabase GET Users" (pool Supabase) hoặc "POST api.resend.com" (pool shared)
+     */
+    private ClientHttpRequestInterceptor tracing(String pool, boolean supabase) {
+        return (request, body, execution) -> {
+            String method = request.getMethod().name();
+            String table = supabase ? table(request.getURI().getPath()) : null;
+            Span.Builder builder = tracer.spanBuilder()
+                    .name(supabase ? "supabase " + method + " " + table : method + " " + request.getURI().getHost())
+                    .kind(Span.Kind.CLIENT)
+                    .tag("pool", pool)
+                    .tag("method", method);
+            TraceContext parent = tracer.currentTraceContext().context();
+            if (parent != null) {
+                builder.setParent(parent);
+            }
+            if (table != null) {
+                builder.tag("table", table);
+            }
+            Span span = builder.start();
+            try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+                ClientHttpResponse response = execution.execute(request, body);
+                span.tag("status", String.valueOf(response.getStatusCode().value()));
+                return response;
+            } catch (IOException | RuntimeException e) {
+                span.tag("status", "IO_ERROR").error(e);
+                throw e;
+            } finally {
+                span.end();
+            }
+        };
+    }
+
+    private static void logExchange(String domain, String table, String method, String status, String outcome, long ms) {
+        if ("ERROR".equals(outcome) || "SERVER_ERROR".equals(outcome)) {
+            log.atWarn()
+                    .addKeyValue("domain", domain)
+                    .addKeyValue("table", table)
+                    .addKeyValue("method", method)
+                    .addKeyValue("status", status)
+                    .addKeyValue("latencyMs", ms)
+                    .log("Supabase request failed");
+        } else {
+            log.debug(LogSampling.SAMPLED, "Supabase {} {}/{} → {} in {}ms", method, domain, table, status, ms);
+        }
+    }
+
+    private static String table(String path) {
+        int i = path != null ? path.indexOf("/rest/v1/") : -1;
+        if (i < 0) {
+            return "none";
+        }
+        String table = path.substring(i + "/rest/v1/".length());
+        int slash = table.indexOf('/');
+        return slash >= 0 ? table.substring(0, slash) : table;
+    }
+}
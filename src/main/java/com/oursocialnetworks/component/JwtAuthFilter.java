@@ -2,20 +2,24 @@ package com.oursocialnetworks.component;
 
 import com.oursocialnetworks.service.JwtService;
 import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
@@ -23,6 +27,36 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Không có tracing (test, management.tracing.enabled=false) → span no-op
+    @Autowired(required = false)
+    private Tracer tracer = Tracer.NOOP;
+
+    // auth.jwt.verify theo kết quả: cached (VerifiedTokenCache hit), valid, invalid
+    private Timer cachedTimer;
+    private Timer validTimer;
+    private Timer invalidTimer;
+
+    @PostConstruct
+    void registerMeters() {
+        cachedTimer = verifyTimer("cached");
+        validTimer = verifyTimer("valid");
+        invalidTimer = verifyTimer("invalid");
+    }
+
+    private Timer verifyTimer(String result) {
+        return Timer.builder("auth.jwt.verify")
+                .description("Bearer token verification in JwtAuthFilter")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
@@ -30,26 +64,31 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         String auth = request.getHeader("Authorization");
 
         if (auth != null && auth.startsWith("Bearer ")) {
+            long start = System.nanoTime();
+            Timer timer = invalidTimer;
+            Span span = tracer.nextSpan().name("jwt-auth").start();
             try {
                 String token = auth.substring(7);
-                Claims claims = jwtService.verify(token);
-
-                // Extract role from token
-                String role = claims.get("role", String.class);
-                List<SimpleGrantedAuthority> authorities = new ArrayList<>();
-                
-                if (role != null) {
-                    // Add ROLE_ prefix for Spring Security
-                    authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
-                }
 
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(
-                                claims.getSubject(), null, authorities
-                        );
+                // Token đã verify trước đó → dùng lại Authentication, bỏ qua HMAC + parse
+                Authentication authentication = verifiedTokenCache.get(token);
+                if (authentication == null) {
+                    Claims claims = jwtService.verify(token);
+                    // Extract role from token
+                    authentication = new JwtAuthentication(claims.getSubject(), claims.get("role", String.class));
+                    verifiedTokenCache.put(token, authentication, claims.getExpiration());
+                    timer = validTimer;
+                } else {
+                    timer = cachedTimer;
+                }
 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
-            } catch (Exception ignored) {}
+                MDC.put(RequestIdFilter.USER_ID, authentication.getName());
+            } catch (Exception ignored) {
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                span.tag("result", timer == cachedTimer ? "cached" : timer == validTimer ? "valid" : "invalid").end();
+            }
         }
 
         chain.doFilter(request, response);
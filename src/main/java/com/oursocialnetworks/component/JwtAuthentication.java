@@ -0,0 +1,66 @@
+package com.oursocialnetworks.component;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Authentication bất biến dựng từ JWT đã verify (principal = subject = user id).
+ * Dùng chung giữa các request cùng token nên không cho sửa trạng thái.
+ */
+public final class JwtAuthentication implements Authentication {
+
+    private final String subject;
+    private final List<GrantedAuthority> authorities;
+
+    public JwtAuthentication(String subject, String role) {
+        this.subject = subject;
+        // Add ROLE_ prefix for Spring Security
+        this.authorities = role != null
+                ? List.of(new SimpleGrantedAuthority("ROLE_" + role))
+                : List.of();
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getDetails() {
+        return null;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return subject;
+    }
+
+    @Override
+    public boolean isAuthenticated() {
+        return true;
+    }
+
+    @Override
+    public void setAuthenticated(boolean isAuthenticated) {
+        throw new IllegalArgumentException("JwtAuthentication không cho phép đổi trạng thái authenticated");
+    }
+
+    @Override
+    public String getName() {
+        return subject;
+    }
+
+    @Override
+    public String toString() {
+        return "JwtAuthentication[subject=" + subject + ", authorities=" + authorities + "]";
+    }
+}
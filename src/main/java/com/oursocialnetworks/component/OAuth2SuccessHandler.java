@@ -8,6 +8,8 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import jakarta.annotation.PostConstruct;
@@ -22,6 +24,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.HashMap;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
@@ -35,9 +38,7 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
 
     @PostConstruct
     public void init() {
-        System.out.println("========== OAuth2SuccessHandler INIT ==========");
-        System.out.println("Frontend URL configured: " + frontendUrl);
-        System.out.println("===============================================");
+        log.info("OAuth2 success handler redirects to frontend {}", frontendUrl);
     }
 
     @Override
@@ -47,16 +48,9 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
             Authentication authentication
     ) throws IOException, ServletException {
 
-        System.out.println("========== OAuth2SuccessHandler START ==========");
-        System.out.println("Request URL: " + request.getRequestURL());
-        System.out.println("Request URI: " + request.getRequestURI());
-        System.out.println("Request Method: " + request.getMethod());
-        System.out.println("Request Headers: ");
-        request.getHeaderNames().asIterator().forEachRemaining(headerName -> 
-            System.out.println("  " + headerName + ": " + request.getHeader(headerName)));
-        System.out.println("Authentication: " + authentication.getClass().getSimpleName());
-        System.out.println("Response committed at start: " + response.isCommitted());
-        
+        log.debug("OAuth2 success for {} {} ({})", request.getMethod(), request.getRequestURI(),
+                authentication.getClass().getSimpleName());
+
         OAuth2User oAuth2User = (OAuth2User) authentication.getPrincipal();
 
         // Lấy email từ OAuth2
@@ -65,23 +59,23 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
         String name = oAuth2User.getAttribute("name");
         Boolean emailVerified = oAuth2User.getAttribute("email_verified");
 
-        System.out.println("OAuth2 User Info: email=" + email + ", sub=" + sub + ", name=" + name);
+        log.debug("OAuth2 user sub={} name={}", sub, name);
 
         if (email == null) {
-            System.err.println("ERROR: Email is null from OAuth2");
+            log.warn("Google did not return an email for sub {}", sub);
             redirectToFrontendWithError(response, "Khong the lay email tu Google");
             return;
         }
 
         try {
             // Tìm hoặc tạo user trong database
-            System.out.println("Finding or creating user for email: " + email);
             SupabaseUserService.UserCreationResult result = userService.findOrCreateUser(email);
             User user = result.getUser();
             boolean isNewUser = result.isNewUser();
             String tempPassword = result.getTempPassword();
 
-            System.out.println("User result: isNewUser=" + isNewUser + ", userId=" + (user != null ? user.getId() : "null") + ", status=" + (user != null ? user.getStatus() : "null"));
+            MDC.put(RequestIdFilter.USER_ID, String.valueOf(user.getId()));
+            log.info("Google login: newUser={} status={}", isNewUser, user.getStatus());
 
             // Update OAuth2 info và set status = 1 (active) cho Google login
             updateOAuth2Info(user, sub, emailVerified);
@@ -90,17 +84,8 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
             Integer userStatus = user.getStatus();
             
             // Kiểm tra xem có cần đổi mật khẩu không
-            System.out.println("Check: isNewUser=" + isNewUser + ", userStatus=" + userStatus + ", loginMethod=GOOGLE_OAUTH2");
-            
             if (isNewUser || (userStatus != null && userStatus == 2)) { // User mới hoặc cần đổi mật khẩu
                 // USER MỚI HOẶC USER CẦN ĐỔI MẬT KHẨU
-                System.out.println("========== EMAIL SENDING LOGIC ==========");
-                System.out.println("NEW USER OR STATUS=2 USER - Redirect first, then send email in background");
-                System.out.println("User status: " + userStatus + ", isNewUser: " + isNewUser);
-                System.out.println("tempPassword: " + (tempPassword != null ? "EXISTS" : "NULL"));
-                System.out.println("user.getPasswordLogin(): " + (user.getPasswordLogin() != null ? "EXISTS" : "NULL"));
-                System.out.println("==========================================");
-                
                 // Update thông tin OAuth2 nhưng giữ status = 2 (cần đổi mật khẩu) cho user mới
                 // Chỉ update OAuth2 info, không thay đổi status
                 updateOAuth2Info(user, sub, emailVerified);
@@ -116,54 +101,38 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
                         + "&isNewUser=" + isNewUser
                         + "&redirectUrl=" + URLEncoder.encode(changePasswordUrl, StandardCharsets.UTF_8);
 
-                System.out.println("Redirecting USER to processing page FIRST: " + processingUrl);
-                
                 if (!response.isCommitted()) {
                     response.sendRedirect(processingUrl);
                     response.flushBuffer();
-                    System.out.println("✅ Redirect sent successfully!");
-                    
+                    log.debug("Redirected to processing page, password change required");
+
                     // GỬI EMAIL SAU KHI ĐÃ REDIRECT (trong background thread)
                     // Gửi email cho cả user mới và user cũ có status = 2
                     if (tempPassword != null || (userStatus != null && userStatus == 2)) {
                         final String finalEmail = email;
                         final String finalUsername = user.getUsername();
-                        final String finalTempPassword = tempPassword != null ? tempPassword : user.getPasswordLogin();
+                        // DB chỉ lưu hash → user cũ status = 2 được cấp mật khẩu tạm mới để gửi email
+                        final String finalTempPassword = tempPassword != null ? tempPassword : userService.issueTempPassword(user.getId());
                         
-                        new Thread(() -> {
-                            try {
-                                System.out.println("📧 [BACKGROUND] Sending temp password email after redirect...");
-                                System.out.println("📧 [BACKGROUND] isNewUser: " + isNewUser + ", userStatus: " + userStatus);
-                                System.out.println("📧 [BACKGROUND] tempPassword: " + (finalTempPassword != null ? "***" : "null"));
-                                
-                                boolean sent = emailService.sendTempPasswordEmail(finalEmail, finalUsername, finalTempPassword);
-                                if (!sent) {
-                                    // Log password nếu email fail (để admin hỗ trợ)
-                                    System.out.println("=== EMAIL FAILED - TEMP PASSWORD FOR ADMIN SUPPORT ===");
-                                    System.out.println("Email: " + finalEmail);
-                                    System.out.println("Temp Password: " + finalTempPassword);
-                                    System.out.println("isNewUser: " + isNewUser);
-                                    System.out.println("userStatus: " + userStatus);
-                                    System.out.println("======================================================");
-                                }
-                            } catch (Exception emailEx) {
-                                System.err.println("📧 [BACKGROUND] Failed to send email: " + emailEx.getMessage());
-                                emailEx.printStackTrace();
-                            }
-                        }).start();
+                        emailService.sendTempPasswordEmailAsync(finalEmail, finalUsername, finalTempPassword)
+                                .whenComplete((sent, emailEx) -> {
+                                    if (emailEx != null) {
+                                        log.error("Temp password email to {} failed", finalEmail, emailEx);
+                                    } else if (!sent) {
+                                        // Không ghi mật khẩu tạm ra log; user dùng quên mật khẩu để lấy mật khẩu mới
+                                        log.error("Temp password email to {} was not delivered (newUser={}, status={})",
+                                                finalEmail, isNewUser, userStatus);
+                                    }
+                                });
                     } else {
-                        System.out.println("📧 [SKIP] No email needed - tempPassword: " + (tempPassword != null) + ", userStatus: " + userStatus);
+                        log.debug("No temp password email needed (status {})", userStatus);
                     }
                 } else {
-                    System.err.println("ERROR: Response already committed, cannot redirect!");
+                    log.error("Response already committed, cannot redirect to processing page");
                 }
                 
             } else {
                 // USER CŨ ĐÃ ACTIVE - Đăng nhập thành công, không cần đổi mật khẩu
-                System.out.println("EXISTING ACTIVE USER - Generating tokens and redirecting to frontend");
-                System.out.println("Frontend URL from config: " + frontendUrl);
-                System.out.println("User status: " + user.getStatus() + ", isNewUser: " + isNewUser);
-                
                 // Update OAuth2 info và set status = 1 (active) 
                 user.setStatus(1); // Đảm bảo status = 1
                 updateOAuth2Info(user, sub, emailVerified);
@@ -171,9 +140,8 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
                 // Update user status
                 try {
                     userService.updateUserById(user.getId(), user, User[].class);
-                    System.out.println("✅ User status updated to ACTIVE");
                 } catch (Exception e) {
-                    System.err.println("⚠️ Failed to update user status: " + e.getMessage());
+                    log.warn("Failed to set user status to active: {}", e.getMessage());
                 }
                 
                 // Tạo JWT tokens
@@ -191,21 +159,14 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
                         + "&userStatus=" + user.getStatus()
                         + "&isNewUser=false";
 
-                System.out.println("Redirecting to: " + targetUrl);
                 response.sendRedirect(redirectUrl);
                 response.flushBuffer();
-                System.out.println("✅ Existing user login redirect sent successfully!");
+                log.debug("Redirected to {}", targetUrl);
             }
 
-            System.out.println("========== OAuth2SuccessHandler END ==========");
-
         } catch (Exception e) {
-            System.err.println("========== OAuth2SuccessHandler ERROR ==========");
-            System.err.println("Error type: " + e.getClass().getSimpleName());
-            System.err.println("Error message: " + e.getMessage());
-            e.printStackTrace();
-            System.err.println("================================================");
-            
+            log.error("Google login failed", e);
+
             // Redirect với thông báo lỗi chi tiết hơn
             String errorMsg = "Lỗi xử lý đăng nhập: " + e.getMessage();
             if (e.getMessage() != null && e.getMessage().contains("role")) {
@@ -233,12 +194,11 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
 
             if (needUpdate) {
                 // Update user info in database
-                System.out.println("Updating OAuth2 info for user: " + user.getEmail());
                 userService.updateUserById(user.getId(), user, User[].class);
-                System.out.println("✅ OAuth2 info updated successfully");
+                log.debug("OAuth2 info updated for user {}", user.getId());
             }
         } catch (Exception e) {
-            System.err.println("Failed to update OAuth2 info: " + e.getMessage());
+            log.warn("Failed to update OAuth2 info for user {}: {}", user.getId(), e.getMessage());
         }
     }
 
@@ -249,10 +209,8 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
                 + "?status=error"
                 + "&message=" + URLEncoder.encode(errorMessage, StandardCharsets.UTF_8);
         
-        System.err.println("Redirecting with ERROR to: " + errorUrl);
-        System.err.println("Response committed before error redirect: " + response.isCommitted());
+        log.debug("Redirecting with error (committed={}): {}", response.isCommitted(), errorMessage);
         response.sendRedirect(errorUrl);
         response.flushBuffer(); // Ensure redirect is sent immediately
-        System.err.println("Error redirect sent and flushed!");
     }
 }
\ No newline at end of file
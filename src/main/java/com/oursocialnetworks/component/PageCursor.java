@@ -0,0 +1,64 @@
+package com.oursocialnetworks.component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Cursor phân trang keyset (theo cột id, order=id.desc).
+ * Client chỉ nhận chuỗi opaque nextCursor và gửi lại nguyên văn ở request trang sau.
+ */
+public final class PageCursor {
+
+    private static final String PREFIX = "id:";
+
+    private PageCursor() {}
+
+    public static String encode(Object lastId) {
+        if (lastId == null) {
+            return null;
+        }
+        String raw = PREFIX + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decodeLong(String cursor) {
+        String raw = decode(cursor);
+        if (raw == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(raw);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("cursor không hợp lệ!");
+        }
+    }
+
+    public static UUID decodeUuid(String cursor) {
+        String raw = decode(cursor);
+        if (raw == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(raw);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("cursor không hợp lệ!");
+        }
+    }
+
+    private static String decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("cursor không hợp lệ!");
+        }
+        if (!raw.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("cursor không hợp lệ!");
+        }
+        return raw.substring(PREFIX.length());
+    }
+}
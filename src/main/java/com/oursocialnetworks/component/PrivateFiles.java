@@ -0,0 +1,39 @@
+package com.oursocialnetworks.component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * File app ghi ra đĩa có thể chứa dữ liệu cá nhân (mail spill, trace): chỉ chủ process đọc được,
+ * không phụ thuộc umask của máy.
+ */
+public final class PrivateFiles {
+
+    private PrivateFiles() {}
+
+    /**
+     * Tạo file rỗng quyền rw------- nếu chưa có; thư mục cha tạo mới thì quyền rwx------
+     */
+    public static void createIfMissing(Path file) throws IOException {
+        if (Files.exists(file)) {
+            return;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null && Files.notExists(parent)) {
+            Files.createDirectories(parent);
+            restrict(parent, "rwx------");
+        }
+        Files.createFile(file);
+        restrict(file, "rw-------");
+    }
+
+    private static void restrict(Path path, String permissions) throws IOException {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(permissions));
+        } catch (UnsupportedOperationException ignored) {
+            // Windows
+        }
+    }
+}
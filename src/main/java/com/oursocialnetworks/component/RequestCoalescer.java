@@ -0,0 +1,152 @@
+package com.oursocialnetworks.component;
+
+import com.oursocialnetworks.config.LogSampling;
+import com.oursocialnetworks.config.SupabaseConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight cho GET tới PostgREST: các request giống hệt nhau (cùng domain, URL đã chuẩn hóa, kiểu response)
+ * đến trong lúc 1 request đang chạy sẽ chờ và dùng chung response + body đã deserialize của request đó.
+ * Không có cache sau khi request xong: request đến sau vẫn gọi Supabase.
+ *
+ * Body được dùng chung giữa các caller nên phải coi là chỉ đọc: UserCache và hàm nào trả entity cho caller sửa
+ * (findOrCreateUser, getActiveUserByUsername) đều trả bản copy.
+ * Bật / tắt theo domain: supabase.domains.<name>.coalescing.enabled.
+ * Metrics: supabase.coalescing.requests{domain, result=leader|joined|bypass}, supabase.coalescing.in_flight.
+ */
+@Slf4j
+@Component
+public class RequestCoalescer implements MeterBinder {
+
+    /**
+     * Số GET đang chia sẻ và counter đã đăng ký sẵn của 1 domain (max-in-flight là giới hạn theo domain)
+     */
+    private static final class DomainState {
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile Counter leader, joined, bypass;
+    }
+
+    private final SupabaseConfig config;
+    private final Map<String, CompletableFuture<ResponseEntity<?>>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, DomainState> domains = new ConcurrentHashMap<>();
+    private MeterRegistry registry;
+
+    public RequestCoalescer(SupabaseConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Chạy call, hoặc chờ kết quả của call giống hệt đang chạy. Lỗi của request gốc được ném lại cho mọi caller đang chờ.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> get(String domain, String url, Class<T> responseType, Supplier<ResponseEntity<T>> call) {
+        SupabaseConfig.DomainConfig d = config.getDomains().get(domain);
+        SupabaseConfig.CoalescingConfig cfg = d != null ? d.getCoalescing() : null;
+        DomainState state = state(domain);
+        if (cfg == null || !cfg.isEnabled() || state.inFlight.get() >= cfg.getMaxInFlight()) {
+            increment(state.bypass);
+            return call.get();
+        }
+
+        String key = domain + ' ' + responseType.getName() + ' ' + normalize(url);
+        CompletableFuture<ResponseEntity<?>> mine = new CompletableFuture<>();
+        CompletableFuture<ResponseEntity<?>> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            increment(state.joined);
+            log.debug(LogSampling.SAMPLED, "Coalesced GET {} on {}", url, domain);
+            try {
+                return (ResponseEntity<T>) running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        increment(state.leader);
+        state.inFlight.incrementAndGet();
+        try {
+            ResponseEntity<T> response = call.get();
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+            state.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Query string sắp theo thứ tự param: URL dựng từ HashMap / nối chuỗi cho cùng 1 truy vấn luôn ra cùng key
+     */
+    static String normalize(String url) {
+        int q = url.indexOf('?');
+        if (q < 0 || url.indexOf('&', q) < 0) {
+            return url;
+        }
+        String[] params = url.substring(q + 1).split("&");
+        Arrays.sort(params);
+        return url.substring(0, q + 1) + String.join("&", params);
+    }
+
+    private DomainState state(String domain) {
+        DomainState state = domains.get(domain);
+        if (state != null) {
+            return state;
+        }
+        return domains.computeIfAbsent(domain, name -> {
+            DomainState fresh = new DomainState();
+            if (registry != null) {
+                register(fresh, name, registry);
+            }
+            return fresh;
+        });
+    }
+
+    private static void register(DomainState state, String domain, MeterRegistry registry) {
+        state.leader = requestCounter(domain, "leader", registry);
+        state.joined = requestCounter(domain, "joined", registry);
+        state.bypass = requestCounter(domain, "bypass", registry);
+    }
+
+    private static Counter requestCounter(String domain, String result, MeterRegistry registry) {
+        return Counter.builder("supabase.coalescing.requests")
+                .description("GETs that ran (leader), waited on an identical in-flight GET (joined) or skipped coalescing (bypass)")
+                .tag("domain", domain)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        // Domain đã cấu hình: đăng ký trước; domain lạ (nếu có) đăng ký lần đầu gặp trong state()
+        for (String domain : config.getDomains().keySet()) {
+            domains.computeIfAbsent(domain, name -> new DomainState());
+        }
+        domains.forEach((name, state) -> register(state, name, registry));
+        Gauge.builder("supabase.coalescing.in_flight", inFlight, Map::size)
+                .description("Distinct GETs currently shared by the coalescer")
+                .register(registry);
+    }
+}
@@ -0,0 +1,72 @@
+package com.oursocialnetworks.component;
+
+import com.oursocialnetworks.config.LogSampling;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Gắn request id (header X-Request-Id của client / proxy, không có thì tự sinh) vào MDC và response,
+ * để mọi dòng log trong request có requestId; JwtAuthFilter thêm userId. Request chậm hơn app.logging.slow-request-ms → WARN.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestIdFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Request-Id";
+    public static final String REQUEST_ID = "requestId";
+    public static final String USER_ID = "userId";
+
+    // Không nhận giá trị lạ từ client vào log (chống log injection)
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final long slowRequestMs;
+
+    public RequestIdFilter(@Value("${app.logging.slow-request-ms:2000}") long slowRequestMs) {
+        this.slowRequestMs = slowRequestMs;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String requestId = request.getHeader(HEADER);
+        if (requestId == null || !VALID_ID.matcher(requestId).matches()) {
+            requestId = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        }
+        MDC.put(REQUEST_ID, requestId);
+        response.setHeader(HEADER, requestId);
+
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            if (ms >= slowRequestMs) {
+                log.atWarn()
+                        .addKeyValue("method", request.getMethod())
+                        .addKeyValue("path", request.getRequestURI())
+                        .addKeyValue("status", response.getStatus())
+                        .addKeyValue("latencyMs", ms)
+                        .log("Slow request");
+            } else {
+                log.debug(LogSampling.SAMPLED, "{} {} → {} in {}ms",
+                        request.getMethod(), request.getRequestURI(), response.getStatus(), ms);
+            }
+            MDC.remove(REQUEST_ID);
+            MDC.remove(USER_ID);
+        }
+    }
+}
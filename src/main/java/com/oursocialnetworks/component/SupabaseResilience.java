@@ -0,0 +1,308 @@
+package com.oursocialnetworks.component;
+
+import com.oursocialnetworks.config.SupabaseConfig;
+import com.oursocialnetworks.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Chính sách chịu lỗi cho từng Supabase domain (supabase.domains.<name>.resilience.*):
+ * - Bulkhead: giới hạn số call đồng thời, hết slot thì fail ngay (UpstreamUnavailableException → 503)
+ * - Circuit breaker: tỉ lệ lỗi (5xx / 429 / IO / call chậm) trên cửa sổ N call gần nhất vượt ngưỡng → mở,
+ *   hết open-ms thì cho vài probe (half-open), probe đều thành công mới đóng lại
+ * - Retry có jitter chỉ cho GET, giới hạn bởi retry budget (token bucket theo tỉ lệ số call)
+ *
+ * Domain friends chậm chỉ làm đầy bulkhead / mở circuit của friends, login và profile (domain user) không bị kéo theo.
+ * Metrics: supabase.circuit.state (0 closed, 1 open, 2 half-open), supabase.circuit.transitions,
+ * supabase.resilience.rejected, supabase.retries, supabase.bulkhead.available.
+ */
+@Slf4j
+@Component
+public class SupabaseResilience implements MeterBinder {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final Map<String, Policy> policies = new LinkedHashMap<>();
+    private final LongSupplier clock; // epoch ms, thay được trong test
+    private MeterRegistry registry;
+
+    @Autowired
+    public SupabaseResilience(SupabaseConfig config) {
+        this(config, System::currentTimeMillis);
+    }
+
+    SupabaseResilience(SupabaseConfig config, LongSupplier clock) {
+        this.clock = clock;
+        config.getDomains().forEach((name, domain) -> {
+            SupabaseConfig.ResilienceConfig cfg = domain.getResilience();
+            if (cfg != null && cfg.isEnabled()) {
+                int maxConcurrent = cfg.getMaxConcurrent() > 0 ? cfg.getMaxConcurrent() : domain.getPool().getMaxConnections();
+                policies.put(name, new Policy(name, cfg, maxConcurrent));
+            }
+        });
+    }
+
+    /**
+     * Chạy 1 call tới domain qua bulkhead + circuit breaker; GET được retry khi lỗi tạm thời (IO, 429, 502-504)
+     */
+    public <T> T call(String domain, HttpMethod method, Supplier<T> call) {
+        Policy policy = policies.get(domain);
+        if (policy == null) {
+            return call.get();
+        }
+        boolean idempotent = method == HttpMethod.GET || method == HttpMethod.HEAD;
+        int attempts = idempotent ? Math.max(1, policy.cfg.getMaxAttempts()) : 1;
+        policy.depositRetryToken();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return policy.execute(call);
+            } catch (RuntimeException e) {
+                if (attempt >= attempts || !isRetryable(e)) {
+                    throw e;
+                }
+                if (!policy.withdrawRetryToken()) {
+                    count("supabase.retries", domain, "result", "budget_exhausted");
+                    throw e;
+                }
+                count("supabase.retries", domain, "result", "retried");
+                backoff(policy.cfg, attempt);
+            }
+        }
+    }
+
+    /**
+     * Trạng thái từng domain cho /api/health/upstreams
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        policies.forEach((name, policy) -> {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("state", policy.state().name());
+            s.put("failureRatePercent", policy.failureRatePercent());
+            s.put("bulkheadAvailable", policy.bulkhead.availablePermits());
+            s.put("bulkheadMax", policy.maxConcurrent);
+            s.put("retryTokens", policy.retryTokens.get() / 1000.0);
+            result.put(name, s);
+        });
+        return result;
+    }
+
+    static boolean isFailure(RuntimeException e) {
+        return e instanceof ResourceAccessException
+                || e instanceof HttpServerErrorException
+                || e instanceof HttpClientErrorException.TooManyRequests;
+    }
+
+    static boolean isRetryable(RuntimeException e) {
+        if (e instanceof HttpServerErrorException server) {
+            int code = server.getStatusCode().value();
+            return code == 502 || code == 503 || code == 504;
+        }
+        return e instanceof ResourceAccessException || e instanceof HttpClientErrorException.TooManyRequests;
+    }
+
+    private static void backoff(SupabaseConfig.ResilienceConfig cfg, int attempt) {
+        long cap = Math.min(cfg.getRetryBackoffMaxMs(), (long) cfg.getRetryBackoffMs() << Math.min(attempt - 1, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1)); // full jitter
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void count(String name, String domain, String tagKey, String tagValue) {
+        if (registry != null) {
+            Counter.builder(name).tag("domain", domain).tag(tagKey, tagValue).register(registry).increment();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        policies.forEach((name, policy) -> {
+            Gauge.builder("supabase.circuit.state", policy, p -> p.state().ordinal())
+                    .description("Circuit state per Supabase domain: 0 closed, 1 open, 2 half-open")
+                    .tag("domain", name)
+                    .register(registry);
+            Gauge.builder("supabase.bulkhead.available", policy.bulkhead, Semaphore::availablePermits)
+                    .description("Free concurrent call slots per Supabase domain")
+                    .tag("domain", name)
+                    .register(registry);
+        });
+    }
+
+    /**
+     * Bulkhead + circuit breaker (đếm theo cửa sổ N call gần nhất) + retry budget của 1 domain
+     */
+    private final class Policy {
+        final String domain;
+        final SupabaseConfig.ResilienceConfig cfg;
+        final int maxConcurrent;
+        final Semaphore bulkhead;
+
+        // Retry budget theo 1/1000 token: mỗi call nạp ratio token, mỗi retry tiêu 1 token
+        final AtomicLong retryTokens;
+        final long maxRetryTokens;
+
+        // Trạng thái circuit, đọc / ghi trong synchronized (this)
+        State state = State.CLOSED;
+        final boolean[] outcomes;   // true = lỗi
+        int next;
+        int recorded;
+        int failures;
+        long openedAt;
+        int probesStarted;
+        int probesSucceeded;
+
+        Policy(String domain, SupabaseConfig.ResilienceConfig cfg, int maxConcurrent) {
+            this.domain = domain;
+            this.cfg = cfg;
+            this.maxConcurrent = maxConcurrent;
+            this.bulkhead = new Semaphore(maxConcurrent);
+            this.outcomes = new boolean[Math.max(1, cfg.getWindowSize())];
+            this.maxRetryTokens = Math.max(1000, Math.round(cfg.getRetryBudgetRatio() * outcomes.length * 1000));
+            this.retryTokens = new AtomicLong(maxRetryTokens);
+        }
+
+        <T> T execute(Supplier<T> call) {
+            acquireSlot();
+            try {
+                if (!tryAcquirePermission()) {
+                    count("supabase.resilience.rejected", domain, "reason", "circuit_open");
+                    throw new UpstreamUnavailableException(domain, "circuit open", retryAfterMs());
+                }
+                boolean failed = true;
+                long start = clock.getAsLong();
+                try {
+                    T result = call.get();
+                    failed = clock.getAsLong() - start >= cfg.getSlowCallMs();
+                    return result;
+                } catch (RuntimeException e) {
+                    failed = isFailure(e);
+                    throw e;
+                } finally {
+                    onResult(failed);
+                }
+            } finally {
+                bulkhead.release();
+            }
+        }
+
+        private void acquireSlot() {
+            boolean acquired;
+            try {
+                acquired = bulkhead.tryAcquire(cfg.getBulkheadWaitMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                count("supabase.resilience.rejected", domain, "reason", "bulkhead_full");
+                throw new UpstreamUnavailableException(domain, "quá nhiều request đồng thời", cfg.getBulkheadWaitMs());
+            }
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized int failureRatePercent() {
+            return recorded == 0 ? 0 : failures * 100 / recorded;
+        }
+
+        synchronized long retryAfterMs() {
+            return Math.max(0, cfg.getOpenMs() - (clock.getAsLong() - openedAt));
+        }
+
+        synchronized boolean tryAcquirePermission() {
+            if (state == State.OPEN) {
+                if (clock.getAsLong() - openedAt < cfg.getOpenMs()) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= cfg.getHalfOpenProbes()) {
+                    return false;
+                }
+                probesStarted++;
+            }
+            return true;
+        }
+
+        synchronized void onResult(boolean failed) {
+            switch (state) {
+                case HALF_OPEN -> {
+                    if (failed) {
+                        transition(State.OPEN);
+                    } else if (++probesSucceeded >= cfg.getHalfOpenProbes()) {
+                        transition(State.CLOSED);
+                    }
+                }
+                case CLOSED -> {
+                    if (recorded == outcomes.length) {
+                        failures -= outcomes[next] ? 1 : 0;
+                    } else {
+                        recorded++;
+                    }
+                    outcomes[next] = failed;
+                    failures += failed ? 1 : 0;
+                    next = (next + 1) % outcomes.length;
+                    if (recorded >= cfg.getMinimumCalls() && failures * 100 >= cfg.getFailureRatePercent() * recorded) {
+                        transition(State.OPEN);
+                    }
+                }
+                case OPEN -> {
+                    // Call bắt đầu trước khi circuit mở, bỏ qua
+                }
+            }
+        }
+
+        private void transition(State to) {
+            log.warn("Supabase {} circuit {} → {} (failure rate {}% over {} calls)",
+                    domain, state, to, failureRatePercent(), recorded);
+            state = to;
+            switch (to) {
+                case OPEN -> openedAt = clock.getAsLong();
+                case HALF_OPEN -> {
+                    probesStarted = 0;
+                    probesSucceeded = 0;
+                }
+                case CLOSED -> {
+                    next = 0;
+                    recorded = 0;
+                    failures = 0;
+                }
+            }
+            count("supabase.circuit.transitions", domain, "to", to.name());
+        }
+
+        void depositRetryToken() {
+            long deposit = Math.round(cfg.getRetryBudgetRatio() * 1000);
+            retryTokens.getAndUpdate(t -> Math.min(maxRetryTokens, t + deposit));
+        }
+
+        boolean withdrawRetryToken() {
+            long before = retryTokens.getAndUpdate(t -> t >= 1000 ? t - 1000 : t);
+            return before >= 1000;
+        }
+    }
+}
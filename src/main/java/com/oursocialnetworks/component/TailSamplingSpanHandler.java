@@ -0,0 +1,290 @@
+package com.oursocialnetworks.component;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Tail sampling cho span của Brave: giữ span trong bộ nhớ theo traceId tới khi span gốc (local root, thường là
+ * span HTTP server) kết thúc, rồi mới quyết định ghi cả trace hay bỏ.
+ * Giữ: trace chậm hơn app.tracing.slow-ms, trace có lỗi (exception / 5xx), và app.tracing.keep-ratio số trace còn lại.
+ * Span đến sau quyết định (email gửi nền, ...) theo quyết định của trace đó.
+ *
+ * Trace được giữ ghi ra app.tracing.file, mỗi dòng 1 span JSON (định dạng Zipkin v2), bằng 1 thread riêng.
+ * File chỉ chủ process đọc được (rw-------), và query string trong tag bị cắt: URL PostgREST mang email / username
+ * trong filter (email=eq..., or=(username_login.eq...)).
+ */
+@Slf4j
+@Component
+public class TailSamplingSpanHandler extends SpanHandler implements MeterBinder {
+
+    private static final int MAX_SPANS_PER_TRACE = 256;
+    // Query string của URL tuyệt đối nằm giữa giá trị tag (message lỗi, ...): cắt tới khoảng trắng kế tiếp,
+    // vì filter PostgREST có thể chứa dấu nháy (username_login.eq."...")
+    private static final Pattern URL_QUERY = Pattern.compile("(https?://[^\\s\"'?#]*)\\?\\S*");
+
+    private final boolean enabled;
+    private final long slowMicros;
+    private final double keepRatio;
+    private final Path file;
+    private final long maxFileBytes;
+    private final ObjectMapper mapper;
+
+    // Span chờ span gốc, theo traceId. Trace không bao giờ kết thúc (request bị hủy, ...) tự hết hạn
+    private final Cache<String, List<MutableSpan>> pending;
+    // Quyết định keep / drop đã có, cho span kết thúc muộn
+    private final Cache<String, Boolean> decisions;
+
+    private final ThreadPoolExecutor writer;
+    private BufferedWriter out;
+    private long fileBytes;
+
+    private final AtomicLong keptTraces = new AtomicLong();
+    private final AtomicLong droppedTraces = new AtomicLong();
+    private final AtomicLong expiredTraces = new AtomicLong();
+    private final AtomicLong exportedSpans = new AtomicLong();
+    private final AtomicLong rejectedSpans = new AtomicLong();
+
+    public TailSamplingSpanHandler(ObjectMapper mapper,
+                                   @Value("${app.tracing.export.enabled:true}") boolean enabled,
+                                   @Value("${app.tracing.slow-ms:500}") long slowMs,
+                                   @Value("${app.tracing.keep-ratio:0.01}") double keepRatio,
+                                   @Value("${app.tracing.file:data/our-social-networks-traces.jsonl}") String file,
+                                   @Value("${app.tracing.max-file-mb:100}") long maxFileMb,
+                                   @Value("${app.tracing.max-pending-traces:10000}") long maxPendingTraces,
+                                   @Value("${app.tracing.pending-timeout-seconds:60}") long pendingTimeoutSeconds) {
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.slowMicros = TimeUnit.MILLISECONDS.toMicros(slowMs);
+        this.keepRatio = keepRatio;
+        this.file = Paths.get(file);
+        this.maxFileBytes = maxFileMb * 1024 * 1024;
+        this.pending = Caffeine.newBuilder()
+                .maximumSize(maxPendingTraces)
+                .expireAfterWrite(Duration.ofSeconds(pendingTimeoutSeconds))
+                .removalListener((String traceId, List<MutableSpan> spans, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        expiredTraces.incrementAndGet();
+                    }
+                })
+                .build();
+        this.decisions = Caffeine.newBuilder()
+                .maximumSize(maxPendingTraces * 10)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1000), r -> {
+            Thread t = new Thread(r, "trace-writer");
+            t.setDaemon(true);
+            return t;
+        }, (r, executor) -> rejectedSpans.addAndGet(((WriteTask) r).lines.size()));
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (!enabled || cause != Cause.FINISHED) {
+            return true;
+        }
+        String traceId = context.traceIdString();
+        // Đọc quyết định và sửa pending trong cùng compute() theo traceId: span con kết thúc đúng lúc span gốc
+        // đang quyết định hoặc nằm trong list span gốc lấy ra, hoặc thấy quyết định đã lưu; không rơi vào list mồ côi
+        Boolean[] keep = new Boolean[1];
+
+        if (!context.isLocalRoot()) {
+            pending.asMap().compute(traceId, (id, spans) -> {
+                keep[0] = decisions.getIfPresent(traceId);
+                if (keep[0] != null) {
+                    return spans;
+                }
+                List<MutableSpan> list = spans != null ? spans : new ArrayList<>();
+                if (list.size() < MAX_SPANS_PER_TRACE) {
+                    list.add(span);
+                }
+                return list;
+            });
+            if (Boolean.TRUE.equals(keep[0])) {
+                export(List.of(span));
+            }
+            return true;
+        }
+
+        List<MutableSpan> trace = new ArrayList<>();
+        pending.asMap().compute(traceId, (id, spans) -> {
+            Boolean decided = decisions.getIfPresent(traceId);
+            if (spans != null) {
+                trace.addAll(spans);
+            }
+            trace.add(span);
+            // Span gốc sau của trace đã giữ (email gửi nền) luôn được ghi; trace đã bỏ vẫn được giữ nếu phần sau chậm / lỗi
+            keep[0] = Boolean.TRUE.equals(decided)
+                    || span.finishTimestamp() - span.startTimestamp() >= slowMicros
+                    || trace.stream().anyMatch(TailSamplingSpanHandler::isError)
+                    || ThreadLocalRandom.current().nextDouble() < keepRatio;
+            decisions.put(traceId, keep[0]);
+            return null;
+        });
+        if (keep[0]) {
+            keptTraces.incrementAndGet();
+            export(trace);
+        } else {
+            droppedTraces.incrementAndGet();
+        }
+        return true;
+    }
+
+    static boolean isError(MutableSpan span) {
+        return span.error() != null
+                || span.tag("error") != null
+                || "SERVER_ERROR".equals(span.tag("outcome"))
+                || "IO_ERROR".equals(span.tag("status"));
+    }
+
+    private void export(List<MutableSpan> spans) {
+        List<String> lines = new ArrayList<>(spans.size());
+        for (MutableSpan span : spans) {
+            try {
+                lines.add(mapper.writeValueAsString(toZipkin(span)));
+            } catch (IOException e) {
+                log.debug("Cannot serialize span {}: {}", span.name(), e.getMessage());
+            }
+        }
+        // Queue đầy: rejection handler đếm từng span vào rejectedSpans
+        writer.execute(new WriteTask(lines));
+    }
+
+    private final class WriteTask implements Runnable {
+        final List<String> lines;
+
+        WriteTask(List<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public void run() {
+            write(lines);
+        }
+    }
+
+    static Map<String, Object> toZipkin(MutableSpan span) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("traceId", span.traceId());
+        if (span.parentId() != null) {
+            json.put("parentId", span.parentId());
+        }
+        json.put("id", span.id());
+        if (span.kind() != null) {
+            json.put("kind", span.kind().name());
+        }
+        json.put("name", span.name());
+        json.put("timestamp", span.startTimestamp());
+        json.put("duration", Math.max(1, span.finishTimestamp() - span.startTimestamp()));
+        if (span.localServiceName() != null) {
+            json.put("localEndpoint", Map.of("serviceName", span.localServiceName()));
+        }
+        Map<String, String> tags = new LinkedHashMap<>();
+        span.tags().forEach((key, value) -> tags.put(key, stripQuery(key, value)));
+        if (span.error() != null && !tags.containsKey("error")) {
+            String message = span.error().getMessage();
+            tags.put("error", message != null ? stripQuery("error", message) : span.error().getClass().getSimpleName());
+        }
+        if (!tags.isEmpty()) {
+            json.put("tags", tags);
+        }
+        return json;
+    }
+
+    /**
+     * http.url / uri (kể cả đường dẫn tương đối) cắt từ '?'; tag khác chỉ cắt query của URL tuyệt đối bên trong
+     */
+    static String stripQuery(String key, String value) {
+        if (value == null) {
+            return null;
+        }
+        if (key.endsWith("url") || key.endsWith("uri")) {
+            int q = value.indexOf('?');
+            return q >= 0 ? value.substring(0, q) : value;
+        }
+        return value.indexOf('?') >= 0 ? URL_QUERY.matcher(value).replaceAll("$1") : value;
+    }
+
+    private void write(List<String> lines) {
+        try {
+            if (out == null || fileBytes >= maxFileBytes) {
+                rotate();
+            }
+            for (String line : lines) {
+                out.write(line);
+                out.newLine();
+                fileBytes += line.length() + 1;
+            }
+            out.flush();
+            exportedSpans.addAndGet(lines.size());
+        } catch (IOException e) {
+            rejectedSpans.addAndGet(lines.size());
+            log.warn("Cannot write traces to {}: {}", file, e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Mở file trace; file quá app.tracing.max-file-mb được đổi tên thành *.1 (ghi đè bản cũ)
+     */
+    private void rotate() throws IOException {
+        closeQuietly();
+        if (Files.exists(file) && Files.size(file) >= maxFileBytes) {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        PrivateFiles.createIfMissing(file);
+        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        fileBytes = Files.size(file);
+    }
+
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {}
+            out = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+        closeQuietly();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("tracing.traces.kept", keptTraces, AtomicLong::get).register(registry);
+        FunctionCounter.builder("tracing.traces.dropped", droppedTraces, AtomicLong::get).register(registry);
+        FunctionCounter.builder("tracing.traces.expired", expiredTraces, AtomicLong::get)
+                .description("Traces whose root span never finished before the pending timeout")
+                .register(registry);
+        FunctionCounter.builder("tracing.spans.exported", exportedSpans, AtomicLong::get).register(registry);
+        FunctionCounter.builder("tracing.spans.rejected", rejectedSpans, AtomicLong::get).register(registry);
+        Gauge.builder("tracing.traces.pending", pending, c -> c.estimatedSize()).register(registry);
+    }
+}
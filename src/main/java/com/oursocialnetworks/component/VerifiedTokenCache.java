@@ -0,0 +1,102 @@
+package com.oursocialnetworks.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache token đã verify → Authentication dựng sẵn.
+ * Key = SHA-256 của token (không giữ token gốc trong heap), mỗi entry hết hạn đúng thời điểm exp của token.
+ */
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+
+    private final Cache<ByteBuffer, Entry> cache;
+
+    private record Entry(Authentication authentication, long expiresAtMillis) {}
+
+    public VerifiedTokenCache(@Value("${app.cache.jwt.max-size:50000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<ByteBuffer, Entry>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer key, Entry value, long currentTime) {
+                        long remaining = value.expiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remaining, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer key, Entry value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer key, Entry value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Trả Authentication nếu token đã verify và chưa hết hạn, ngược lại null
+     */
+    public Authentication get(String token) {
+        Entry entry = cache.getIfPresent(key(token));
+        if (entry == null || entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.authentication();
+    }
+
+    /**
+     * Token không có exp thì không cache (không có giới hạn thời gian sống)
+     */
+    public void put(String token, Authentication authentication, Date expiration) {
+        if (expiration == null) {
+            return;
+        }
+        cache.put(key(token), new Entry(authentication, expiration.getTime()));
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats s = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", s.hitCount());
+        result.put("misses", s.missCount());
+        result.put("hitRate", s.hitRate());
+        return result;
+    }
+
+    private static ByteBuffer key(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "jwt");
+    }
+}
@@ -46,7 +46,7 @@ public class CorsConfig {
         config.setAllowCredentials(allowCredentials);
 
         // Expose headers
-        config.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Total-Count"));
+        config.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Total-Count", "X-Stale-Data", "Age", "Retry-After"));
 
         // Cache preflight request
         config.setMaxAge(3600L);
@@ -1,6 +1,7 @@
 package com.oursocialnetworks.config;
 
 import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.client.web.DefaultOAuth2AuthorizationRequestResolver;
@@ -11,6 +12,7 @@ import org.springframework.stereotype.Component;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+@Slf4j
 @Component
 public class CustomOAuth2AuthorizationRequestResolver implements OAuth2AuthorizationRequestResolver {
 
@@ -44,21 +46,16 @@ public class CustomOAuth2AuthorizationRequestResolver implements OAuth2Authoriza
             // Thêm prompt=consent để buộc Google hiển thị lại màn hình xin phép
             // Điều này giải quyết vấn đề khi Google đã nhớ tài khoản từ lần đăng nhập trước
             additionalParameters.put("prompt", "consent");
-            System.out.println("✅ OAuth2: Force consent enabled - Google will show permission screen");
         } else {
             // Chỉ hiển thị màn hình chọn tài khoản
             additionalParameters.put("prompt", "select_account");
-            System.out.println("✅ OAuth2: Select account only - Google will show account selection");
         }
         
         // Thêm access_type=offline để có thể lấy refresh token (tùy chọn)
         additionalParameters.put("access_type", "offline");
         
-        System.out.println("=== OAuth2 Authorization Request Customized ===");
-        System.out.println("Force consent: " + forceConsent);
-        System.out.println("Original parameters: " + authorizationRequest.getAdditionalParameters());
-        System.out.println("Final parameters: " + additionalParameters);
-        System.out.println("===============================================");
+        log.debug("OAuth2 authorization request parameters {} -> {}",
+                authorizationRequest.getAdditionalParameters(), additionalParameters);
         
         return OAuth2AuthorizationRequest.from(authorizationRequest)
                 .additionalParameters(additionalParameters)
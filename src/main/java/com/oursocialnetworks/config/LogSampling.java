@@ -0,0 +1,51 @@
+package com.oursocialnetworks.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lấy mẫu log DEBUG số lượng lớn (mỗi request / mỗi lần gọi Supabase):
+ * log.debug(LogSampling.SAMPLED, "...", args) chỉ được ghi 1 lần trên mỗi N lần gọi cùng format.
+ * Quyết định trước khi format message nên event bị bỏ gần như không tốn gì. Cấu hình trong logback-spring.xml.
+ */
+public final class LogSampling {
+
+    public static final Marker SAMPLED = MarkerFactory.getMarker("SAMPLED");
+
+    private LogSampling() {}
+
+    /**
+     * TurboFilter: event DEBUG / TRACE có marker SAMPLED → giữ event thứ 0, N, 2N, ... của từng format
+     */
+    public static class SampledDebugFilter extends TurboFilter {
+
+        private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+        private int every = 100;
+
+        public void setEvery(int every) {
+            this.every = Math.max(1, every);
+        }
+
+        @Override
+        public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+            if (marker == null || format == null || level == null || level.isGreaterOrEqual(Level.INFO)
+                    || !marker.contains(SAMPLED)) {
+                return FilterReply.NEUTRAL;
+            }
+            // Logger chưa bật DEBUG thì không cần đếm
+            if (!logger.isEnabledFor(level)) {
+                return FilterReply.DENY;
+            }
+            long n = counters.computeIfAbsent(format, f -> new AtomicLong()).getAndIncrement();
+            return n % every == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+        }
+    }
+}
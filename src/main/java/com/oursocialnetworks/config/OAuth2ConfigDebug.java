@@ -1,5 +1,6 @@
 package com.oursocialnetworks.config;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
@@ -7,6 +8,7 @@ import org.springframework.security.oauth2.client.registration.ClientRegistratio
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.stereotype.Component;
 
+@Slf4j
 @Component
 public class OAuth2ConfigDebug {
 
@@ -15,30 +17,27 @@ public class OAuth2ConfigDebug {
 
     @EventListener(ApplicationReadyEvent.class)
     public void debugOAuth2Config() {
-        System.out.println("========== OAUTH2 CONFIG DEBUG ==========");
-        
         if (clientRegistrationRepository == null) {
-            System.out.println("❌ ClientRegistrationRepository is NULL");
+            log.warn("No ClientRegistrationRepository, Google login is disabled");
             return;
         }
 
         try {
             ClientRegistration googleReg = clientRegistrationRepository.findByRegistrationId("google");
             if (googleReg == null) {
-                System.out.println("❌ Google ClientRegistration is NULL");
+                log.warn("Google ClientRegistration is not configured");
             } else {
-                System.out.println("✅ Google OAuth2 Configuration:");
-                System.out.println("Client ID: " + (googleReg.getClientId() != null ? "***" + googleReg.getClientId().substring(Math.max(0, googleReg.getClientId().length() - 4)) : "NULL"));
-                System.out.println("Client Secret: " + (googleReg.getClientSecret() != null ? "***configured" : "NULL"));
-                System.out.println("Redirect URI: " + googleReg.getRedirectUri());
-                System.out.println("Authorization URI: " + googleReg.getProviderDetails().getAuthorizationUri());
-                System.out.println("Token URI: " + googleReg.getProviderDetails().getTokenUri());
-                System.out.println("Scopes: " + googleReg.getScopes());
+                String clientId = googleReg.getClientId();
+                log.info("Google OAuth2: clientId=***{} secret={} redirectUri={} scopes={}",
+                        clientId != null ? clientId.substring(Math.max(0, clientId.length() - 4)) : "NULL",
+                        googleReg.getClientSecret() != null ? "configured" : "NULL",
+                        googleReg.getRedirectUri(), googleReg.getScopes());
+                log.debug("Google OAuth2 endpoints: authorization={} token={}",
+                        googleReg.getProviderDetails().getAuthorizationUri(),
+                        googleReg.getProviderDetails().getTokenUri());
             }
         } catch (Exception e) {
-            System.err.println("❌ Error getting Google registration: " + e.getMessage());
+            log.error("Error getting Google registration: {}", e.getMessage());
         }
-        
-        System.out.println("=========================================");
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.oursocialnetworks.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -8,8 +9,12 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @Configuration
 public class PasswordConfig {
 
+    /**
+     * Cost factor BCrypt (4-31), chọn bằng PasswordHashingBenchmark theo p99 login mục tiêu.
+     * Tăng cost thì hash cũ cost thấp hơn sẽ được rehash khi user login.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${app.password.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
-}
\ No newline at end of file
+}
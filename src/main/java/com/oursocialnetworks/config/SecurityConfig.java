@@ -5,15 +5,25 @@ import com.oursocialnetworks.component.OAuth2SuccessHandler;
 import com.oursocialnetworks.component.CustomAuthenticationEntryPoint;
 import com.oursocialnetworks.component.CustomAccessDeniedHandler;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+@Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class SecurityConfig {
@@ -25,7 +35,44 @@ public class SecurityConfig {
     private final CustomAccessDeniedHandler customAccessDeniedHandler;
     private final CustomOAuth2AuthorizationRequestResolver customOAuth2AuthorizationRequestResolver;
 
+    /**
+     * /actuator/prometheus: HTTP Basic cho scraper (METRICS_SCRAPE_USERNAME / METRICS_SCRAPE_PASSWORD, mật khẩu dạng
+     * {noop}..., {bcrypt}... hoặc plain text) hoặc JWT ADMIN. Chưa cấu hình mật khẩu thì chỉ ADMIN đọc được.
+     * User scraper chỉ sống trong chain này, không thành UserDetailsService chung của app.
+     */
     @Bean
+    @Order(1)
+    public SecurityFilterChain metricsScrapeFilterChain(HttpSecurity http,
+                                                        @Value("${app.metrics.scrape.username:prometheus}") String username,
+                                                        @Value("${app.metrics.scrape.password:}") String password) throws Exception {
+        http.securityMatcher("/actuator/prometheus")
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(customAuthenticationEntryPoint)
+                        .accessDeniedHandler(customAccessDeniedHandler)
+                );
+
+        if (password.isBlank()) {
+            http.authorizeHttpRequests(auth -> auth.anyRequest().hasRole("ADMIN"));
+            return http.build();
+        }
+
+        PasswordEncoder encoder = PasswordEncoderFactories.createDelegatingPasswordEncoder();
+        String stored = password.startsWith("{") ? password : "{noop}" + password;
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(encoder);
+        provider.setUserDetailsService(new InMemoryUserDetailsManager(
+                User.withUsername(username).password(stored).roles("METRICS").build()));
+
+        http.authenticationManager(new ProviderManager(provider))
+                .httpBasic(basic -> {})
+                .authorizeHttpRequests(auth -> auth.anyRequest().hasAnyRole("METRICS", "ADMIN"));
+        return http.build();
+    }
+
+    @Bean
+    @Order(2)
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
@@ -80,6 +127,10 @@ public class SecurityConfig {
                                 "/api/users/test-delete/**"
                         ).permitAll()
 
+                        // ✅ Actuator: health public, còn lại chỉ ADMIN (/actuator/prometheus: xem metricsScrapeFilterChain)
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+
                         // ⚠️ Protected Auth Endpoints - Require JWT
                         .requestMatchers(
                                 "/auth/check",
@@ -124,16 +175,8 @@ public class SecurityConfig {
                     .loginPage("/login")                           // Custom login page
                     .successHandler(oAuth2SuccessHandler)          // Handler callback
                     .failureHandler((request, response, exception) -> {
-                        System.err.println("========== OAuth2 LOGIN FAILURE ==========");
-                        System.err.println("Request URL: " + request.getRequestURL());
-                        System.err.println("Request URI: " + request.getRequestURI());
-                        System.err.println("Error Type: " + exception.getClass().getSimpleName());
-                        System.err.println("Error Message: " + exception.getMessage());
-                        System.err.println("Request Parameters:");
-                        request.getParameterMap().forEach((key, values) -> 
-                            System.err.println("  " + key + ": " + String.join(", ", values)));
-                        exception.printStackTrace();
-                        System.err.println("==========================================");
+                        // Không log query params: có code/state của Google
+                        log.warn("OAuth2 login failed at {}: {}", request.getRequestURI(), exception.getMessage(), exception);
                         
                         String errorMsg = exception.getMessage();
                         if (errorMsg == null || errorMsg.trim().isEmpty()) {
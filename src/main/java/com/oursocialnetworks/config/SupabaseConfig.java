@@ -1,6 +1,7 @@
 package com.oursocialnetworks.config;
 
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -8,6 +9,7 @@ import jakarta.annotation.PostConstruct;
 import java.util.HashMap;
 import java.util.Map;
 
+@Slf4j
 @Data
 @Component
 @ConfigurationProperties(prefix = "supabase")
@@ -20,6 +22,53 @@ public class SupabaseConfig {
         private String url;
         private String key;
         private String table;
+        private PoolConfig pool = new PoolConfig();
+        private CoalescingConfig coalescing = new CoalescingConfig();
+        private ResilienceConfig resilience = new ResilienceConfig();
+    }
+
+    /**
+     * Cấu hình connection pool HTTP cho từng domain (supabase.domains.<name>.pool.*)
+     */
+    @Data
+    public static class PoolConfig {
+        private int maxConnections = 50;           // Tổng số connection tối đa của pool
+        private int connectTimeoutMs = 5000;       // Timeout khi mở TCP/TLS connection
+        private int connectionRequestTimeoutMs = 2000; // Thời gian chờ lấy connection từ pool
+        private int readTimeoutMs = 15000;         // Timeout đọc response
+        private int keepAliveSeconds = 30;         // Giữ connection idle tối đa (nếu server không gửi Keep-Alive)
+        private int idleEvictSeconds = 60;         // Đóng connection idle lâu hơn ngưỡng này
+        private int timeToLiveSeconds = 300;       // Tuổi thọ tối đa của 1 connection
+    }
+
+    /**
+     * Gộp các GET giống hệt nhau đang chạy đồng thời thành 1 request (supabase.domains.<name>.coalescing.*)
+     */
+    @Data
+    public static class CoalescingConfig {
+        private boolean enabled = true;
+        private int maxInFlight = 10000;           // GET đang gộp của domain này vượt ngưỡng thì gọi thẳng, không gộp
+    }
+
+    /**
+     * Bulkhead + circuit breaker + retry cho từng domain (supabase.domains.<name>.resilience.*),
+     * để 1 project Supabase chậm / lỗi không giữ hết request thread của các domain khác
+     */
+    @Data
+    public static class ResilienceConfig {
+        private boolean enabled = true;
+        private int maxConcurrent = 0;             // Số call đồng thời tối đa, 0 = bằng pool.max-connections
+        private int bulkheadWaitMs = 50;           // Chờ slot tối đa, hết thì fail ngay
+        private int windowSize = 50;               // Số call gần nhất dùng để tính tỉ lệ lỗi
+        private int minimumCalls = 20;             // Chưa đủ số call thì không mở circuit
+        private int failureRatePercent = 50;       // Tỉ lệ lỗi (5xx, 429, IO, call chậm) để mở circuit
+        private int slowCallMs = 5000;             // Call thành công nhưng chậm hơn ngưỡng này tính là lỗi
+        private int openMs = 10000;                // Thời gian circuit mở trước khi cho probe (half-open)
+        private int halfOpenProbes = 3;            // Số probe phải thành công liên tiếp để đóng lại
+        private int maxAttempts = 3;               // GET: tổng số lần thử (POST / PUT / PATCH / DELETE không retry)
+        private int retryBackoffMs = 50;           // Backoff lần retry đầu, nhân đôi mỗi lần, full jitter
+        private int retryBackoffMaxMs = 500;
+        private double retryBudgetRatio = 0.1;     // Retry tối đa ~10% số call (token bucket), tránh retry storm
     }
 
     // Initialize from properties - Spring Boot sẽ gọi setDomains với nested map
@@ -29,27 +78,14 @@ public class SupabaseConfig {
 
     @PostConstruct
     public void init() {
-        System.out.println("========== SUPABASE CONFIG ==========");
-        System.out.println("Domains size: " + domains.size());
-        System.out.println("Available domains: " + domains.keySet());
-        
-        if (domains.containsKey("user")) {
-            DomainConfig user = domains.get("user");
-            System.out.println("User URL: " + user.getUrl());
-            System.out.println("User Table: " + user.getTable());
-            System.out.println("User Key exists: " + (user.getKey() != null));
-        } else {
-            System.out.println("ERROR: 'user' domain not found!");
+        domains.forEach((name, domain) -> log.info("Supabase domain {}: {} table={} key={}",
+                name, domain.getUrl(), domain.getTable(), domain.getKey() != null ? "set" : "missing"));
+
+        if (!domains.containsKey("user")) {
+            log.error("Supabase domain 'user' is not configured");
         }
-        
-        if (domains.containsKey("role")) {
-            DomainConfig role = domains.get("role");
-            System.out.println("Role URL: " + role.getUrl());
-            System.out.println("Role Table: " + role.getTable());
-            System.out.println("Role Key exists: " + (role.getKey() != null));
-        } else {
-            System.out.println("WARNING: 'role' domain not found!");
+        if (!domains.containsKey("role")) {
+            log.warn("Supabase domain 'role' is not configured");
         }
-        System.out.println("====================================");
     }
 }
\ No newline at end of file
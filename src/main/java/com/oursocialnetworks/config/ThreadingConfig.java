@@ -0,0 +1,44 @@
+package com.oursocialnetworks.config;
+
+import io.micrometer.tracing.Tracer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Chế độ thread xử lý request / việc nền.
+ * spring.threads.virtual.enabled=true (JDK 21+): Spring Boot chạy Tomcat và applicationTaskExecutor
+ * (ghi rehash mật khẩu, fan-out nội bộ) trên virtual thread. JDK < 21 tự quay về platform thread.
+ * Việc chạy trên applicationTaskExecutor giữ trace context của thread đã gửi việc.
+ */
+@Slf4j
+@Configuration
+public class ThreadingConfig {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualRequested;
+
+    public boolean isVirtualThreadsActive() {
+        return virtualRequested && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE);
+    }
+
+    @Bean
+    public TaskDecorator tracingTaskDecorator(ObjectProvider<Tracer> tracer) {
+        Tracer t = tracer.getIfAvailable(() -> Tracer.NOOP);
+        return runnable -> t.currentTraceContext().wrap(runnable);
+    }
+
+    @PostConstruct
+    public void init() {
+        log.info("Java {}, virtual threads requested={} active={}",
+                System.getProperty("java.version"), virtualRequested, isVirtualThreadsActive());
+        if (virtualRequested && !isVirtualThreadsActive()) {
+            log.warn("Virtual threads cần JDK 21+, đang dùng platform threads");
+        }
+    }
+}
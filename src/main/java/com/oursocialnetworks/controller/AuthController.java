@@ -5,6 +5,7 @@ import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.jsonwebtoken.JwtException;
 import lombok.Data;
 
 import com.oursocialnetworks.dto.TokenRequest;
@@ -15,6 +16,8 @@ import com.oursocialnetworks.entity.User;
 import com.oursocialnetworks.service.JwtService;
 import com.oursocialnetworks.service.SupabaseUserService;
 import com.oursocialnetworks.service.EmailService;
+import com.oursocialnetworks.service.PasswordHashingService;
+import com.oursocialnetworks.exception.BusinessException;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -27,10 +30,14 @@ import java.util.UUID;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.RestClientException;
 
+import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/auth")
@@ -53,6 +60,9 @@ public class AuthController {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private PasswordHashingService passwordHashing;
+
     @Data
     private static class BasicLoginRequest {
         @JsonProperty("username_login")
@@ -102,7 +112,7 @@ public class AuthController {
 
             return ResponseEntity.ok(response);
 
-        } catch (Exception e) {
+        } catch (GeneralSecurityException | IOException | BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(AuthResponse.error("Đăng nhập thất bại: " + e.getMessage()));
         }
@@ -136,7 +146,7 @@ public class AuthController {
                                 "error", "No authentication found"
                         ));
             }
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of(
                             "authenticated", false,
@@ -159,22 +169,13 @@ public class AuthController {
             String loginIdentifier = req.getUsernameLogin();
             String password = req.getPasswordLogin();
             
-            // Thử login bằng username_login trước
-            ResponseEntity<User[]> res = userService.loginUser(loginIdentifier, password, User[].class);
-            User[] users = res.getBody();
-            
-            // Nếu không tìm thấy, thử login bằng email
-            if (users == null || users.length == 0) {
-                res = userService.loginByEmail(loginIdentifier, password, User[].class);
-                users = res.getBody();
-            }
+            // username_login hoặc email, 1 query duy nhất
+            User user = userService.findLoginUser(loginIdentifier, password);
 
-            if (users == null || users.length == 0) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(AuthResponse.error("Email/Username hoặc mật khẩu không đúng"));
             }
-
-            User user = users[0];
             
             // Check status và xử lý tương ứng
             switch (user.getStatus()) {
@@ -210,7 +211,11 @@ public class AuthController {
                     );
                     return ResponseEntity.ok(response);
             }
-        } catch (Exception e) {
+        } catch (RejectedExecutionException e) {
+            // Pool hash mật khẩu đang quá tải
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(AuthResponse.error(e.getMessage()));
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(AuthResponse.error("Đăng nhập thất bại: " + e.getMessage()));
         }
@@ -250,7 +255,7 @@ public class AuthController {
                     "message", "Token refreshed successfully"
             ));
 
-        } catch (Exception e) {
+        } catch (JwtException | BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of(
                             "error", "Invalid refresh token",
@@ -285,24 +290,14 @@ public class AuthController {
                         .body(AuthResponse.error("Xác nhận mật khẩu không khớp"));
             }
 
-            // Find user by email and verify temp password
-            Map<String, String> params = new HashMap<>();
-            params.put("email", "eq." + email);
-            params.put("password_login", "eq." + tempPassword);
-            params.put("status", "eq.2"); // Only users with temporary password
-            params.put("select", "*,Role(*)");
-            params.put("limit", "1");
+            // Find user by email and verify temp password (BCrypt verify ở app, không đưa mật khẩu lên URL)
+            User user = userService.checkCredentials(email, tempPassword);
 
-            ResponseEntity<User[]> userResponse = userService.get("user", params, User[].class);
-            User[] users = userResponse.getBody();
-            
-            if (users == null || users.length == 0) {
+            if (user == null || !email.equals(user.getEmail())) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(AuthResponse.error("Email hoặc mật khẩu tạm thời không đúng"));
             }
 
-            User user = users[0];
-
             // Check if user has temporary password status
             if (user.getStatus() != 2) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -311,7 +306,7 @@ public class AuthController {
 
             // Update password and status using PATCH instead of PUT
             Map<String, Object> updateData = new HashMap<>();
-            updateData.put("password_login", newPassword);
+            updateData.put("password_login", passwordHashing.hash(newPassword));
             updateData.put("status", 1); // Change from temporary (2) to active (1)
             updateData.put("updateDate", java.time.LocalDate.now().toString());
             
@@ -331,7 +326,11 @@ public class AuthController {
                 null, null, null, false, null
             ));
 
-        } catch (Exception e) {
+        } catch (RejectedExecutionException e) {
+            // Pool hash mật khẩu đang quá tải
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(AuthResponse.error(e.getMessage()));
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(AuthResponse.error("Đổi mật khẩu thất bại: " + e.getMessage()));
         }
@@ -368,7 +367,7 @@ public class AuthController {
             User user = users[0];
 
             // Validate current password
-            if (!user.getPasswordLogin().equals(request.getCurrentPassword())) {
+            if (!userService.passwordMatches(user.getId(), request.getCurrentPassword())) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body(AuthResponse.error("Mật khẩu hiện tại không đúng"));
             }
@@ -385,7 +384,7 @@ public class AuthController {
             // user.setUpdateDate(java.time.LocalDate.now());
 
             // Save to database - Use updateUserById method
-            user.setPasswordLogin(request.getNewPassword());
+            user.setPasswordLogin(passwordHashing.hash(request.getNewPassword()));
             user.setStatus(1);
             user.setUpdateDate(java.time.LocalDate.now());
             
@@ -411,7 +410,11 @@ public class AuthController {
 
             return ResponseEntity.ok(response);
 
-        } catch (Exception e) {
+        } catch (RejectedExecutionException e) {
+            // Pool hash mật khẩu đang quá tải
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(AuthResponse.error(e.getMessage()));
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(AuthResponse.error("Đổi mật khẩu thất bại: " + e.getMessage()));
         }
@@ -427,19 +430,11 @@ public class AuthController {
     @PostMapping("/login/after-password-change")
     public ResponseEntity<AuthResponse> loginAfterPasswordChange(@RequestBody BasicLoginRequest req) {
         try {
-            ResponseEntity<User[]> res = userService.loginUser(
-                    req.getUsernameLogin(),
-                    req.getPasswordLogin(),
-                    User[].class
-            );
-
-            User[] users = res.getBody();
-            if (users == null || users.length == 0) {
+            User user = userService.findLoginUser(req.getUsernameLogin(), req.getPasswordLogin());
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(AuthResponse.error("Tên đăng nhập hoặc mật khẩu không đúng"));
             }
-
-            User user = users[0];
             
             // Check if user still has temporary password status
             if (user.getStatus() == 2) {
@@ -456,7 +451,11 @@ public class AuthController {
             );
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (RejectedExecutionException e) {
+            // Pool hash mật khẩu đang quá tải
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(AuthResponse.error(e.getMessage()));
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(AuthResponse.error("Đăng nhập thất bại: " + e.getMessage()));
         }
@@ -478,7 +477,7 @@ public class AuthController {
                     "message", "Logged out successfully",
                     "note", "Please remove tokens from client side"
             ));
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Logout failed"));
         }
@@ -507,7 +506,7 @@ public class AuthController {
     // ============================
     //  VERIFY GOOGLE TOKEN
     // ============================
-    private GoogleIdToken.Payload verifyGoogleToken(String idTokenStr) throws Exception {
+    private GoogleIdToken.Payload verifyGoogleToken(String idTokenStr) throws GeneralSecurityException, IOException {
         if (googleClientId == null || googleClientId.isBlank()) {
             throw new IllegalStateException("Google Client ID is not configured");
         }
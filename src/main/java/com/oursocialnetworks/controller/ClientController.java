@@ -1,14 +1,18 @@
 package com.oursocialnetworks.controller;
 
 import com.oursocialnetworks.component.AuthUtils;
+import com.oursocialnetworks.dto.UserCard;
+import com.oursocialnetworks.dto.UserProfile;
 import com.oursocialnetworks.entity.User;
 import com.oursocialnetworks.service.SupabaseUserService;
+import com.oursocialnetworks.exception.BusinessException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.RestClientException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -38,11 +42,11 @@ public class ClientController {
                 result.put("status", "success");
                 result.put("data", user);
                 
-                return ResponseEntity.ok(result);
+                return ResponseEntity.ok().headers(SupabaseUserService.staleHeaders(response)).body(result);
             }
             
             return authUtils.buildErrorResponse("Không tìm thấy thông tin user");
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -87,28 +91,28 @@ public class ClientController {
             }
             
             return authUtils.buildErrorResponse("Không thể cập nhật profile");
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
 
     @GetMapping("/users/search")
-    @Operation(summary = "Tìm kiếm user theo username")
+    @Operation(summary = "Tìm kiếm user theo username, username_login hoặc email")
     public ResponseEntity<?> searchUsers(@RequestParam String q) {
         try {
             if (q == null || q.trim().isEmpty()) {
                 return authUtils.buildErrorResponse("Từ khóa tìm kiếm không được để trống");
             }
             
-            ResponseEntity<User[]> response = userService.searchUserByUsername(q.trim(), User[].class);
+            UserCard[] users = userService.searchUsers(q.trim());
             
             Map<String, Object> result = new HashMap<>();
             result.put("status", "success");
-            result.put("data", response.getBody() != null ? response.getBody() : new User[0]);
-            result.put("count", response.getBody() != null ? response.getBody().length : 0);
+            result.put("data", users);
+            result.put("count", users.length);
             
             return ResponseEntity.ok(result);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -122,13 +126,13 @@ public class ClientController {
             if (response.getBody() != null && response.getBody().length > 0) {
                 Map<String, Object> result = new HashMap<>();
                 result.put("status", "success");
-                result.put("data", response.getBody()[0]);
+                result.put("data", UserProfile.of(response.getBody()[0]));
                 
-                return ResponseEntity.ok(result);
+                return ResponseEntity.ok().headers(SupabaseUserService.staleHeaders(response)).body(result);
             }
             
             return authUtils.buildErrorResponse("Không tìm thấy user");
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -154,7 +158,7 @@ public class ClientController {
             }
             
             return authUtils.buildErrorResponse("Token không hợp lệ");
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             Map<String, Object> result = new HashMap<>();
             result.put("status", "error");
             result.put("authenticated", false);
@@ -167,25 +171,19 @@ public class ClientController {
     @Operation(summary = "Lấy thông tin user theo username_login (như Instagram)")
     public ResponseEntity<?> getUserByUsername(@PathVariable String username) {
         try {
-            // Tìm user theo username_login
-            Map<String, String> params = new HashMap<>();
-            params.put("username_login", "eq." + username);
-            params.put("status", "eq.1");
-            params.put("select", "*,Role(*)");
-            params.put("limit", "1");
-            
-            ResponseEntity<User[]> response = userService.get("user", params, User[].class);
+            // Tìm user theo username_login (qua UserCache)
+            ResponseEntity<User[]> response = userService.getActiveUserByUsername(username);
             
             if (response.getBody() != null && response.getBody().length > 0) {
                 Map<String, Object> result = new HashMap<>();
                 result.put("status", "success");
-                result.put("data", response.getBody()[0]);
+                result.put("data", UserProfile.of(response.getBody()[0]));
                 
-                return ResponseEntity.ok(result);
+                return ResponseEntity.ok().headers(SupabaseUserService.staleHeaders(response)).body(result);
             }
             
             return authUtils.buildErrorResponse("Không tìm thấy user");
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
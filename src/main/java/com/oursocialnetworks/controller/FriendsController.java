@@ -1,16 +1,21 @@
 package com.oursocialnetworks.controller;
 
 import com.oursocialnetworks.component.AuthUtils;
+import com.oursocialnetworks.component.PageCursor;
 import com.oursocialnetworks.entity.FriendRequest;
 import com.oursocialnetworks.service.FriendsService;
+import com.oursocialnetworks.exception.BusinessException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.RestClientException;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -24,25 +29,33 @@ public class FriendsController {
     private final FriendsService friendsService;
     private final AuthUtils authUtils;
 
+    private static final int MAX_STATUS_BATCH = 100;
+    private static final int MAX_PAGE_SIZE = 100;
+
     @GetMapping("/requests")
     @Operation(summary = "Lấy danh sách lời mời follow đang chờ")
     public ResponseEntity<?> getPendingRequests(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor
     ) {
+        // page âm / size <= 0 làm offset âm hoặc mảng âm ở SocialGraphIndex và Supabase
+        page = Math.max(0, page);
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
         try {
             UUID currentUserId = authUtils.getCurrentUserId();
-            FriendRequest[] requests = friendsService.getPendingRequests(currentUserId, page, size);
+            FriendRequest[] requests = friendsService.getPendingRequests(currentUserId, PageCursor.decodeLong(cursor), page, size);
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
-            response.put("data", requests);
+            response.put("data", friendsService.withUserInfo(requests, currentUserId));
             response.put("count", requests.length);
             response.put("page", page);
             response.put("size", size);
+            response.put("nextCursor", nextCursor(requests, size));
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -51,21 +64,25 @@ public class FriendsController {
     @Operation(summary = "Lấy danh sách người đang follow mình (Followers)")
     public ResponseEntity<?> getFollowers(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor
     ) {
+        page = Math.max(0, page);
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
         try {
             UUID currentUserId = authUtils.getCurrentUserId();
-            FriendRequest[] followers = friendsService.getFollowers(currentUserId, page, size);
+            FriendRequest[] followers = friendsService.getFollowers(currentUserId, PageCursor.decodeLong(cursor), page, size);
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
-            response.put("data", followers);
+            response.put("data", friendsService.withUserInfo(followers, currentUserId));
             response.put("count", followers.length);
             response.put("page", page);
             response.put("size", size);
+            response.put("nextCursor", nextCursor(followers, size));
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -74,21 +91,25 @@ public class FriendsController {
     @Operation(summary = "Lấy danh sách người mình đang follow (Following)")
     public ResponseEntity<?> getFollowing(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor
     ) {
+        page = Math.max(0, page);
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
         try {
             UUID currentUserId = authUtils.getCurrentUserId();
-            FriendRequest[] following = friendsService.getFollowing(currentUserId, page, size);
+            FriendRequest[] following = friendsService.getFollowing(currentUserId, PageCursor.decodeLong(cursor), page, size);
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
-            response.put("data", following);
+            response.put("data", friendsService.withUserInfo(following, currentUserId));
             response.put("count", following.length);
             response.put("page", page);
             response.put("size", size);
+            response.put("nextCursor", nextCursor(following, size));
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -98,21 +119,25 @@ public class FriendsController {
     public ResponseEntity<?> getUserFollowers(
             @PathVariable String userId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor
     ) {
+        page = Math.max(0, page);
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
         try {
             UUID targetUserId = UUID.fromString(userId);
-            FriendRequest[] followers = friendsService.getFollowers(targetUserId, page, size);
+            FriendRequest[] followers = friendsService.getFollowers(targetUserId, PageCursor.decodeLong(cursor), page, size);
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
-            response.put("data", followers);
+            response.put("data", friendsService.withUserInfo(followers, targetUserId));
             response.put("count", followers.length);
             response.put("page", page);
             response.put("size", size);
+            response.put("nextCursor", nextCursor(followers, size));
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -122,21 +147,25 @@ public class FriendsController {
     public ResponseEntity<?> getUserFollowing(
             @PathVariable String userId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor
     ) {
+        page = Math.max(0, page);
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
         try {
             UUID targetUserId = UUID.fromString(userId);
-            FriendRequest[] following = friendsService.getFollowing(targetUserId, page, size);
+            FriendRequest[] following = friendsService.getFollowing(targetUserId, PageCursor.decodeLong(cursor), page, size);
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
-            response.put("data", following);
+            response.put("data", friendsService.withUserInfo(following, targetUserId));
             response.put("count", following.length);
             response.put("page", page);
             response.put("size", size);
+            response.put("nextCursor", nextCursor(following, size));
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -164,7 +193,44 @@ public class FriendsController {
             response.put("followStatus", status);
             
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
+            return authUtils.buildErrorResponse(e.getMessage());
+        }
+    }
+
+    @PostMapping("/status/batch")
+    @Operation(
+        summary = "Kiểm tra trạng thái follow với nhiều user",
+        description = "Tối đa " + MAX_STATUS_BATCH + " user mỗi request. Giá trị status giống GET /status/{userId}"
+    )
+    public ResponseEntity<?> checkFollowStatuses(@RequestBody com.oursocialnetworks.dto.FollowStatusBatchRequest request) {
+        try {
+            UUID currentUserId = authUtils.getCurrentUserId();
+
+            if (request.getUserIds() == null || request.getUserIds().isEmpty()) {
+                return authUtils.buildErrorResponse("userIds là bắt buộc!");
+            }
+            if (request.getUserIds().size() > MAX_STATUS_BATCH) {
+                return authUtils.buildErrorResponse("Tối đa " + MAX_STATUS_BATCH + " user mỗi request!");
+            }
+
+            List<UUID> targetIds = new ArrayList<>(request.getUserIds().size());
+            for (String id : request.getUserIds()) {
+                try {
+                    targetIds.add(UUID.fromString(id));
+                } catch (IllegalArgumentException e) {
+                    return authUtils.buildErrorResponse("userId không hợp lệ: " + id);
+                }
+            }
+
+            Map<UUID, String> statuses = friendsService.checkFollowStatuses(currentUserId, targetIds);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("followStatuses", statuses);
+
+            return ResponseEntity.ok(response);
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -188,7 +254,7 @@ public class FriendsController {
             response.put("data", request);
             
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -207,7 +273,7 @@ public class FriendsController {
             response.put("message", success ? "Đã unfollow!" : "Không tìm thấy quan hệ follow");
             
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -245,7 +311,7 @@ public class FriendsController {
             response.put("data", friendRequest);
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -263,7 +329,7 @@ public class FriendsController {
             response.put("data", request);
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -281,7 +347,7 @@ public class FriendsController {
             response.put("data", request);
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
@@ -298,8 +364,15 @@ public class FriendsController {
             response.put("message", "Đã hủy kết bạn!");
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return authUtils.buildErrorResponse(e.getMessage());
         }
     }
+
+    /**
+     * Trang đầy → còn trang sau, cursor = id cuối của trang hiện tại
+     */
+    private static String nextCursor(FriendRequest[] rows, int size) {
+        return rows.length > 0 && rows.length >= size ? PageCursor.encode(rows[rows.length - 1].getId()) : null;
+    }
 }
@@ -1,7 +1,21 @@
 package com.oursocialnetworks.controller;
 
+import com.oursocialnetworks.component.HttpClientPools;
+import com.oursocialnetworks.component.SupabaseResilience;
+import com.oursocialnetworks.component.VerifiedTokenCache;
+import com.oursocialnetworks.config.ThreadingConfig;
+import com.oursocialnetworks.service.EmailOutbox;
+import com.oursocialnetworks.service.LoginNegativeCache;
+import com.oursocialnetworks.service.OtpService;
+import com.oursocialnetworks.service.PasswordHashingService;
+import com.oursocialnetworks.service.RelationshipCache;
+import com.oursocialnetworks.service.RoleCache;
+import com.oursocialnetworks.service.SocialGraphIndex;
+import com.oursocialnetworks.service.UserSearchIndex;
+import com.oursocialnetworks.service.UserCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,9 +29,24 @@ import java.util.Map;
 
 @RestController
 @RequestMapping("/api")
+@RequiredArgsConstructor
 @Tag(name = "Health Check", description = "Server health monitoring endpoints")
 public class HealthCheckController {
 
+    private final HttpClientPools httpClientPools;
+    private final SupabaseResilience resilience;
+    private final UserCache userCache;
+    private final RoleCache roleCache;
+    private final RelationshipCache relationshipCache;
+    private final SocialGraphIndex socialGraph;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final ThreadingConfig threadingConfig;
+    private final LoginNegativeCache loginNegativeCache;
+    private final PasswordHashingService passwordHashing;
+    private final OtpService otpService;
+    private final EmailOutbox emailOutbox;
+    private final UserSearchIndex userSearchIndex;
+
     @Operation(summary = "Health check endpoint", description = "Check if server is alive and running")
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> healthCheck() {
@@ -43,6 +72,57 @@ public class HealthCheckController {
         info.put("version", "1.0.0");
         info.put("environment", System.getenv("RENDER") != null ? "production" : "local");
         info.put("uptime", ManagementFactory.getRuntimeMXBean().getUptime());
+        info.put("javaVersion", System.getProperty("java.version"));
+        info.put("virtualThreads", threadingConfig.isVirtualThreadsActive());
         return ResponseEntity.ok(info);
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "HTTP pool stats", description = "Leased / pending / available connections per upstream domain")
+    @GetMapping("/health/pools")
+    public ResponseEntity<Map<String, Map<String, Integer>>> poolStats() {
+        return ResponseEntity.ok(httpClientPools.stats());
+    }
+
+    @Operation(summary = "Upstream resilience", description = "Circuit state, failure rate and free bulkhead slots per Supabase domain")
+    @GetMapping("/health/upstreams")
+    public ResponseEntity<Map<String, Map<String, Object>>> upstreamStats() {
+        return ResponseEntity.ok(resilience.stats());
+    }
+
+    @Operation(summary = "Cache stats", description = "Hit / miss / size of in-process caches")
+    @GetMapping("/health/caches")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        Map<String, Object> caches = new HashMap<>();
+        caches.put("user", userCache.stats());
+        caches.put("role", roleCache.stats());
+        caches.put("relationship", relationshipCache.stats());
+        caches.put("jwt", verifiedTokenCache.stats());
+        caches.put("loginNegative", loginNegativeCache.stats());
+        caches.put("otp", otpService.stats());
+        return ResponseEntity.ok(caches);
+    }
+
+    @Operation(summary = "Password hashing pool", description = "Threads / queue / rejected / rehashed of the BCrypt executor")
+    @GetMapping("/health/password")
+    public ResponseEntity<Map<String, Object>> passwordHashingStats() {
+        return ResponseEntity.ok(passwordHashing.stats());
+    }
+
+    @Operation(summary = "Email outbox", description = "Queue depth / retries / spill / send latency of the email outbox")
+    @GetMapping("/health/email")
+    public ResponseEntity<Map<String, Object>> emailOutboxStats() {
+        return ResponseEntity.ok(emailOutbox.stats());
+    }
+
+    @Operation(summary = "Social graph index", description = "Node / edge count and estimated memory of the in-memory friends graph")
+    @GetMapping("/health/graph")
+    public ResponseEntity<Map<String, Object>> graphFootprint() {
+        return ResponseEntity.ok(socialGraph.footprint());
+    }
+
+    @Operation(summary = "User search index", description = "User / gram count, pending updates and estimated memory of the in-memory user search index")
+    @GetMapping("/health/search")
+    public ResponseEntity<Map<String, Object>> searchFootprint() {
+        return ResponseEntity.ok(userSearchIndex.footprint());
+    }
+}
@@ -1,5 +1,6 @@
 package com.oursocialnetworks.controller;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
@@ -11,6 +12,7 @@ import com.oursocialnetworks.service.EmailService;
 import java.util.HashMap;
 import java.util.Map;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/debug")
 public class OAuth2DebugController {
@@ -179,7 +181,7 @@ public class OAuth2DebugController {
                 return ResponseEntity.status(500).body(Map.of("error", "EmailService not available"));
             }
             
-            System.out.println("🧪 [TEST] Sending email to: " + email);
+            log.info("Debug: sending test email to {}", email);
             boolean sent = emailService.sendTempPasswordEmail(email, username, tempPassword);
             
             return ResponseEntity.ok(Map.of(
@@ -223,7 +225,7 @@ public class OAuth2DebugController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Email is required"));
             }
 
-            System.out.println("🔥 [FORCE] Force sending email to: " + email);
+            log.info("Debug: force sending email to {}", email);
             
             // Test cả 2 service
             Map<String, Object> result = new HashMap<>();
@@ -1,10 +1,13 @@
 package com.oursocialnetworks.controller;
 
 import com.oursocialnetworks.dto.AuthResponse;
+import com.oursocialnetworks.entity.Role;
 import com.oursocialnetworks.entity.User;
+import com.oursocialnetworks.service.EmailService;
 import com.oursocialnetworks.service.OtpService;
-import com.oursocialnetworks.service.ResendEmailService;
+import com.oursocialnetworks.service.PasswordHashingService;
 import com.oursocialnetworks.service.SupabaseUserService;
+import com.oursocialnetworks.exception.BusinessException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,11 +15,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.RestClientException;
 
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 @Controller
 @Tag(name = "Registration", description = "User registration endpoints")
@@ -29,7 +34,10 @@ public class RegisterController {
     private OtpService otpService;
 
     @Autowired
-    private ResendEmailService resendEmailService;
+    private EmailService emailService;
+
+    @Autowired
+    private PasswordHashingService passwordHashing;
 
     @GetMapping("/register")
     public String registerPage() {
@@ -66,7 +74,7 @@ public class RegisterController {
                 "exists", exists,
                 "message", exists ? "Email này đã được sử dụng!" : "Email có thể sử dụng."
             ));
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
     }
@@ -97,7 +105,8 @@ public class RegisterController {
 
             // Generate and send OTP
             String otp = otpService.generateOtp(email, "register");
-            boolean sent = resendEmailService.sendOtpEmail(email, otp, "register");
+            // Chỉ xếp vào email outbox, không chờ gửi xong
+            boolean sent = emailService.sendOtpEmail(email, otp, "register");
 
             if (sent) {
                 return ResponseEntity.ok(Map.of(
@@ -109,7 +118,7 @@ public class RegisterController {
                     "error", "Không thể gửi email! Vui lòng thử lại sau."
                 ));
             }
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
     }
@@ -158,19 +167,9 @@ public class RegisterController {
         }
 
         try {
-            // Get default role
-            Map<String, String> roleParams = new HashMap<>();
-            roleParams.put("role", "eq.User");
-            roleParams.put("status", "eq.1");
-            roleParams.put("limit", "1");
-            
-            ResponseEntity<com.oursocialnetworks.entity.Role[]> roleResponse = 
-                userService.get("role", roleParams, com.oursocialnetworks.entity.Role[].class);
-            
-            UUID roleId = null;
-            if (roleResponse.getBody() != null && roleResponse.getBody().length > 0) {
-                roleId = roleResponse.getBody()[0].getId();
-            }
+            // Get default role (RoleCache)
+            Role defaultRole = userService.findRole(SupabaseUserService.DEFAULT_ROLE);
+            UUID roleId = defaultRole != null ? defaultRole.getId() : null;
 
             // Create username if not provided
             if (username == null || username.trim().isEmpty()) {
@@ -183,7 +182,7 @@ public class RegisterController {
             newUser.put("gmail", email);
             newUser.put("username", username);
             newUser.put("username_login", username);
-            newUser.put("password_login", password);
+            newUser.put("password_login", passwordHashing.hash(password));
             newUser.put("status", 1); // Active
             newUser.put("provider", "email");
             newUser.put("email_verified", true);
@@ -205,7 +204,11 @@ public class RegisterController {
 
             return ResponseEntity.status(500).body(AuthResponse.error("Không thể tạo tài khoản! Vui lòng thử lại."));
 
-        } catch (Exception e) {
+        } catch (RejectedExecutionException e) {
+            // Pool hash mật khẩu đang quá tải; OTP chưa bị xóa nên client có thể gửi lại
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(AuthResponse.error(e.getMessage()));
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(500).body(AuthResponse.error("Lỗi hệ thống: " + e.getMessage()));
         }
     }
@@ -236,7 +239,8 @@ public class RegisterController {
 
             // Generate and send OTP
             String otp = otpService.generateOtp(email, "forgot");
-            boolean sent = resendEmailService.sendOtpEmail(email, otp, "forgot");
+            // Chỉ xếp vào email outbox, không chờ gửi xong
+            boolean sent = emailService.sendOtpEmail(email, otp, "forgot");
 
             if (sent) {
                 return ResponseEntity.ok(Map.of(
@@ -248,7 +252,7 @@ public class RegisterController {
                     "error", "Không thể gửi email! Vui lòng thử lại sau."
                 ));
             }
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
     }
@@ -298,7 +302,7 @@ public class RegisterController {
         try {
             // Update password
             Map<String, Object> updateData = new HashMap<>();
-            updateData.put("password_login", newPassword);
+            updateData.put("password_login", passwordHashing.hash(newPassword));
             updateData.put("updateDate", LocalDate.now().toString());
 
             Map<String, String> updateParams = new HashMap<>();
@@ -313,7 +317,11 @@ public class RegisterController {
                 null, null, null, false, null
             ));
 
-        } catch (Exception e) {
+        } catch (RejectedExecutionException e) {
+            // Pool hash mật khẩu đang quá tải; OTP chưa bị xóa nên client có thể gửi lại
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(AuthResponse.error(e.getMessage()));
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(500).body(AuthResponse.error("Lỗi hệ thống: " + e.getMessage()));
         }
     }
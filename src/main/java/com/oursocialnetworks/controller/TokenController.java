@@ -4,6 +4,7 @@ import com.oursocialnetworks.entity.User;
 import com.oursocialnetworks.service.JwtService;
 import com.oursocialnetworks.service.SupabaseUserService;
 import com.oursocialnetworks.dto.ApiResponse;
+import com.oursocialnetworks.exception.BusinessException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -14,6 +15,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.RestClientException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -69,7 +71,7 @@ public class TokenController {
             return ResponseEntity.ok(ApiResponse.success(
                 "Tạo token mới thành công", tokenData));
 
-        } catch (Exception e) {
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(ApiResponse.error("Lỗi khi tạo token: " + e.getMessage(), 500));
         }
@@ -1,20 +1,25 @@
 package com.oursocialnetworks.controller;
 
+import com.oursocialnetworks.component.PageCursor;
 import com.oursocialnetworks.entity.User;
 import com.oursocialnetworks.service.SupabaseUserService;
 import com.oursocialnetworks.dto.ApiResponse;
+import com.oursocialnetworks.exception.BusinessException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.RestClientException;
 
 import java.util.Arrays;
 import java.util.List;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/users")
 @RequiredArgsConstructor
@@ -24,21 +29,30 @@ public class UserController {
 
     private final SupabaseUserService supabaseService;
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Operation(
             summary = "Get all active users",
-            description = "Retrieve all users with status = 1 (active users only)",
+            description = "Retrieve users with status = 1 (active users only), paged by cursor. " +
+                    "Pass nextCursor from the previous response as cursor to get the next page.",
             security = @SecurityRequirement(name = "Bearer Authentication")
     )
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<ApiResponse<List<User>>> getAllUsers() {
+    public ResponseEntity<ApiResponse<List<User>>> getAllUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size
+    ) {
         try {
-            ResponseEntity<User[]> response = supabaseService.getAllActiveUsers(User[].class);
+            int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+            ResponseEntity<User[]> response = supabaseService.getActiveUsersPage(
+                    PageCursor.decodeUuid(cursor), pageSize, User[].class);
             User[] users = response.getBody();
 
             if (users != null) {
                 List<User> userList = Arrays.asList(users);
+                String nextCursor = users.length == pageSize ? PageCursor.encode(users[users.length - 1].getId()) : null;
                 ApiResponse<List<User>> apiResponse = ApiResponse.success(
-                    "Lấy danh sách người dùng thành công", userList);
+                    "Lấy danh sách người dùng thành công", userList, nextCursor);
                 return ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(apiResponse);
@@ -49,9 +63,8 @@ public class UserController {
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(apiResponse);
             }
-        } catch (Exception e) {
-            System.err.println("ERROR in getAllUsers: " + e.getMessage());
-            e.printStackTrace();
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
+            log.error("getAllUsers failed", e);
             ApiResponse<List<User>> apiResponse = ApiResponse.error(
                 "Lỗi khi lấy danh sách người dùng: " + e.getMessage(), 500);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -96,9 +109,8 @@ public class UserController {
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(apiResponse);
             }
-        } catch (Exception e) {
-            System.err.println("ERROR in createUser: " + e.getMessage());
-            e.printStackTrace();
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
+            log.error("createUser failed", e);
             ApiResponse<User> apiResponse = ApiResponse.error(
                 "Lỗi khi tạo người dùng: " + e.getMessage(), 500);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -136,9 +148,8 @@ public class UserController {
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(apiResponse);
             }
-        } catch (Exception e) {
-            System.err.println("ERROR in updateUser: " + e.getMessage());
-            e.printStackTrace();
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
+            log.error("updateUser failed", e);
             ApiResponse<User> apiResponse = ApiResponse.error(
                 "Lỗi khi cập nhật người dùng: " + e.getMessage(), 500);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -154,41 +165,28 @@ public class UserController {
     )
     @DeleteMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ApiResponse<User>> deleteUser(@PathVariable String id) {
-        System.out.println("========== DELETE USER DEBUG START ==========");
-        System.out.println("Deleting user with ID: " + id);
-        
         try {
-            System.out.println("Parsing UUID...");
             java.util.UUID userId = java.util.UUID.fromString(id);
-            System.out.println("UUID parsed successfully: " + userId);
-            
-            System.out.println("Calling softDeleteUser...");
             ResponseEntity<User[]> response = supabaseService.softDeleteUser(userId, User[].class);
-            System.out.println("Service call completed. Response status: " + response.getStatusCode());
-            
             User[] deletedUsers = response.getBody();
-            System.out.println("Response body length: " + (deletedUsers != null ? deletedUsers.length : "null"));
 
             if (deletedUsers != null && deletedUsers.length > 0) {
                 User deletedUser = deletedUsers[0];
-                System.out.println("User deleted successfully: " + deletedUser.getId());
+                log.info("User {} soft-deleted", deletedUser.getId());
                 ApiResponse<User> apiResponse = ApiResponse.success(
                     "Xóa người dùng thành công (status = 0)", deletedUser);
                 return ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(apiResponse);
             } else {
-                System.out.println("No user found with ID: " + id);
                 ApiResponse<User> apiResponse = ApiResponse.error(
                     "Không tìm thấy người dùng với ID: " + id, 404);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(apiResponse);
             }
-        } catch (Exception e) {
-            System.err.println("ERROR in deleteUser: " + e.getMessage());
-            System.err.println("Error class: " + e.getClass().getSimpleName());
-            e.printStackTrace();
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
+            log.error("deleteUser failed for {}", id, e);
             ApiResponse<User> apiResponse = ApiResponse.error(
                 "Lỗi khi xóa người dùng: " + e.getMessage(), 500);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -204,41 +202,28 @@ public class UserController {
     )
     @PatchMapping(value = "/{id}/restore", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ApiResponse<User>> restoreUser(@PathVariable String id) {
-        System.out.println("========== RESTORE USER DEBUG START ==========");
-        System.out.println("Restoring user with ID: " + id);
-        
         try {
-            System.out.println("Parsing UUID...");
             java.util.UUID userId = java.util.UUID.fromString(id);
-            System.out.println("UUID parsed successfully: " + userId);
-            
-            System.out.println("Calling restoreUser...");
             ResponseEntity<User[]> response = supabaseService.restoreUser(userId, User[].class);
-            System.out.println("Service call completed. Response status: " + response.getStatusCode());
-            
             User[] restoredUsers = response.getBody();
-            System.out.println("Response body length: " + (restoredUsers != null ? restoredUsers.length : "null"));
 
             if (restoredUsers != null && restoredUsers.length > 0) {
                 User restoredUser = restoredUsers[0];
-                System.out.println("User restored successfully: " + restoredUser.getId());
+                log.info("User {} restored", restoredUser.getId());
                 ApiResponse<User> apiResponse = ApiResponse.success(
                     "Khôi phục người dùng thành công (status = 1)", restoredUser);
                 return ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(apiResponse);
             } else {
-                System.out.println("No user found with ID: " + id);
                 ApiResponse<User> apiResponse = ApiResponse.error(
                     "Không tìm thấy người dùng với ID: " + id, 404);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(apiResponse);
             }
-        } catch (Exception e) {
-            System.err.println("ERROR in restoreUser: " + e.getMessage());
-            System.err.println("Error class: " + e.getClass().getSimpleName());
-            e.printStackTrace();
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
+            log.error("restoreUser failed for {}", id, e);
             ApiResponse<User> apiResponse = ApiResponse.error(
                 "Lỗi khi khôi phục người dùng: " + e.getMessage(), 500);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -254,13 +239,9 @@ public class UserController {
     @GetMapping(value = "/test-delete/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ApiResponse<String>> testDelete(@PathVariable String id) {
         try {
-            System.out.println("========== TEST DELETE DEBUG ==========");
-            System.out.println("Testing delete for user ID: " + id);
-            
             java.util.UUID userId = java.util.UUID.fromString(id);
             ResponseEntity<User[]> response = supabaseService.softDeleteUser(userId, User[].class);
-            
-            System.out.println("Test delete completed. Status: " + response.getStatusCode());
+            log.info("Test delete of user {}: {}", id, response.getStatusCode());
             
             ApiResponse<String> apiResponse = ApiResponse.success(
                 "Test delete completed. Status: " + response.getStatusCode(), 
@@ -268,9 +249,8 @@ public class UserController {
             return ResponseEntity.ok()
                     .contentType(MediaType.APPLICATION_JSON)
                     .body(apiResponse);
-        } catch (Exception e) {
-            System.err.println("ERROR in testDelete: " + e.getMessage());
-            e.printStackTrace();
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
+            log.error("testDelete failed for {}", id, e);
             ApiResponse<String> apiResponse = ApiResponse.error(
                 "Test delete error: " + e.getMessage(), 500);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -286,13 +266,9 @@ public class UserController {
     @GetMapping(value = "/test-restore/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ApiResponse<String>> testRestore(@PathVariable String id) {
         try {
-            System.out.println("========== TEST RESTORE DEBUG ==========");
-            System.out.println("Testing restore for user ID: " + id);
-            
             java.util.UUID userId = java.util.UUID.fromString(id);
             ResponseEntity<User[]> response = supabaseService.restoreUser(userId, User[].class);
-            
-            System.out.println("Test restore completed. Status: " + response.getStatusCode());
+            log.info("Test restore of user {}: {}", id, response.getStatusCode());
             
             ApiResponse<String> apiResponse = ApiResponse.success(
                 "Test restore completed. Status: " + response.getStatusCode(), 
@@ -300,9 +276,8 @@ public class UserController {
             return ResponseEntity.ok()
                     .contentType(MediaType.APPLICATION_JSON)
                     .body(apiResponse);
-        } catch (Exception e) {
-            System.err.println("ERROR in testRestore: " + e.getMessage());
-            e.printStackTrace();
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
+            log.error("testRestore failed for {}", id, e);
             ApiResponse<String> apiResponse = ApiResponse.error(
                 "Test restore error: " + e.getMessage(), 500);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -336,9 +311,8 @@ public class UserController {
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(apiResponse);
             }
-        } catch (Exception e) {
-            System.err.println("ERROR in getDeletedUsers: " + e.getMessage());
-            e.printStackTrace();
+        } catch (BusinessException | RestClientException | IllegalArgumentException e) {
+            log.error("getDeletedUsers failed", e);
             ApiResponse<List<User>> apiResponse = ApiResponse.error(
                 "Lỗi khi lấy danh sách người dùng đã xóa: " + e.getMessage(), 500);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -1,5 +1,6 @@
 package com.oursocialnetworks.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -23,11 +24,19 @@ public class ApiResponse<T> {
     @Schema(description = "Dữ liệu trả về")
     private T data;
 
+    @Schema(description = "Cursor trang sau (null nếu hết dữ liệu)")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
     public static <T> ApiResponse<T> success(String message, T data) {
-        return new ApiResponse<>("success", message, 200, data);
+        return new ApiResponse<>("success", message, 200, data, null);
+    }
+
+    public static <T> ApiResponse<T> success(String message, T data, String nextCursor) {
+        return new ApiResponse<>("success", message, 200, data, nextCursor);
     }
 
     public static <T> ApiResponse<T> error(String message, int code) {
-        return new ApiResponse<>("error", message, code, null);
+        return new ApiResponse<>("error", message, code, null, null);
     }
 }
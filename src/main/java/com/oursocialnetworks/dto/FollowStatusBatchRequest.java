@@ -0,0 +1,15 @@
+package com.oursocialnetworks.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "Request để kiểm tra trạng thái follow với nhiều user")
+public class FollowStatusBatchRequest {
+
+    @Schema(description = "Danh sách ID user cần kiểm tra (tối đa 100)",
+            example = "[\"123e4567-e89b-12d3-a456-426614174000\"]", required = true)
+    private List<String> userIds;
+}
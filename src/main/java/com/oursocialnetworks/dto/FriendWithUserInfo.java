@@ -1,7 +1,7 @@
 package com.oursocialnetworks.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.oursocialnetworks.entity.FriendRequest;
-import com.oursocialnetworks.entity.User;
 import lombok.Data;
 
 /**
@@ -10,20 +10,23 @@ import lombok.Data;
 @Data
 public class FriendWithUserInfo {
     
-    // Friend relationship info
+    // Friend relationship info (giữ tên field JSON giống FriendRequest)
     private Long id;
+    @JsonProperty("id_user")
     private String idUser;
+    @JsonProperty("friend_id")
     private String friendId;
+    @JsonProperty("status_fr")
     private String statusFr;
     private Integer status;
     
     // User details (của người được follow/follower)
-    private User userInfo;
+    private UserCard userInfo;
     
     /**
-     * Constructor từ FriendRequest + User
+     * Constructor từ FriendRequest + UserCard
      */
-    public FriendWithUserInfo(FriendRequest friendRequest, User user) {
+    public FriendWithUserInfo(FriendRequest friendRequest, UserCard user) {
         this.id = friendRequest.getId();
         this.idUser = friendRequest.getIdUser().toString();
         this.friendId = friendRequest.getFriendId().toString();
@@ -0,0 +1,34 @@
+package com.oursocialnetworks.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.oursocialnetworks.entity.User;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Schema(description = "Thông tin rút gọn của user (danh sách bạn bè, kết quả tìm kiếm)")
+public class UserCard {
+
+    private UUID id;
+
+    @Schema(description = "Tên hiển thị", example = "Nguyễn Văn A")
+    private String username;
+
+    @JsonProperty("username_login")
+    private String usernameLogin;
+
+    @Schema(description = "URL ảnh đại diện")
+    private String image;
+
+    public static UserCard of(User user) {
+        return new UserCard(user.getId(), user.getUsername(), user.getUsernameLogin(), user.getImage());
+    }
+}
@@ -0,0 +1,51 @@
+package com.oursocialnetworks.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.oursocialnetworks.entity.User;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Schema(description = "Trang cá nhân công khai của user")
+public class UserProfile {
+
+    private UUID id;
+
+    private String username;
+
+    @JsonProperty("username_login")
+    private String usernameLogin;
+
+    private String image;
+
+    private String description;
+
+    @JsonProperty("place_of_residence")
+    private String placeOfResidence;
+
+    @JsonProperty("date-of-birth")
+    private LocalDate dateOfBirth;
+
+    @JsonProperty("createDate")
+    private LocalDate createDate;
+
+    public static UserProfile of(User user) {
+        UserProfile profile = new UserProfile();
+        profile.setId(user.getId());
+        profile.setUsername(user.getUsername());
+        profile.setUsernameLogin(user.getUsernameLogin());
+        profile.setImage(user.getImage());
+        profile.setDescription(user.getDescription());
+        profile.setPlaceOfResidence(user.getPlaceOfResidence());
+        profile.setDateOfBirth(user.getDateOfBirth());
+        profile.setCreateDate(user.getCreateDate());
+        return profile;
+    }
+}
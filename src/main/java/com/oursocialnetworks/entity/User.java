@@ -66,8 +66,8 @@ public class User {
     @JsonProperty("role_id")
     private UUID roleId; // Foreign key UUID
 
-    // JOIN Role(*)
+    // Gán từ RoleCache theo role_id (id + tên role), không còn embed Role(...)
     @JsonProperty("Role")
     @Schema(description = "Role info (read-only)", accessMode = Schema.AccessMode.READ_ONLY)
-    private Role role;  // Supabase tự trả object Role
+    private Role role;
 }
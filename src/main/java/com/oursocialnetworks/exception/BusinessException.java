@@ -0,0 +1,13 @@
+package com.oursocialnetworks.exception;
+
+/**
+ * Lỗi nghiệp vụ có message dành cho client (không tìm thấy, không có quyền, đã tồn tại, ...).
+ * Controller bắt loại này cùng RestClientException / IllegalArgumentException thay vì catch (Exception),
+ * nên lỗi khác (UpstreamUnavailableException, bug) vẫn tới GlobalExceptionHandler.
+ */
+public class BusinessException extends RuntimeException {
+
+    public BusinessException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,6 @@
 package com.oursocialnetworks.exception;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -9,6 +10,7 @@ import org.springframework.web.context.request.WebRequest;
 import java.util.HashMap;
 import java.util.Map;
 
+@Slf4j
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
@@ -25,11 +27,7 @@ public class GlobalExceptionHandler {
         errorResponse.put("timestamp", System.currentTimeMillis());
         
         // Log lỗi chi tiết cho dev
-        System.err.println("=== GLOBAL EXCEPTION ===");
-        System.err.println("Path: " + request.getDescription(false));
-        System.err.println("Error: " + ex.getMessage());
-        ex.printStackTrace();
-        System.err.println("========================");
+        log.error("Unhandled exception at {}", request.getDescription(false), ex);
 
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
     }
@@ -47,15 +45,43 @@ public class GlobalExceptionHandler {
         errorResponse.put("timestamp", System.currentTimeMillis());
         
         // Log lỗi chi tiết cho dev
-        System.err.println("=== RUNTIME EXCEPTION ===");
-        System.err.println("Path: " + request.getDescription(false));
-        System.err.println("Error: " + ex.getMessage());
-        ex.printStackTrace();
-        System.err.println("=========================");
+        log.error("Runtime exception at {}", request.getDescription(false), ex);
 
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
     }
 
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<Map<String, Object>> handleUpstreamUnavailable(
+            UpstreamUnavailableException ex, WebRequest request) {
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("status", "error");
+        errorResponse.put("message", ex.getMessage());
+        errorResponse.put("error", "Service Unavailable");
+        errorResponse.put("code", 503);
+        errorResponse.put("path", request.getDescription(false).replace("uri=", ""));
+        errorResponse.put("timestamp", System.currentTimeMillis());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(Math.max(1, (ex.getRetryAfterMs() + 999) / 1000)))
+                .body(errorResponse);
+    }
+
+    @ExceptionHandler(BusinessException.class)
+    public ResponseEntity<Map<String, Object>> handleBusinessException(
+            BusinessException ex, WebRequest request) {
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("status", "error");
+        errorResponse.put("message", ex.getMessage());
+        errorResponse.put("error", "Bad Request");
+        errorResponse.put("code", 400);
+        errorResponse.put("path", request.getDescription(false).replace("uri=", ""));
+        errorResponse.put("timestamp", System.currentTimeMillis());
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<Map<String, Object>> handleIllegalArgumentException(
             IllegalArgumentException ex, WebRequest request) {
@@ -0,0 +1,20 @@
+package com.oursocialnetworks.exception;
+
+import lombok.Getter;
+
+/**
+ * Supabase domain đang bị chặn (circuit mở / bulkhead đầy): fail ngay thay vì chờ timeout.
+ * GlobalExceptionHandler trả 503 + Retry-After.
+ */
+@Getter
+public class UpstreamUnavailableException extends RuntimeException {
+
+    private final String domain;
+    private final long retryAfterMs;
+
+    public UpstreamUnavailableException(String domain, String reason, long retryAfterMs) {
+        super("Dịch vụ " + domain + " tạm thời không khả dụng (" + reason + "), vui lòng thử lại sau");
+        this.domain = domain;
+        this.retryAfterMs = retryAfterMs;
+    }
+}
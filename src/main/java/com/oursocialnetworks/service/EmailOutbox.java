@@ -0,0 +1,488 @@
+package com.oursocialnetworks.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.oursocialnetworks.component.PrivateFiles;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.TraceContext;
+import io.micrometer.tracing.Tracer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hàng đợi email: queue có giới hạn + pool worker cố định gửi lần lượt theo thứ tự transport
+ * (app.email.outbox.transports, mặc định resend rồi smtp). Gửi lỗi → retry exponential backoff có jitter,
+ * quá max-attempts thì bỏ. Queue đầy hoặc app tắt → ghi mail ra spill file (JSON lines), nạp lại định kỳ / khi khởi động.
+ *
+ * Spill file chứa OTP / mật khẩu tạm nên nằm trong thư mục của app (mặc định ./data, không phải /tmp dùng chung),
+ * thư mục và file chỉ owner đọc được; mail quá hạn (OTP hết hiệu lực) bị bỏ khi nạp lại.
+ * Dòng hỏng (vd. ghi dở khi crash) bị bỏ qua và đếm, không chặn các mail còn lại.
+ *
+ * Metrics: email.send (mỗi lần thử 1 transport), email.outbox.delivery (cả lượt gửi qua các transport),
+ * email.outbox.queue / retrying / spill (gauge), email.outbox.sent / failed.attempts / dropped / spilled /
+ * spill.corrupt (counter).
+ * Tracing: mail mang traceparent của request đã xếp nó, mỗi lượt gửi là span "email.deliver" trong cùng trace.
+ */
+@Slf4j
+@Service
+public class EmailOutbox {
+
+    public enum Kind { OTP, TEMP_PASSWORD, NEW_ACCOUNT }
+
+    @Data
+    @NoArgsConstructor
+    public static class Mail {
+        private String id;
+        private Kind kind;
+        private String to;
+        private Map<String, String> params = new HashMap<>();
+        private int attempts;
+        private long createdAt;
+        private long expiresAt;
+        // W3C traceparent của request xếp mail (giữ qua retry / spill file)
+        private String traceParent;
+    }
+
+    private final ResendEmailService resend;
+    private final SmtpEmailService smtp;
+    private final ObjectMapper mapper;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+
+    private final BlockingQueue<Mail> queue;
+    private final int capacity;
+    private final int workerCount;
+    private final int maxAttempts;
+    private final long backoffInitialMs;
+    private final long backoffMaxMs;
+    private final List<String> transports;
+    private final Path spillFile;
+    private final long otpTtlMs;
+
+    private final ExecutorService workers;
+    private final ScheduledExecutorService retryScheduler;
+    private final Map<String, Mail> delayed = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Boolean>> waiters = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicInteger spillSize = new AtomicInteger();
+    private final AtomicLong spillCorrupt = new AtomicLong();
+    private final Timer deliveryTimer;
+
+    public EmailOutbox(ResendEmailService resend, SmtpEmailService smtp, ObjectMapper mapper, MeterRegistry meterRegistry,
+                       ObjectProvider<Tracer> tracer,
+                       @Value("${app.email.outbox.capacity:1000}") int capacity,
+                       @Value("${app.email.outbox.workers:2}") int workerCount,
+                       @Value("${app.email.outbox.max-attempts:5}") int maxAttempts,
+                       @Value("${app.email.outbox.backoff-initial-ms:1000}") long backoffInitialMs,
+                       @Value("${app.email.outbox.backoff-max-ms:60000}") long backoffMaxMs,
+                       @Value("${app.email.outbox.transports:resend,smtp}") List<String> transports,
+                       @Value("${app.email.outbox.spill-file:data/email-outbox.jsonl}") String spillFile,
+                       @Value("${app.otp.ttl-seconds:300}") long otpTtlSeconds) {
+        this.resend = resend;
+        this.smtp = smtp;
+        this.mapper = mapper;
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer.getIfAvailable(() -> Tracer.NOOP);
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workerCount = workerCount;
+        this.maxAttempts = maxAttempts;
+        this.backoffInitialMs = backoffInitialMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.transports = transports.stream().map(String::trim).map(String::toLowerCase).toList();
+        this.spillFile = Paths.get(spillFile);
+        this.otpTtlMs = TimeUnit.SECONDS.toMillis(otpTtlSeconds);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "email-outbox-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "email-outbox-retry");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // p50 / p99 tính sẵn ở client cho /api/health/email, histogram cho Prometheus
+        this.deliveryTimer = Timer.builder("email.outbox.delivery")
+                .description("Time to deliver one mail, across all transports tried")
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("email.outbox.queue", queue, Collection::size).register(meterRegistry);
+        Gauge.builder("email.outbox.retrying", delayed, Map::size).register(meterRegistry);
+        Gauge.builder("email.outbox.spill", spillSize, AtomicInteger::get).register(meterRegistry);
+        FunctionCounter.builder("email.outbox.sent", sent, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("email.outbox.failed.attempts", failedAttempts, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("email.outbox.dropped", dropped, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("email.outbox.spilled", spilled, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("email.outbox.spill.corrupt", spillCorrupt, AtomicLong::get)
+                .description("Spill file lines that could not be parsed and were skipped")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+        // Mail còn lại từ lần chạy trước
+        refillFromSpill();
+        log.info("Email outbox: {} workers, capacity {}, transports {}, spill {}",
+                workerCount, capacity, transports, spillFile);
+    }
+
+    // ========== ENQUEUE ==========
+
+    /**
+     * Xếp mail vào hàng đợi, trả về ngay. Future hoàn thành true khi gửi được, false khi bỏ (hết lượt retry / quá hạn).
+     * Trả null nếu không có transport nào cấu hình được cho loại mail này (không thể gửi).
+     */
+    public CompletableFuture<Boolean> enqueue(Kind kind, String to, Map<String, String> params) {
+        if (transports.stream().noneMatch(t -> canSend(t, kind))) {
+            log.error("No email transport configured for {}", kind);
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Mail mail = new Mail();
+        mail.setId(UUID.randomUUID().toString());
+        mail.setKind(kind);
+        mail.setTo(to);
+        mail.setParams(new HashMap<>(params));
+        mail.setCreatedAt(now);
+        // OTP quá hạn thì gửi cũng vô ích
+        mail.setExpiresAt(now + (kind == Kind.OTP ? otpTtlMs : TimeUnit.DAYS.toMillis(1)));
+        mail.setTraceParent(traceParent(tracer.currentTraceContext().context()));
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        waiters.put(mail.getId(), future);
+        offer(mail);
+        return future;
+    }
+
+    private void offer(Mail mail) {
+        if (!running || !queue.offer(mail)) {
+            spill(List.of(mail));
+        }
+    }
+
+    // ========== WORKER ==========
+
+    private void work() {
+        while (running) {
+            Mail mail;
+            try {
+                mail = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (mail != null) {
+                deliver(mail);
+            }
+        }
+    }
+
+    private void deliver(Mail mail) {
+        if (System.currentTimeMillis() > mail.getExpiresAt()) {
+            log.warn("Dropping expired {} mail to {}", mail.getKind(), mail.getTo());
+            finish(mail, false);
+            return;
+        }
+
+        Span span = deliverySpan(mail);
+        long start = System.nanoTime();
+        boolean ok = false;
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            ok = sendViaTransports(mail);
+        } finally {
+            span.tag("outcome", ok ? "success" : "failure").end();
+        }
+        deliveryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (ok) {
+            sent.incrementAndGet();
+            finish(mail, true);
+            return;
+        }
+
+        failedAttempts.incrementAndGet();
+        mail.setAttempts(mail.getAttempts() + 1);
+        if (mail.getAttempts() >= maxAttempts) {
+            log.error("Giving up {} mail to {} after {} attempts", mail.getKind(), mail.getTo(), mail.getAttempts());
+            finish(mail, false);
+            return;
+        }
+        long delay = backoffDelay(mail.getAttempts());
+        log.info("Retry {} mail to {} in {}ms", mail.getKind(), mail.getTo(), delay);
+        delayed.put(mail.getId(), mail);
+        try {
+            retryScheduler.schedule(() -> {
+                if (delayed.remove(mail.getId()) != null) {
+                    offer(mail);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Đang shutdown: shutdown() sẽ ghi mail trong delayed ra spill file
+        }
+    }
+
+    /**
+     * Thử lần lượt các transport tới khi 1 cái gửi được
+     */
+    private boolean sendViaTransports(Mail mail) {
+        for (String transport : transports) {
+            if (!canSend(transport, mail.getKind())) {
+                continue;
+            }
+            long attemptStart = System.nanoTime();
+            boolean ok = false;
+            String outcome = "failure";
+            try {
+                ok = sendVia(transport, mail);
+                outcome = ok ? "success" : "failure";
+            } catch (Exception e) {
+                outcome = "error";
+                log.warn("{} failed for {}: {}", transport, mail.getTo(), e.getMessage());
+            }
+            Timer.builder("email.send")
+                    .description("One send attempt through one transport")
+                    .tag("transport", transport)
+                    .tag("kind", mail.getKind().name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - attemptStart, TimeUnit.NANOSECONDS);
+            if (ok) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Span deliverySpan(Mail mail) {
+        Span.Builder builder = tracer.spanBuilder()
+                .name("email.deliver")
+                .tag("kind", mail.getKind().name())
+                .tag("attempt", String.valueOf(mail.getAttempts() + 1));
+        TraceContext parent = parseTraceParent(mail.getTraceParent());
+        if (parent != null) {
+            builder.setParent(parent);
+        }
+        return builder.start();
+    }
+
+    /**
+     * Flags theo quyết định sample của request gốc (01 / 00); chưa quyết định (sampled = null) thì bỏ phần flags
+     * để span gửi mail cũng để sampler quyết định
+     */
+    static String traceParent(TraceContext context) {
+        if (context == null || context.traceId() == null || context.spanId() == null) {
+            return null;
+        }
+        String parent = "00-" + context.traceId() + "-" + context.spanId();
+        Boolean sampled = context.sampled();
+        return sampled == null ? parent : parent + (sampled ? "-01" : "-00");
+    }
+
+    private TraceContext parseTraceParent(String traceParent) {
+        String[] parts = traceParent != null ? traceParent.split("-") : new String[0];
+        if (parts.length < 3 || parts.length > 4 || parts[1].isEmpty() || parts[2].isEmpty()) {
+            return null;
+        }
+        Boolean sampled = parts.length == 4 ? sampledFlag(parts[3]) : null;
+        return tracer.traceContextBuilder().traceId(parts[1]).spanId(parts[2]).sampled(sampled).build();
+    }
+
+    /**
+     * Bit 0 của trace-flags là sampled; flags hỏng thì coi như chưa quyết định
+     */
+    static Boolean sampledFlag(String flags) {
+        try {
+            return (Integer.parseInt(flags, 16) & 1) == 1;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * initial * 2^(attempt-1), tối đa backoffMax, jitter 50-100% để các mail lỗi cùng lúc không retry cùng lúc
+     */
+    long backoffDelay(int attempt) {
+        long exp = backoffInitialMs << Math.min(attempt - 1, 20);
+        long capped = Math.min(exp, backoffMaxMs);
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    private boolean canSend(String transport, Kind kind) {
+        return switch (transport) {
+            // Resend chưa có template email tài khoản mới
+            case "resend" -> kind != Kind.NEW_ACCOUNT && resend.isConfigured();
+            case "smtp" -> smtp.isConfigured();
+            default -> false;
+        };
+    }
+
+    private boolean sendVia(String transport, Mail mail) {
+        Map<String, String> p = mail.getParams();
+        if ("resend".equals(transport)) {
+            return switch (mail.getKind()) {
+                case OTP -> resend.sendOtpEmail(mail.getTo(), p.get("otp"), p.get("type"));
+                case TEMP_PASSWORD -> resend.sendTempPasswordEmail(mail.getTo(), p.get("username"), p.get("tempPassword"));
+                case NEW_ACCOUNT -> false;
+            };
+        }
+        return switch (mail.getKind()) {
+            case OTP -> smtp.sendOtpEmail(mail.getTo(), p.get("otp"), p.get("type"));
+            case TEMP_PASSWORD -> smtp.sendTempPasswordEmail(mail.getTo(), p.get("username"), p.get("tempPassword"));
+            case NEW_ACCOUNT -> smtp.sendNewAccountEmail(mail.getTo(), p.get("username"), p.get("tempPassword"));
+        };
+    }
+
+    private void finish(Mail mail, boolean delivered) {
+        if (!delivered) {
+            dropped.incrementAndGet();
+        }
+        CompletableFuture<Boolean> future = waiters.remove(mail.getId());
+        if (future != null) {
+            future.complete(delivered);
+        }
+    }
+
+    // ========== SPILL ==========
+
+    private synchronized void spill(Collection<Mail> mails) {
+        if (mails.isEmpty()) {
+            return;
+        }
+        try {
+            PrivateFiles.createIfMissing(spillFile);
+            StringBuilder lines = new StringBuilder();
+            for (Mail mail : mails) {
+                lines.append(mapper.writeValueAsString(mail)).append('\n');
+            }
+            Files.writeString(spillFile, lines, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            spilled.addAndGet(mails.size());
+            spillSize.addAndGet(mails.size());
+        } catch (IOException e) {
+            log.error("Cannot spill {} mails to {}: {}", mails.size(), spillFile, e.getMessage());
+            mails.forEach(m -> finish(m, false));
+        }
+    }
+
+    /**
+     * Nạp mail từ spill file vào queue khi còn chỗ, phần còn lại ghi lại vào file
+     */
+    @Scheduled(fixedDelayString = "${app.email.outbox.refill-interval-ms:5000}")
+    public synchronized void refillFromSpill() {
+        if (!running || Files.notExists(spillFile)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(spillFile, StandardCharsets.UTF_8);
+            List<String> rest = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            int lineNo = 0;
+            for (String line : lines) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Mail mail;
+                try {
+                    mail = mapper.readValue(line, Mail.class);
+                } catch (JsonProcessingException e) {
+                    // Không log nội dung dòng: có thể chứa OTP / mật khẩu tạm
+                    spillCorrupt.incrementAndGet();
+                    log.warn("Skipping unreadable line {} in spill file {} ({})", lineNo, spillFile, e.getClass().getSimpleName());
+                    continue;
+                }
+                if (now > mail.getExpiresAt()) {
+                    finish(mail, false);
+                } else if (!rest.isEmpty() || !queue.offer(mail)) {
+                    rest.add(line);
+                }
+            }
+            if (rest.isEmpty()) {
+                Files.delete(spillFile);
+            } else {
+                Files.write(spillFile, rest, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            spillSize.set(rest.size());
+        } catch (IOException e) {
+            log.error("Cannot read spill file {}: {}", spillFile, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        retryScheduler.shutdownNow();
+        workers.shutdown();
+        // Worker đang gửi dở được chờ xong
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+
+        List<Mail> remaining = new ArrayList<>(delayed.values());
+        delayed.clear();
+        queue.drainTo(remaining);
+        spill(remaining);
+        if (!remaining.isEmpty()) {
+            log.info("Spilled {} pending mails to {}", remaining.size(), spillFile);
+        }
+    }
+
+    // ========== STATS ==========
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queueDepth", queue.size());
+        result.put("capacity", capacity);
+        result.put("retrying", delayed.size());
+        result.put("spilledOnDisk", spillSize.get());
+        result.put("spilledTotal", spilled.get());
+        result.put("spillCorrupt", spillCorrupt.get());
+        result.put("sent", sent.get());
+        result.put("failedAttempts", failedAttempts.get());
+        result.put("dropped", dropped.get());
+        result.put("sendLatencyMs", latencySummary());
+        return result;
+    }
+
+    private Map<String, Object> latencySummary() {
+        HistogramSnapshot snapshot = deliveryTimer.takeSnapshot();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", snapshot.count());
+        for (ValueAtPercentile v : snapshot.percentileValues()) {
+            result.put(v.percentile() == 0.5 ? "p50" : "p99", v.value(TimeUnit.MILLISECONDS));
+        }
+        result.put("max", snapshot.max(TimeUnit.MILLISECONDS));
+        return result;
+    }
+}
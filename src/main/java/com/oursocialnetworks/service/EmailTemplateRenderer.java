@@ -0,0 +1,108 @@
+package com.oursocialnetworks.service;
+
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+import org.unbescape.html.HtmlEscape;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Render email template Thymeleaf 1 lần cho mỗi (template, locale) với giá trị đánh dấu cho từng biến,
+ * tách HTML thành các đoạn tĩnh + chỗ trống. Mỗi lần gửi chỉ còn nối đoạn tĩnh và giá trị đã escape vào buffer dùng lại.
+ *
+ * Chỉ đúng với template chỉ thay biến (th:text / th:href), không có th:if / th:each phụ thuộc giá trị biến.
+ */
+@Component
+public class EmailTemplateRenderer {
+
+    private static final String MARKER = "@@osn-var:";
+    private static final String MARKER_END = "@@";
+    private static final int MAX_BUFFER = 64 * 1024;
+
+    private final ITemplateEngine templateEngine;
+    private final Map<String, Compiled> compiled = new ConcurrentHashMap<>();
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(16 * 1024));
+
+    /**
+     * parts.length == vars.length + 1: parts[0] vars[0] parts[1] vars[1] ... parts[n]
+     */
+    private record Compiled(String[] parts, String[] vars, int staticLength) {}
+
+    public EmailTemplateRenderer(ITemplateEngine templateEngine) {
+        this.templateEngine = templateEngine;
+    }
+
+    /**
+     * Map biến từ các cặp tên, giá trị (giá trị null được, render rỗng như th:text)
+     */
+    public static Map<String, String> variables(String... namesAndValues) {
+        Map<String, String> result = new HashMap<>();
+        for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+            result.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return result;
+    }
+
+    public String render(String template, Map<String, String> variables) {
+        return render(template, Locale.getDefault(), variables);
+    }
+
+    /**
+     * Kết quả giống templateEngine.process(template, context với các biến này), giá trị được HTML-escape như th:text.
+     * Tập tên biến của lần gọi đầu tiên quyết định chỗ trống của template, các lần sau phải truyền cùng tập biến.
+     */
+    public String render(String template, Locale locale, Map<String, String> variables) {
+        Compiled c = compiled.computeIfAbsent(template + "|" + locale.toLanguageTag(),
+                key -> compile(template, locale, variables.keySet()));
+
+        StringBuilder out = buffers.get();
+        out.setLength(0);
+        out.ensureCapacity(c.staticLength() + 256);
+        out.append(c.parts()[0]);
+        for (int i = 0; i < c.vars().length; i++) {
+            String value = variables.get(c.vars()[i]);
+            if (value != null) {
+                out.append(HtmlEscape.escapeHtml4Xml(value));
+            }
+            out.append(c.parts()[i + 1]);
+        }
+        String html = out.toString();
+        if (out.capacity() > MAX_BUFFER) {
+            buffers.remove(); // không giữ buffer quá lớn trên thread
+        }
+        return html;
+    }
+
+    private Compiled compile(String template, Locale locale, Iterable<String> names) {
+        Context context = new Context(locale);
+        for (String name : names) {
+            context.setVariable(name, MARKER + name + MARKER_END);
+        }
+        String html = templateEngine.process(template, context);
+
+        List<String> parts = new ArrayList<>();
+        List<String> vars = new ArrayList<>();
+        int staticLength = 0;
+        int pos = 0;
+        while (true) {
+            int start = html.indexOf(MARKER, pos);
+            if (start < 0) {
+                break;
+            }
+            int end = html.indexOf(MARKER_END, start + MARKER.length());
+            parts.add(html.substring(pos, start));
+            staticLength += start - pos;
+            vars.add(html.substring(start + MARKER.length(), end));
+            pos = end + MARKER_END.length();
+        }
+        parts.add(html.substring(pos));
+        staticLength += html.length() - pos;
+        return new Compiled(parts.toArray(new String[0]), vars.toArray(new String[0]), staticLength);
+    }
+}
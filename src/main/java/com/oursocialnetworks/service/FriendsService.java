@@ -1,9 +1,19 @@
 package com.oursocialnetworks.service;
 
+import com.oursocialnetworks.component.HttpClientPools;
+import com.oursocialnetworks.component.RequestCoalescer;
+import com.oursocialnetworks.component.SupabaseResilience;
 import com.oursocialnetworks.config.SupabaseConfig;
+import com.oursocialnetworks.dto.FriendWithUserInfo;
+import com.oursocialnetworks.dto.UserCard;
 import com.oursocialnetworks.entity.FriendRequest;
+import com.oursocialnetworks.exception.BusinessException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
@@ -11,21 +21,27 @@ import org.springframework.web.client.RestTemplate;
 import java.util.*;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class FriendsService {
 
     private final SupabaseConfig config;
-    private final RestTemplate restTemplate;
+    private final HttpClientPools httpClientPools;
+    private final RequestCoalescer coalescer;
+    private final SupabaseResilience resilience;
+    private final SupabaseUserService userService;
+    private final RelationshipCache relationshipCache;
+    private final SocialGraphIndex socialGraph;
+
+    private static final int GRAPH_LOAD_PAGE_SIZE = 1000;
+
+    private RestTemplate restTemplate() {
+        return httpClientPools.forDomain("friends");
+    }
 
     private HttpHeaders buildHeaders() {
         var d = config.getDomains().get("friends");
-        System.out.println("========== FRIENDS CONFIG ==========");
-        System.out.println("Friends URL: " + d.getUrl());
-        System.out.println("Friends Table: " + d.getTable());
-        System.out.println("Friends Key exists: " + (d.getKey() != null && !d.getKey().isEmpty()));
-        System.out.println("=====================================");
-        
         HttpHeaders headers = new HttpHeaders();
         headers.set("apikey", d.getKey());
         headers.set("Authorization", "Bearer " + d.getKey());
@@ -34,7 +50,8 @@ public class FriendsService {
         return headers;
     }
 
-    private String buildUrl(Map<String, String> params) {
+    // package-private để benchmark (src/test) gọi trực tiếp
+    String buildUrl(Map<String, String> params) {
         var d = config.getDomains().get("friends");
         StringBuilder url = new StringBuilder(d.getUrl())
                 .append("/rest/v1/")
@@ -49,12 +66,32 @@ public class FriendsService {
         return url.toString();
     }
 
+    /**
+     * GET bảng friends; GET giống hệt đang chạy (nhiều người cùng mở 1 profile) dùng chung 1 request
+     */
+    private ResponseEntity<FriendRequest[]> fetch(Map<String, String> params) {
+        String url = buildUrl(params);
+        return coalescer.get("friends", url, FriendRequest[].class,
+                () -> exchange(url, HttpMethod.GET, new HttpEntity<>(buildHeaders())));
+    }
+
+    /**
+     * Call tới bảng friends qua bulkhead / circuit breaker của domain (GET có retry)
+     */
+    private ResponseEntity<FriendRequest[]> exchange(String url, HttpMethod method, HttpEntity<?> entity) {
+        return resilience.call("friends", method,
+                () -> restTemplate().exchange(url, method, entity, FriendRequest[].class));
+    }
 
     /**
      * Lấy danh sách lời mời follow đang chờ (Pending)
      * Người nhận = currentUserId
+     * beforeId != null → phân trang keyset (id < beforeId), bỏ qua page
      */
-    public FriendRequest[] getPendingRequests(UUID currentUserId, int page, int size) {
+    public FriendRequest[] getPendingRequests(UUID currentUserId, Long beforeId, int page, int size) {
+        if (socialGraph.isReady()) {
+            return socialGraph.incoming(currentUserId, "Pending", beforeId, page, size);
+        }
         try {
             Map<String, String> params = new HashMap<>();
             params.put("friend_id", "eq." + currentUserId.toString());
@@ -62,24 +99,18 @@ public class FriendsService {
             params.put("status", "eq.1");
             params.put("order", "id.desc");
             params.put("limit", String.valueOf(size));
-            params.put("offset", String.valueOf(page * size));
-
-            String url = buildUrl(params);
-            HttpEntity<?> entity = new HttpEntity<>(buildHeaders());
-
-            System.out.println("========== GET PENDING REQUESTS ==========");
-            System.out.println("URL: " + url);
-            System.out.println("Current User ID: " + currentUserId);
-            System.out.println("Page: " + page + ", Size: " + size);
+            if (beforeId != null) {
+                params.put("id", "lt." + beforeId); // Keyset: các record sau cursor
+            } else {
+                params.put("offset", String.valueOf((long) page * size));
+            }
 
-            ResponseEntity<FriendRequest[]> response = restTemplate.exchange(
-                    url, HttpMethod.GET, entity, FriendRequest[].class);
+            ResponseEntity<FriendRequest[]> response = fetch(params);
 
-            System.out.println("Response: " + Arrays.toString(response.getBody()));
             return response.getBody() != null ? response.getBody() : new FriendRequest[0];
 
         } catch (RestClientResponseException ex) {
-            System.err.println("[Friends GET error] " + ex.getResponseBodyAsString());
+            log.warn("Friends GET failed: {} {}", ex.getStatusCode(), ex.getResponseBodyAsString());
             throw ex;
         }
     }
@@ -88,7 +119,10 @@ public class FriendsService {
      * Lấy danh sách người đang follow mình (Followers)
      * friend_id = currentUserId AND status_fr = Done
      */
-    public FriendRequest[] getFollowers(UUID currentUserId, int page, int size) {
+    public FriendRequest[] getFollowers(UUID currentUserId, Long beforeId, int page, int size) {
+        if (socialGraph.isReady()) {
+            return socialGraph.incoming(currentUserId, "Done", beforeId, page, size);
+        }
         try {
             Map<String, String> params = new HashMap<>();
             params.put("friend_id", "eq." + currentUserId.toString());
@@ -96,18 +130,18 @@ public class FriendsService {
             params.put("status", "eq.1");
             params.put("order", "id.desc");
             params.put("limit", String.valueOf(size));
-            params.put("offset", String.valueOf(page * size));
-
-            String url = buildUrl(params);
-            HttpEntity<?> entity = new HttpEntity<>(buildHeaders());
+            if (beforeId != null) {
+                params.put("id", "lt." + beforeId); // Keyset: các record sau cursor
+            } else {
+                params.put("offset", String.valueOf((long) page * size));
+            }
 
-            ResponseEntity<FriendRequest[]> response = restTemplate.exchange(
-                    url, HttpMethod.GET, entity, FriendRequest[].class);
+            ResponseEntity<FriendRequest[]> response = fetch(params);
 
             return response.getBody() != null ? response.getBody() : new FriendRequest[0];
 
         } catch (RestClientResponseException ex) {
-            System.err.println("[Friends GET error] " + ex.getResponseBodyAsString());
+            log.warn("Friends GET failed: {} {}", ex.getStatusCode(), ex.getResponseBodyAsString());
             throw ex;
         }
     }
@@ -116,7 +150,10 @@ public class FriendsService {
      * Lấy danh sách người mình đang follow (Following)
      * id_user = currentUserId AND status_fr = Done
      */
-    public FriendRequest[] getFollowing(UUID currentUserId, int page, int size) {
+    public FriendRequest[] getFollowing(UUID currentUserId, Long beforeId, int page, int size) {
+        if (socialGraph.isReady()) {
+            return socialGraph.outgoing(currentUserId, "Done", beforeId, page, size);
+        }
         try {
             Map<String, String> params = new HashMap<>();
             params.put("id_user", "eq." + currentUserId.toString());
@@ -124,24 +161,53 @@ public class FriendsService {
             params.put("status", "eq.1");
             params.put("order", "id.desc");
             params.put("limit", String.valueOf(size));
-            params.put("offset", String.valueOf(page * size));
-
-            String url = buildUrl(params);
-            HttpEntity<?> entity = new HttpEntity<>(buildHeaders());
+            if (beforeId != null) {
+                params.put("id", "lt." + beforeId); // Keyset: các record sau cursor
+            } else {
+                params.put("offset", String.valueOf((long) page * size));
+            }
 
-            ResponseEntity<FriendRequest[]> response = restTemplate.exchange(
-                    url, HttpMethod.GET, entity, FriendRequest[].class);
+            ResponseEntity<FriendRequest[]> response = fetch(params);
 
             return response.getBody() != null ? response.getBody() : new FriendRequest[0];
 
         } catch (RestClientResponseException ex) {
-            System.err.println("[Friends GET error] " + ex.getResponseBodyAsString());
+            log.warn("Friends GET failed: {} {}", ex.getStatusCode(), ex.getResponseBodyAsString());
             throw ex;
         }
     }
 
 
 
+    /**
+     * Gắn thông tin user của "người còn lại" (không phải ownerId) vào từng FriendRequest.
+     * Cả trang chỉ tốn tối đa 1 query id=in.(...) sang domain user (user đã cache thì không query).
+     */
+    public List<FriendWithUserInfo> withUserInfo(FriendRequest[] requests, UUID ownerId) {
+        List<UUID> counterpartIds = new ArrayList<>(requests.length);
+        for (FriendRequest request : requests) {
+            UUID counterpart = counterpartOf(request, ownerId);
+            if (counterpart != null) {
+                counterpartIds.add(counterpart);
+            }
+        }
+
+        Map<UUID, UserCard> users = counterpartIds.isEmpty()
+                ? Collections.emptyMap()
+                : userService.getUserCardsByIds(counterpartIds);
+
+        List<FriendWithUserInfo> result = new ArrayList<>(requests.length);
+        for (FriendRequest request : requests) {
+            UUID counterpart = counterpartOf(request, ownerId);
+            result.add(new FriendWithUserInfo(request, counterpart != null ? users.get(counterpart) : null));
+        }
+        return result;
+    }
+
+    private static UUID counterpartOf(FriendRequest request, UUID ownerId) {
+        return ownerId.equals(request.getIdUser()) ? request.getFriendId() : request.getIdUser();
+    }
+
     /**
      * Gửi lời mời kết bạn
      */
@@ -149,7 +215,7 @@ public class FriendsService {
         try {
             // Kiểm tra đã có request chưa
             if (checkExistingRequest(senderId, receiverId)) {
-                throw new RuntimeException("Lời mời kết bạn đã tồn tại!");
+                throw new BusinessException("Lời mời kết bạn đã tồn tại!");
             }
 
             var d = config.getDomains().get("friends");
@@ -163,20 +229,18 @@ public class FriendsService {
 
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, buildHeaders());
 
-            System.out.println("========== SEND FRIEND REQUEST ==========");
-            System.out.println("URL: " + url);
-            System.out.println("Body: " + body);
-
-            ResponseEntity<FriendRequest[]> response = restTemplate.exchange(
-                    url, HttpMethod.POST, entity, FriendRequest[].class);
+            ResponseEntity<FriendRequest[]> response = exchange(url, HttpMethod.POST, entity);
+            relationshipCache.invalidate(senderId, receiverId);
 
             if (response.getBody() != null && response.getBody().length > 0) {
-                return response.getBody()[0];
+                FriendRequest saved = response.getBody()[0];
+                socialGraph.apply(saved);
+                return saved;
             }
-            throw new RuntimeException("Không thể gửi lời mời kết bạn");
+            throw new BusinessException("Không thể gửi lời mời kết bạn");
 
         } catch (RestClientResponseException ex) {
-            System.err.println("[Friends POST error] " + ex.getResponseBodyAsString());
+            log.warn("Friends POST failed: {} {}", ex.getStatusCode(), ex.getResponseBodyAsString());
             throw ex;
         }
     }
@@ -189,10 +253,10 @@ public class FriendsService {
             // Verify request belongs to current user
             FriendRequest request = getRequestById(requestId);
             if (request == null) {
-                throw new RuntimeException("Không tìm thấy lời mời kết bạn!");
+                throw new BusinessException("Không tìm thấy lời mời kết bạn!");
             }
             if (!request.getFriendId().equals(currentUserId)) {
-                throw new RuntimeException("Bạn không có quyền chấp nhận lời mời này!");
+                throw new BusinessException("Bạn không có quyền chấp nhận lời mời này!");
             }
 
             Map<String, String> params = new HashMap<>();
@@ -205,19 +269,18 @@ public class FriendsService {
 
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, buildHeaders());
 
-            System.out.println("========== ACCEPT FRIEND REQUEST ==========");
-            System.out.println("URL: " + url);
-
-            ResponseEntity<FriendRequest[]> response = restTemplate.exchange(
-                    url, HttpMethod.PATCH, entity, FriendRequest[].class);
+            ResponseEntity<FriendRequest[]> response = exchange(url, HttpMethod.PATCH, entity);
+            relationshipCache.invalidate(request.getIdUser(), request.getFriendId());
 
             if (response.getBody() != null && response.getBody().length > 0) {
-                return response.getBody()[0];
+                FriendRequest saved = response.getBody()[0];
+                socialGraph.apply(saved);
+                return saved;
             }
-            throw new RuntimeException("Không thể chấp nhận lời mời");
+            throw new BusinessException("Không thể chấp nhận lời mời");
 
         } catch (RestClientResponseException ex) {
-            System.err.println("[Friends PATCH error] " + ex.getResponseBodyAsString());
+            log.warn("Friends PATCH failed: {} {}", ex.getStatusCode(), ex.getResponseBodyAsString());
             throw ex;
         }
     }
@@ -229,10 +292,10 @@ public class FriendsService {
         try {
             FriendRequest request = getRequestById(requestId);
             if (request == null) {
-                throw new RuntimeException("Không tìm thấy lời mời kết bạn!");
+                throw new BusinessException("Không tìm thấy lời mời kết bạn!");
             }
             if (!request.getFriendId().equals(currentUserId)) {
-                throw new RuntimeException("Bạn không có quyền từ chối lời mời này!");
+                throw new BusinessException("Bạn không có quyền từ chối lời mời này!");
             }
 
             Map<String, String> params = new HashMap<>();
@@ -245,19 +308,18 @@ public class FriendsService {
 
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, buildHeaders());
 
-            System.out.println("========== REJECT FRIEND REQUEST ==========");
-            System.out.println("URL: " + url);
-
-            ResponseEntity<FriendRequest[]> response = restTemplate.exchange(
-                    url, HttpMethod.PATCH, entity, FriendRequest[].class);
+            ResponseEntity<FriendRequest[]> response = exchange(url, HttpMethod.PATCH, entity);
+            relationshipCache.invalidate(request.getIdUser(), request.getFriendId());
 
             if (response.getBody() != null && response.getBody().length > 0) {
-                return response.getBody()[0];
+                FriendRequest saved = response.getBody()[0];
+                socialGraph.apply(saved);
+                return saved;
             }
-            throw new RuntimeException("Không thể từ chối lời mời");
+            throw new BusinessException("Không thể từ chối lời mời");
 
         } catch (RestClientResponseException ex) {
-            System.err.println("[Friends PATCH error] " + ex.getResponseBodyAsString());
+            log.warn("Friends PATCH failed: {} {}", ex.getStatusCode(), ex.getResponseBodyAsString());
             throw ex;
         }
     }
@@ -273,56 +335,117 @@ public class FriendsService {
      * - "mutual": Cả 2 follow nhau (2 records Done)
      */
     public String checkFollowStatus(UUID currentUserId, UUID targetUserId) {
+        if (socialGraph.isReady()) {
+            return resolveFollowStatus(currentUserId, socialGraph.between(currentUserId, targetUserId));
+        }
+        String cached = relationshipCache.get(currentUserId, targetUserId);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
-            // Check: Tôi -> Họ (id_user=me, friend_id=them)
-            Map<String, String> params1 = new HashMap<>();
-            params1.put("id_user", "eq." + currentUserId);
-            params1.put("friend_id", "eq." + targetUserId);
-            params1.put("status", "eq.1");
-            
-            String url1 = buildUrl(params1);
-            HttpEntity<?> entity = new HttpEntity<>(buildHeaders());
-            ResponseEntity<FriendRequest[]> response1 = restTemplate.exchange(
-                    url1, HttpMethod.GET, entity, FriendRequest[].class);
-            
-            // Check: Họ -> Tôi (id_user=them, friend_id=me)
-            Map<String, String> params2 = new HashMap<>();
-            params2.put("id_user", "eq." + targetUserId);
-            params2.put("friend_id", "eq." + currentUserId);
-            params2.put("status", "eq.1");
-            
-            String url2 = buildUrl(params2);
-            ResponseEntity<FriendRequest[]> response2 = restTemplate.exchange(
-                    url2, HttpMethod.GET, entity, FriendRequest[].class);
-            
-            FriendRequest meToThem = (response1.getBody() != null && response1.getBody().length > 0) 
-                ? response1.getBody()[0] : null;
-            FriendRequest themToMe = (response2.getBody() != null && response2.getBody().length > 0) 
-                ? response2.getBody()[0] : null;
-            
-            // Cả 2 đều Done = mutual
-            if (meToThem != null && "Done".equals(meToThem.getStatusFr()) &&
-                themToMe != null && "Done".equals(themToMe.getStatusFr())) {
-                return "mutual";
+            // 1 query cho cả 2 chiều: Tôi -> Họ và Họ -> Tôi
+            Map<String, String> params = new HashMap<>();
+            params.put("or", "(and(id_user.eq." + currentUserId + ",friend_id.eq." + targetUserId + ")," +
+                    "and(id_user.eq." + targetUserId + ",friend_id.eq." + currentUserId + "))");
+            params.put("status", "eq.1");
+
+            ResponseEntity<FriendRequest[]> response = fetch(params);
+
+            FriendRequest[] rows = response.getBody() != null ? response.getBody() : new FriendRequest[0];
+            String status = resolveFollowStatus(currentUserId, Arrays.asList(rows));
+            relationshipCache.put(currentUserId, targetUserId, status);
+            return status;
+
+        } catch (RestClientResponseException ex) {
+            // Không trả "none": client sẽ hiểu là chưa follow và hiện sai nút
+            log.warn("Friends GET failed: {} {}", ex.getStatusCode(), ex.getResponseBodyAsString());
+            throw ex;
+        }
+    }
+
+    /**
+     * Kiểm tra trạng thái follow với nhiều user cùng lúc (1 query PostgREST cho tất cả user chưa có trong cache)
+     * Returns: map targetUserId → status (cùng giá trị với checkFollowStatus)
+     */
+    public Map<UUID, String> checkFollowStatuses(UUID currentUserId, Collection<UUID> targetUserIds) {
+        Map<UUID, String> result = new LinkedHashMap<>();
+        if (socialGraph.isReady()) {
+            for (UUID targetId : targetUserIds) {
+                result.put(targetId, resolveFollowStatus(currentUserId, socialGraph.between(currentUserId, targetId)));
             }
-            
-            // Tôi -> Họ
-            if (meToThem != null) {
-                return "Pending".equals(meToThem.getStatusFr()) ? "pending_sent" : "following";
+            return result;
+        }
+        List<UUID> missing = new ArrayList<>();
+        for (UUID targetId : new LinkedHashSet<>(targetUserIds)) {
+            String cached = relationshipCache.get(currentUserId, targetId);
+            if (cached != null) {
+                result.put(targetId, cached);
+            } else {
+                missing.add(targetId);
             }
-            
-            // Họ -> Tôi
-            if (themToMe != null) {
-                return "Pending".equals(themToMe.getStatusFr()) ? "pending_received" : "follower";
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        String ids = missing.stream().map(UUID::toString).collect(Collectors.joining(","));
+        Map<String, String> params = new HashMap<>();
+        params.put("or", "(and(id_user.eq." + currentUserId + ",friend_id.in.(" + ids + "))," +
+                "and(friend_id.eq." + currentUserId + ",id_user.in.(" + ids + ")))");
+        params.put("status", "eq.1");
+
+        ResponseEntity<FriendRequest[]> response = fetch(params);
+
+        // Gom record theo user còn lại
+        Map<UUID, List<FriendRequest>> byTarget = new HashMap<>();
+        if (response.getBody() != null) {
+            for (FriendRequest row : response.getBody()) {
+                UUID other = currentUserId.equals(row.getIdUser()) ? row.getFriendId() : row.getIdUser();
+                byTarget.computeIfAbsent(other, k -> new ArrayList<>()).add(row);
             }
-            
-            // Không có record
-            return "none";
-            
-        } catch (Exception e) {
-            System.err.println("[Check follow status error] " + e.getMessage());
-            return "none";
         }
+
+        for (UUID targetId : missing) {
+            String status = resolveFollowStatus(currentUserId, byTarget.getOrDefault(targetId, Collections.emptyList()));
+            relationshipCache.put(currentUserId, targetId, status);
+            result.put(targetId, status);
+        }
+        return result;
+    }
+
+    /**
+     * Tính status từ các record active giữa currentUserId và 1 user khác
+     */
+    private static String resolveFollowStatus(UUID currentUserId, List<FriendRequest> rows) {
+        FriendRequest meToThem = null;
+        FriendRequest themToMe = null;
+        for (FriendRequest row : rows) {
+            if (currentUserId.equals(row.getIdUser())) {
+                if (meToThem == null) meToThem = row;
+            } else if (themToMe == null) {
+                themToMe = row;
+            }
+        }
+
+        // Cả 2 đều Done = mutual
+        if (meToThem != null && "Done".equals(meToThem.getStatusFr()) &&
+            themToMe != null && "Done".equals(themToMe.getStatusFr())) {
+            return "mutual";
+        }
+
+        // Tôi -> Họ
+        if (meToThem != null) {
+            return "Pending".equals(meToThem.getStatusFr()) ? "pending_sent" : "following";
+        }
+
+        // Họ -> Tôi
+        if (themToMe != null) {
+            return "Pending".equals(themToMe.getStatusFr()) ? "pending_received" : "follower";
+        }
+
+        // Không có record
+        return "none";
     }
 
     /**
@@ -336,10 +459,7 @@ public class FriendsService {
             params.put("friend_id", "eq." + targetUserId);
             params.put("status", "eq.1");
             
-            String url = buildUrl(params);
-            HttpEntity<?> entity = new HttpEntity<>(buildHeaders());
-            ResponseEntity<FriendRequest[]> response = restTemplate.exchange(
-                    url, HttpMethod.GET, entity, FriendRequest[].class);
+            ResponseEntity<FriendRequest[]> response = fetch(params);
             
             if (response.getBody() != null && response.getBody().length > 0) {
                 Long requestId = response.getBody()[0].getId();
@@ -353,16 +473,18 @@ public class FriendsService {
                 body.put("status", 0);
                 
                 HttpEntity<Map<String, Object>> deleteEntity = new HttpEntity<>(body, buildHeaders());
-                restTemplate.exchange(deleteUrl, HttpMethod.PATCH, deleteEntity, FriendRequest[].class);
+                exchange(deleteUrl, HttpMethod.PATCH, deleteEntity);
+                relationshipCache.invalidate(currentUserId, targetUserId);
+                socialGraph.apply(new FriendRequest(requestId, currentUserId, targetUserId, response.getBody()[0].getStatusFr(), 0));
                 
                 return true;
             }
             
             return false;
             
-        } catch (Exception e) {
-            System.err.println("[Unfollow error] " + e.getMessage());
-            return false;
+        } catch (RestClientResponseException ex) {
+            log.warn("Friends PATCH failed: {} {}", ex.getStatusCode(), ex.getResponseBodyAsString());
+            throw ex;
         }
     }
 
@@ -373,11 +495,11 @@ public class FriendsService {
         try {
             FriendRequest request = getRequestById(requestId);
             if (request == null) {
-                throw new RuntimeException("Không tìm thấy quan hệ bạn bè!");
+                throw new BusinessException("Không tìm thấy quan hệ bạn bè!");
             }
             // User phải là 1 trong 2 người trong quan hệ
             if (!request.getIdUser().equals(currentUserId) && !request.getFriendId().equals(currentUserId)) {
-                throw new RuntimeException("Bạn không có quyền hủy kết bạn này!");
+                throw new BusinessException("Bạn không có quyền hủy kết bạn này!");
             }
 
             Map<String, String> params = new HashMap<>();
@@ -390,15 +512,53 @@ public class FriendsService {
 
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, buildHeaders());
 
-            restTemplate.exchange(url, HttpMethod.PATCH, entity, FriendRequest[].class);
+            exchange(url, HttpMethod.PATCH, entity);
+            relationshipCache.invalidate(request.getIdUser(), request.getFriendId());
+            socialGraph.apply(new FriendRequest(requestId, request.getIdUser(), request.getFriendId(), request.getStatusFr(), 0));
             return true;
 
         } catch (RestClientResponseException ex) {
-            System.err.println("[Friends PATCH error] " + ex.getResponseBodyAsString());
+            log.warn("Friends PATCH failed: {} {}", ex.getStatusCode(), ex.getResponseBodyAsString());
             throw ex;
         }
     }
 
+    // ========== SOCIAL GRAPH INDEX ==========
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSocialGraph() {
+        reconcileSocialGraph();
+    }
+
+    /**
+     * Load lại toàn bộ graph từ Supabase để sửa sai lệch (ghi từ instance khác, ghi trực tiếp DB, ...)
+     */
+    @Scheduled(fixedDelayString = "${app.graph.reconcile-interval-ms:300000}",
+               initialDelayString = "${app.graph.reconcile-interval-ms:300000}")
+    public void reconcileSocialGraph() {
+        if (!socialGraph.isEnabled()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            socialGraph.rebuild(this::loadActiveEdgesAfter);
+            log.info("Social graph loaded in {}ms: {}", System.currentTimeMillis() - start, socialGraph.footprint());
+        } catch (Exception e) {
+            log.error("Social graph reconcile failed: {}", e.getMessage());
+        }
+    }
+
+    private FriendRequest[] loadActiveEdgesAfter(long lastId) {
+        Map<String, String> params = new HashMap<>();
+        params.put("id", "gt." + lastId);
+        params.put("status", "eq.1");
+        params.put("order", "id.asc");
+        params.put("limit", String.valueOf(GRAPH_LOAD_PAGE_SIZE));
+
+        ResponseEntity<FriendRequest[]> response = fetch(params);
+        return response.getBody();
+    }
+
     // ========== HELPER METHODS ==========
 
     private FriendRequest getRequestById(Long id) {
@@ -406,11 +566,7 @@ public class FriendsService {
         params.put("id", "eq." + id);
         params.put("status", "eq.1");
 
-        String url = buildUrl(params);
-        HttpEntity<?> entity = new HttpEntity<>(buildHeaders());
-
-        ResponseEntity<FriendRequest[]> response = restTemplate.exchange(
-                url, HttpMethod.GET, entity, FriendRequest[].class);
+        ResponseEntity<FriendRequest[]> response = fetch(params);
 
         if (response.getBody() != null && response.getBody().length > 0) {
             return response.getBody()[0];
@@ -419,17 +575,16 @@ public class FriendsService {
     }
 
     private boolean checkExistingRequest(UUID senderId, UUID receiverId) {
+        if (socialGraph.isReady()) {
+            return !socialGraph.between(senderId, receiverId).isEmpty();
+        }
         Map<String, String> params = new HashMap<>();
         // Check cả 2 chiều
         params.put("or", "(and(id_user.eq." + senderId + ",friend_id.eq." + receiverId + ")," +
                 "and(id_user.eq." + receiverId + ",friend_id.eq." + senderId + "))");
         params.put("status", "eq.1");
 
-        String url = buildUrl(params);
-        HttpEntity<?> entity = new HttpEntity<>(buildHeaders());
-
-        ResponseEntity<FriendRequest[]> response = restTemplate.exchange(
-                url, HttpMethod.GET, entity, FriendRequest[].class);
+        ResponseEntity<FriendRequest[]> response = fetch(params);
 
         return response.getBody() != null && response.getBody().length > 0;
     }
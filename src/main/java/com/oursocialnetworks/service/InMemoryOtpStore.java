@@ -0,0 +1,86 @@
+package com.oursocialnetworks.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OTP trong heap của instance hiện tại (Caffeine): hết hạn được dọn chủ động bởi scheduler, số entry có trần cứng.
+ */
+@Component
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+
+    private final Cache<String, OtpService.OtpData> cache;
+
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evictedBySize = new AtomicLong();
+
+    public InMemoryOtpStore(@Value("${app.otp.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${app.otp.max-entries:50000}") long maxEntries) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .scheduler(Scheduler.systemScheduler())
+                .removalListener((String email, OtpService.OtpData data, RemovalCause cause) -> {
+                    if (cause == RemovalCause.EXPIRED) {
+                        expired.incrementAndGet();
+                    } else if (cause == RemovalCause.SIZE) {
+                        evictedBySize.incrementAndGet();
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public void save(String email, OtpService.OtpData data) {
+        cache.put(email, data);
+    }
+
+    @Override
+    public OtpService.OtpData find(String email) {
+        return cache.getIfPresent(email);
+    }
+
+    @Override
+    public int recordFailedAttempt(String email, OtpService.OtpData data) {
+        // Chỉ tăng nếu entry vẫn là OTP đang verify (không đụng OTP mới vừa gửi lại)
+        OtpService.OtpData current = cache.asMap().computeIfPresent(email, (key, existing) -> {
+            if (existing == data) {
+                existing.attempts++;
+            }
+            return existing;
+        });
+        return current == data ? data.attempts : 0;
+    }
+
+    @Override
+    public void remove(String email) {
+        cache.invalidate(email);
+    }
+
+    @Override
+    public long liveCount() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("store", "memory");
+        result.put("live", liveCount());
+        result.put("expired", expired.get());
+        result.put("evictedBySize", evictedBySize.get());
+        return result;
+    }
+}
@@ -3,12 +3,13 @@ package com.oursocialnetworks.service;
 
 import com.oursocialnetworks.entity.User;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.io.Decoders;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.nio.charset.StandardCharsets;
-import java.security.Key;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
 import java.util.Date;
 
 @Service
@@ -23,6 +24,19 @@ public class JwtService {
     @Value("${jwt.refresh-expiration}")
     private long refreshExpiration;
 
+    // Key + parser dựng 1 lần lúc khởi động, JwtParser thread-safe nên dùng chung
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        // Giữ nguyên cách derive key cũ (secret là chuỗi base64) để token đã phát hành vẫn verify được
+        signingKey = new SecretKeySpec(Decoders.BASE64.decode(SECRET), SignatureAlgorithm.HS256.getJcaName());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
     public String generateToken(User user) {
         // Determine role based on user's role or default to USER
         String role = "USER"; // Default role
@@ -36,7 +50,7 @@ public class JwtService {
                 .claim("role", role)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -44,13 +58,12 @@ public class JwtService {
         return Jwts.builder()
                 .setSubject(user.getId().toString())
                 .setExpiration(new Date(System.currentTimeMillis() + refreshExpiration))
-                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public Claims verify(String token) {
-        return Jwts.parser()
-                .setSigningKey(SECRET)
+        return parser
                 .parseClaimsJws(token)
                 .getBody();
     }
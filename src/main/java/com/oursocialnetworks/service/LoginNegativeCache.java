@@ -0,0 +1,64 @@
+package com.oursocialnetworks.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Nhớ các identifier (username_login / email) không tồn tại để login lặp lại với identifier đó
+ * (ví dụ credential stuffing) không phải gọi Supabase. Tạo user / đổi username_login, email phải gọi forget().
+ */
+@Component
+public class LoginNegativeCache implements MeterBinder {
+
+    private final Cache<String, Boolean> cache;
+
+    public LoginNegativeCache(@Value("${app.cache.login-negative.max-size:100000}") long maxSize,
+                              @Value("${app.cache.login-negative.ttl-seconds:300}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public boolean isUnknown(String identifier) {
+        return identifier != null && cache.getIfPresent(identifier) != null;
+    }
+
+    public void markUnknown(String identifier) {
+        if (identifier != null) {
+            cache.put(identifier, Boolean.TRUE);
+        }
+    }
+
+    public void forget(String identifier) {
+        if (identifier != null) {
+            cache.invalidate(identifier);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats s = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", s.hitCount());
+        result.put("misses", s.missCount());
+        result.put("hitRate", s.hitRate());
+        return result;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "login-negative");
+    }
+}
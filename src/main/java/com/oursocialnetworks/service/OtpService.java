@@ -1,87 +1,159 @@
 package com.oursocialnetworks.service;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+
 import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+@Slf4j
 @Service
-public class OtpService {
-    
+public class OtpService implements MeterBinder {
+
     // Store OTP with expiration: email -> {otp, expireTime, type}
-    private final Map<String, OtpData> otpStore = new ConcurrentHashMap<>();
+    // InMemoryOtpStore (mặc định) hoặc SupabaseOtpStore khi chạy nhiều instance
+    private final OtpStore otpStore;
     private final SecureRandom random = new SecureRandom();
-    
-    // OTP valid for 5 minutes
-    private static final long OTP_VALIDITY_MS = 5 * 60 * 1000;
-    
+
+    private final long validityMs;
+    private final int maxAttempts;
+
+    private final AtomicLong lockedOut = new AtomicLong();
+
     public static class OtpData {
         public String otp;
         public long expireTime;
         public String type; // "register" or "forgot"
-        
+        public int attempts; // số lần nhập sai
+
         public OtpData(String otp, long expireTime, String type) {
+            this(otp, expireTime, type, 0);
+        }
+
+        public OtpData(String otp, long expireTime, String type, int attempts) {
             this.otp = otp;
             this.expireTime = expireTime;
             this.type = type;
+            this.attempts = attempts;
         }
     }
-    
+
+    public OtpService(OtpStore otpStore,
+                      @Value("${app.otp.ttl-seconds:300}") long ttlSeconds,
+                      @Value("${app.otp.max-attempts:5}") int maxAttempts) {
+        this.otpStore = otpStore;
+        this.validityMs = Duration.ofSeconds(ttlSeconds).toMillis();
+        this.maxAttempts = maxAttempts;
+    }
+
     /**
      * Generate 6-digit OTP
      */
     public String generateOtp(String email, String type) {
         String otp = String.format("%06d", random.nextInt(1000000));
-        long expireTime = System.currentTimeMillis() + OTP_VALIDITY_MS;
-        otpStore.put(email.toLowerCase(), new OtpData(otp, expireTime, type));
-        
-        System.out.println("🔐 [OTP] Generated for " + email + ": " + otp + " (type: " + type + ")");
+        long expireTime = System.currentTimeMillis() + validityMs;
+        otpStore.save(email.toLowerCase(), new OtpData(otp, expireTime, type));
+
+        log.debug("OTP generated for {} (type: {})", email, type);
         return otp;
     }
-    
+
     /**
-     * Verify OTP
+     * Verify OTP. Sai quá maxAttempts lần thì OTP bị hủy, phải gửi lại mã mới.
      */
     public boolean verifyOtp(String email, String otp, String type) {
-        OtpData data = otpStore.get(email.toLowerCase());
-        
+        String key = email.toLowerCase();
+        OtpData data = otpStore.find(key);
+
         if (data == null) {
-            System.out.println("🔐 [OTP] No OTP found for: " + email);
+            log.debug("No OTP found for {}", email);
             return false;
         }
-        
+
         if (System.currentTimeMillis() > data.expireTime) {
-            System.out.println("🔐 [OTP] Expired for: " + email);
-            otpStore.remove(email.toLowerCase());
+            log.debug("OTP expired for {}", email);
+            otpStore.remove(key);
+            return false;
+        }
+
+        // Đã hết lượt (vd. instance khác tăng attempts nhưng chưa kịp xóa)
+        if (data.attempts >= maxAttempts) {
+            otpStore.remove(key);
             return false;
         }
-        
+
         if (!data.type.equals(type)) {
-            System.out.println("🔐 [OTP] Type mismatch for: " + email);
+            log.debug("OTP type mismatch for {}", email);
             return false;
         }
-        
-        if (!data.otp.equals(otp)) {
-            System.out.println("🔐 [OTP] Invalid OTP for: " + email);
+
+        if (!otpStore.matches(key, data, otp)) {
+            log.debug("Invalid OTP for {}", email);
+            if (otpStore.recordFailedAttempt(key, data) >= maxAttempts) {
+                log.warn("Too many OTP attempts, OTP revoked for {}", email);
+                otpStore.remove(key);
+                lockedOut.incrementAndGet();
+            }
             return false;
         }
-        
-        System.out.println("✅ [OTP] Verified for: " + email);
+
+        log.debug("OTP verified for {}", email);
         return true;
     }
-    
+
     /**
      * Remove OTP after successful verification
      */
     public void removeOtp(String email) {
         otpStore.remove(email.toLowerCase());
     }
-    
+
     /**
      * Check if OTP exists and not expired
      */
     public boolean hasValidOtp(String email) {
-        OtpData data = otpStore.get(email.toLowerCase());
+        OtpData data = otpStore.find(email.toLowerCase());
         return data != null && System.currentTimeMillis() <= data.expireTime;
     }
+
+    /**
+     * Số OTP còn sống
+     */
+    public long liveCount() {
+        return otpStore.liveCount();
+    }
+
+    // Gauge: store dùng chung không đếm được (Supabase lỗi) thì bỏ qua lần scrape này
+    private double liveCountOrNaN() {
+        try {
+            return liveCount();
+        } catch (RuntimeException e) {
+            log.debug("Cannot count live OTPs: {}", e.getMessage());
+            return Double.NaN;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>(otpStore.stats());
+        result.put("lockedOut", lockedOut.get());
+        return result;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("otp.store.size", this, OtpService::liveCountOrNaN)
+                .description("Live OTP entries (one exact-count HEAD per scrape when the store is shared)")
+                .register(registry);
+        FunctionCounter.builder("otp.lockouts", lockedOut, AtomicLong::get)
+                .description("OTPs invalidated after too many wrong attempts")
+                .register(registry);
+    }
 }
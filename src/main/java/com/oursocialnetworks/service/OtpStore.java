@@ -0,0 +1,42 @@
+package com.oursocialnetworks.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Nơi lưu OTP (email đã lowercase → OtpData). Chọn bằng app.otp.store:
+ * memory (mặc định, 1 instance) hoặc supabase (bảng dùng chung, chạy nhiều instance sau load balancer không cần sticky session).
+ */
+public interface OtpStore {
+
+    void save(String email, OtpService.OtpData data);
+
+    /**
+     * OTP hiện tại của email, null nếu không có / đã hết hạn
+     */
+    OtpService.OtpData find(String email);
+
+    /**
+     * Tăng số lần nhập sai của OTP đang lưu, trả về số lần sau khi tăng
+     */
+    int recordFailedAttempt(String email, OtpService.OtpData data);
+
+    /**
+     * OTP người dùng nhập có khớp OTP đã lưu không (data lấy từ find, so sánh thời gian hằng).
+     * Store không giữ bản rõ (SupabaseOtpStore lưu HMAC) thì override để băm otp trước khi so.
+     */
+    default boolean matches(String email, OtpService.OtpData data, String otp) {
+        return otp != null
+                && MessageDigest.isEqual(data.otp.getBytes(StandardCharsets.UTF_8), otp.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void remove(String email);
+
+    /**
+     * Số OTP còn hạn
+     */
+    long liveCount();
+
+    Map<String, Object> stats();
+}
@@ -0,0 +1,171 @@
+package com.oursocialnetworks.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Hash / verify mật khẩu (BCrypt) trên executor riêng, số thread = số core, hàng đợi có giới hạn.
+ * Request thread chỉ chờ kết quả nên hash nặng CPU không chiếm hết thread xử lý request;
+ * quá tải (hàng đợi đầy / chờ quá timeout) → RejectedExecutionException để controller trả 503.
+ *
+ * Mật khẩu cũ lưu dạng plain text vẫn verify được; login thành công thì rehash nền (needsRehash).
+ */
+@Slf4j
+@Service
+public class PasswordHashingService implements MeterBinder {
+
+    private static final Pattern BCRYPT = Pattern.compile("^\\$2[aby]?\\$\\d\\d\\$[./A-Za-z0-9]{53}$");
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor hashExecutor;
+    private final Executor backgroundExecutor;
+    private final long timeoutMs;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong rehashed = new AtomicLong();
+    private final AtomicLong rehashDeferred = new AtomicLong();
+
+    public PasswordHashingService(PasswordEncoder encoder,
+                                  @Value("${app.password.threads:0}") int threads,
+                                  @Value("${app.password.queue-capacity:256}") int queueCapacity,
+                                  @Value("${app.password.timeout-ms:5000}") long timeoutMs,
+                                  @Qualifier("applicationTaskExecutor") Executor backgroundExecutor) {
+        this.encoder = encoder;
+        this.backgroundExecutor = backgroundExecutor;
+        this.timeoutMs = timeoutMs;
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.hashExecutor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Hash mật khẩu mới trước khi ghi vào password_login
+     */
+    public String hash(String raw) {
+        return await(() -> encoder.encode(raw));
+    }
+
+    /**
+     * So mật khẩu với giá trị trong DB: BCrypt hoặc plain text (dữ liệu cũ chưa migrate)
+     */
+    public boolean matches(String raw, String stored) {
+        if (raw == null || stored == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(raw.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        return await(() -> encoder.matches(raw, stored));
+    }
+
+    /**
+     * Plain text hoặc BCrypt cost thấp hơn cấu hình hiện tại → cần hash lại
+     */
+    public boolean needsRehash(String stored) {
+        return stored != null && (!isHashed(stored) || encoder.upgradeEncoding(stored));
+    }
+
+    /**
+     * Hash lại ở nền rồi gọi store(hash) trên background executor (ghi Supabase), không chặn login
+     */
+    public void rehashInBackground(String raw, Consumer<String> store) {
+        // Ưu tiên login đang chờ: pool đã có việc xếp hàng thì để lần login sau mới migrate
+        if (hashExecutor.getQueue().size() >= hashExecutor.getMaximumPoolSize()) {
+            rehashDeferred.incrementAndGet();
+            return;
+        }
+        try {
+            CompletableFuture.supplyAsync(() -> encoder.encode(raw), hashExecutor)
+                    .thenAcceptAsync(store, backgroundExecutor)
+                    .whenComplete((ignored, ex) -> {
+                        if (ex != null) {
+                            log.warn("Password rehash failed: {}", ex.getMessage());
+                        } else {
+                            rehashed.incrementAndGet();
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            // Đang quá tải: bỏ qua, lần login sau sẽ migrate
+            rehashDeferred.incrementAndGet();
+        }
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored != null && BCRYPT.matcher(stored).matches();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("threads", hashExecutor.getMaximumPoolSize());
+        result.put("active", hashExecutor.getActiveCount());
+        result.put("queued", hashExecutor.getQueue().size());
+        result.put("completed", hashExecutor.getCompletedTaskCount());
+        result.put("rejected", rejected.get());
+        result.put("rehashed", rehashed.get());
+        result.put("rehashDeferred", rehashDeferred.get());
+        return result;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("password.hash.queued", hashExecutor, e -> e.getQueue().size()).register(registry);
+        Gauge.builder("password.hash.active", hashExecutor, ThreadPoolExecutor::getActiveCount).register(registry);
+        FunctionCounter.builder("password.hash.rejected", rejected, AtomicLong::get)
+                .description("Hash / verify requests refused because the pool was saturated (answered 503)")
+                .register(registry);
+        FunctionCounter.builder("password.hash.rehashed", rehashed, AtomicLong::get).register(registry);
+        FunctionCounter.builder("password.hash.rehash.deferred", rehashDeferred, AtomicLong::get).register(registry);
+    }
+
+    private <T> T await(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = hashExecutor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Hệ thống đang bận, vui lòng thử lại sau");
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Hệ thống đang bận, vui lòng thử lại sau");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bị ngắt khi xử lý mật khẩu", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Lỗi xử lý mật khẩu: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashExecutor.shutdown();
+    }
+}
@@ -0,0 +1,72 @@
+package com.oursocialnetworks.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cache TTL ngắn cho trạng thái follow giữa 2 user (viewer → target).
+ * Các thao tác follow / unfollow / accept / reject / unfriend phải gọi invalidate(a, b).
+ */
+@Component
+public class RelationshipCache implements MeterBinder {
+
+    private final Cache<String, String> cache;
+
+    public RelationshipCache(@Value("${app.cache.relationship.max-size:50000}") long maxSize,
+                             @Value("${app.cache.relationship.ttl-seconds:10}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public String get(UUID viewerId, UUID targetId) {
+        return cache.getIfPresent(key(viewerId, targetId));
+    }
+
+    public void put(UUID viewerId, UUID targetId, String status) {
+        cache.put(key(viewerId, targetId), status);
+    }
+
+    /**
+     * Xóa cả 2 chiều vì status của A nhìn B và B nhìn A đều thay đổi
+     */
+    public void invalidate(UUID a, UUID b) {
+        if (a == null || b == null) {
+            return;
+        }
+        cache.invalidate(key(a, b));
+        cache.invalidate(key(b, a));
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats s = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", s.hitCount());
+        result.put("misses", s.missCount());
+        result.put("hitRate", s.hitRate());
+        return result;
+    }
+
+    private static String key(UUID viewerId, UUID targetId) {
+        return viewerId + ":" + targetId;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "relationship");
+    }
+}
@@ -1,20 +1,20 @@
 package com.oursocialnetworks.service;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
+@Slf4j
 @Service
 public class ResendEmailService {
 
-    private final TemplateEngine templateEngine;
+    private final EmailTemplateRenderer templateRenderer;
     private final RestTemplate restTemplate;
 
     @Value("${resend.api.key:}")
@@ -31,21 +31,15 @@ public class ResendEmailService {
 
     private static final String RESEND_API_URL = "https://api.resend.com/emails";
 
-    public ResendEmailService(TemplateEngine templateEngine) {
-        this.templateEngine = templateEngine;
-        this.restTemplate = new RestTemplate();
+    public ResendEmailService(EmailTemplateRenderer templateRenderer, RestTemplate restTemplate) {
+        this.templateRenderer = templateRenderer;
+        this.restTemplate = restTemplate;
     }
 
     @jakarta.annotation.PostConstruct
     public void init() {
-        System.out.println("========== RESEND EMAIL SERVICE INIT ==========");
-        System.out.println("resendEnabled: " + resendEnabled);
-        System.out.println("resendApiKey exists: " + (resendApiKey != null && !resendApiKey.trim().isEmpty()));
-        System.out.println("resendApiKey length: " + (resendApiKey != null ? resendApiKey.length() : 0));
-        System.out.println("fromEmail: " + fromEmail);
-        System.out.println("backendUrl: " + backendUrl);
-        System.out.println("Service ready: " + isConfigured());
-        System.out.println("================================================");
+        log.info("Resend: enabled={} apiKey={} from={} ready={}", resendEnabled,
+                resendApiKey != null && !resendApiKey.trim().isEmpty() ? "set" : "missing", fromEmail, isConfigured());
     }
 
     /**
@@ -53,21 +47,16 @@ public class ResendEmailService {
      */
     public boolean sendTempPasswordEmail(String toEmail, String username, String tempPassword) {
         if (!resendEnabled || resendApiKey == null || resendApiKey.trim().isEmpty()) {
-            System.out.println("📧 Resend is disabled or not configured");
             return false;
         }
 
         try {
-            System.out.println("📧 [Resend] Sending temp password email to: " + toEmail);
-
             // Tạo HTML content từ template
-            Context context = new Context();
-            context.setVariable("username", username);
-            context.setVariable("email", toEmail);
-            context.setVariable("tempPassword", tempPassword);
-            context.setVariable("changePasswordUrl", backendUrl + "/change-password?email=" + toEmail);
-
-            String htmlContent = templateEngine.process("email-temp-password", context);
+            String htmlContent = templateRenderer.render("email-temp-password", EmailTemplateRenderer.variables(
+                "username", username,
+                "email", toEmail,
+                "tempPassword", tempPassword,
+                "changePasswordUrl", backendUrl + "/change-password?email=" + toEmail));
 
             // Gọi Resend API với cấu hình chống spam
             HttpHeaders headers = new HttpHeaders();
@@ -91,8 +80,6 @@ public class ResendEmailService {
             body.put("subject", "Chào mừng bạn đến với ConBoKhanh");
             body.put("html", htmlContent);
             
-            System.out.println("📧 [Resend] From: " + fromAddress);
-            
             // Thêm tags để tracking
             Map<String, String> tags = new HashMap<>();
             tags.put("category", "welcome");
@@ -121,8 +108,6 @@ public class ResendEmailService {
             emailHeaders.put("List-Unsubscribe-Post", "List-Unsubscribe=One-Click");
             emailHeaders.put("X-Mailer", "ConBoKhanh-System");
             body.put("headers", emailHeaders);
-            
-            System.out.println("📧 [Resend] Unique ID: " + uniqueId);
 
             HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
 
@@ -134,18 +119,15 @@ public class ResendEmailService {
             );
 
             if (response.getStatusCode().is2xxSuccessful()) {
-                System.out.println("✅ [Resend] Email sent successfully to: " + toEmail);
-                System.out.println("✅ [Resend] Response: " + response.getBody());
+                log.debug("Resend welcome email sent to {} (ref {})", toEmail, uniqueId);
                 return true;
             } else {
-                System.err.println("❌ [Resend] Failed to send email. Status: " + response.getStatusCode());
-                System.err.println("❌ [Resend] Response: " + response.getBody());
+                log.warn("Resend rejected email to {}: {} {}", toEmail, response.getStatusCode(), response.getBody());
                 return false;
             }
 
         } catch (Exception e) {
-            System.err.println("❌ [Resend] Error sending email: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("Resend email to {} failed: {}", toEmail, e.getMessage());
             return false;
         }
     }
@@ -159,21 +141,8 @@ public class ResendEmailService {
         }
 
         try {
-            System.out.println("📧 [Resend] Sending OTP email to: " + toEmail + " (type: " + type + ")");
-
-            String subject = type.equals("register") 
-                ? "🔐 Mã xác thực đăng ký tài khoản ConBoKhanh"
-                : "🔐 Mã xác thực đặt lại mật khẩu ConBoKhanh";
-            
-            String title = type.equals("register") 
-                ? "Xác thực đăng ký tài khoản"
-                : "Đặt lại mật khẩu";
-            
-            String message = type.equals("register")
-                ? "Bạn đang đăng ký tài khoản mới tại ConBoKhanh. Vui lòng nhập mã OTP bên dưới để xác thực email của bạn."
-                : "Bạn đã yêu cầu đặt lại mật khẩu. Vui lòng nhập mã OTP bên dưới để tiếp tục.";
-
-            String htmlContent = buildOtpEmailHtml(otp, title, message);
+            String subject = otpSubject(type);
+            String htmlContent = otpEmailHtml(otp, type);
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
@@ -195,19 +164,50 @@ public class ResendEmailService {
             ResponseEntity<String> response = restTemplate.exchange(RESEND_API_URL, HttpMethod.POST, request, String.class);
 
             if (response.getStatusCode().is2xxSuccessful()) {
-                System.out.println("✅ [Resend] OTP email sent to: " + toEmail);
+                log.debug("Resend OTP email sent to {} (type {})", toEmail, type);
                 return true;
             }
-            System.err.println("❌ [Resend] Failed: " + response.getBody());
+            log.warn("Resend rejected OTP email to {}: {}", toEmail, response.getBody());
             return false;
 
         } catch (Exception e) {
-            System.err.println("❌ [Resend] Error: " + e.getMessage());
+            log.warn("Resend OTP email to {} failed: {}", toEmail, e.getMessage());
             return false;
         }
     }
 
-    private String buildOtpEmailHtml(String otp, String title, String message) {
+    static String otpSubject(String type) {
+        return type.equals("register")
+            ? "🔐 Mã xác thực đăng ký tài khoản ConBoKhanh"
+            : "🔐 Mã xác thực đặt lại mật khẩu ConBoKhanh";
+    }
+
+    // HTML OTP dựng sẵn cho từng type, tách quanh chỗ đặt mã: [trước, sau]
+    private static final String OTP_MARKER = "@@otp@@";
+    private static final String[] OTP_HTML_REGISTER = buildOtpEmailHtml(OTP_MARKER, otpTitle("register"), otpMessage("register")).split(OTP_MARKER, 2);
+    private static final String[] OTP_HTML_FORGOT = buildOtpEmailHtml(OTP_MARKER, otpTitle("forgot"), otpMessage("forgot")).split(OTP_MARKER, 2);
+
+    /**
+     * HTML email OTP, dùng chung cho Resend và SMTP (SmtpEmailService)
+     */
+    static String otpEmailHtml(String otp, String type) {
+        String[] parts = type.equals("register") ? OTP_HTML_REGISTER : OTP_HTML_FORGOT;
+        return parts[0] + otp + parts[1];
+    }
+
+    private static String otpTitle(String type) {
+        return type.equals("register")
+            ? "Xác thực đăng ký tài khoản"
+            : "Đặt lại mật khẩu";
+    }
+
+    private static String otpMessage(String type) {
+        return type.equals("register")
+            ? "Bạn đang đăng ký tài khoản mới tại ConBoKhanh. Vui lòng nhập mã OTP bên dưới để xác thực email của bạn."
+            : "Bạn đã yêu cầu đặt lại mật khẩu. Vui lòng nhập mã OTP bên dưới để tiếp tục.";
+    }
+
+    private static String buildOtpEmailHtml(String otp, String title, String message) {
         return "<!DOCTYPE html><html><head><meta charset='UTF-8'></head><body style='font-family: -apple-system, BlinkMacSystemFont, sans-serif; background: #f8f9fa; padding: 40px 20px;'>" +
             "<div style='max-width: 500px; margin: 0 auto; background: #fff; border-radius: 16px; overflow: hidden; box-shadow: 0 4px 20px rgba(0,0,0,0.1);'>" +
             "<div style='background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); padding: 30px; text-align: center;'>" +
@@ -232,10 +232,6 @@ public class ResendEmailService {
      * Kiểm tra Resend đã được cấu hình chưa
      */
     public boolean isConfigured() {
-        boolean configured = resendEnabled && resendApiKey != null && !resendApiKey.trim().isEmpty();
-        if (!configured) {
-            System.out.println("⚠️ [Resend] NOT configured - resendEnabled: " + resendEnabled + ", apiKey exists: " + (resendApiKey != null && !resendApiKey.trim().isEmpty()));
-        }
-        return configured;
+        return resendEnabled && resendApiKey != null && !resendApiKey.trim().isEmpty();
     }
 }
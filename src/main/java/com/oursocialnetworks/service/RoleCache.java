@@ -0,0 +1,119 @@
+package com.oursocialnetworks.service;
+
+import com.oursocialnetworks.entity.Role;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bảng Role giữ trong bộ nhớ (bảng nhỏ, gần như không đổi) để user query không cần embed Role(...)
+ * và tạo user không phải tra role "User" mỗi lần.
+ * SupabaseUserService load lúc khởi động và định kỳ; mỗi lần load thay nguyên snapshot (map bất biến).
+ * byId tra cả role đã tắt (user cũ vẫn mang role đó), byName chỉ tra role status = 1.
+ */
+@Component
+public class RoleCache implements MeterBinder {
+
+    private record Snapshot(Map<UUID, Role> byId, Map<String, Role> byName, long loadedAt) {}
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), 0);
+    private final long missReloadIntervalMs;
+    private final AtomicLong lastMissReload = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+
+    public RoleCache(@Value("${app.cache.role.miss-reload-interval-ms:10000}") long missReloadIntervalMs) {
+        this.missReloadIntervalMs = missReloadIntervalMs;
+    }
+
+    /**
+     * Thay toàn bộ bảng bằng các dòng vừa đọc từ Supabase
+     */
+    public void replace(Role[] roles) {
+        Map<UUID, Role> byId = new HashMap<>();
+        Map<String, Role> byName = new HashMap<>();
+        if (roles != null) {
+            for (Role role : roles) {
+                if (role.getId() == null) {
+                    continue;
+                }
+                byId.put(role.getId(), role);
+                if (role.getRole() != null && Integer.valueOf(1).equals(role.getStatus())) {
+                    byName.putIfAbsent(role.getRole(), role);
+                }
+            }
+        }
+        snapshot = new Snapshot(Map.copyOf(byId), Map.copyOf(byName), System.currentTimeMillis());
+        reloads.incrementAndGet();
+    }
+
+    public boolean isLoaded() {
+        return snapshot.loadedAt() > 0;
+    }
+
+    /**
+     * Role theo id (bản copy, chỉ id + tên như embed Role(id,role) trước đây), null nếu chưa có trong bảng
+     */
+    public Role byId(UUID id) {
+        return id != null ? count(snapshot.byId().get(id)) : null;
+    }
+
+    /**
+     * Role đang active theo tên (so khớp chính xác như filter role=eq.<name>)
+     */
+    public Role byName(String name) {
+        return name != null ? count(snapshot.byName().get(name)) : null;
+    }
+
+    /**
+     * Miss có thể do role mới thêm sau lần load trước: cho phép load lại ngay, nhưng tối đa 1 lần mỗi
+     * miss-reload-interval-ms để id rác không kéo mọi request về Supabase
+     */
+    public boolean tryAcquireMissReload() {
+        long now = System.currentTimeMillis();
+        long last = lastMissReload.get();
+        return now - last >= missReloadIntervalMs && lastMissReload.compareAndSet(last, now);
+    }
+
+    private Role count(Role role) {
+        if (role == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new Role(role.getId(), null, null, role.getRole(), null);
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot s = snapshot;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", s.byId().size());
+        result.put("active", s.byName().size());
+        result.put("loadedAt", s.loadedAt());
+        result.put("hits", hits.get());
+        result.put("misses", misses.get());
+        result.put("reloads", reloads.get());
+        return result;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cache.role.size", this, c -> c.snapshot.byId().size()).register(registry);
+        FunctionCounter.builder("cache.role.lookups", hits, AtomicLong::get).tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.role.lookups", misses, AtomicLong::get).tag("result", "miss").register(registry);
+        FunctionCounter.builder("cache.role.reloads", reloads, AtomicLong::get)
+                .description("Times the role table was reloaded from Supabase")
+                .register(registry);
+    }
+}
@@ -0,0 +1,114 @@
+package com.oursocialnetworks.service;
+
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+/**
+ * Gửi email qua Gmail SMTP (chỉ hoạt động local, Render block SMTP). Gọi đồng bộ - EmailOutbox gọi từ worker thread.
+ */
+@Slf4j
+@Service
+public class SmtpEmailService {
+
+    private final JavaMailSender mailSender;
+    private final EmailTemplateRenderer templateRenderer;
+
+    @Value("${app.email.from}")
+    private String fromEmail;
+
+    @Value("${app.email.enabled:false}")
+    private boolean emailEnabled;
+
+    @Value("${spring.mail.username:}")
+    private String emailUsername;
+
+    @Value("${app.backend.url:https://our-social-networks-be.onrender.com}")
+    private String backendUrl;
+
+    public SmtpEmailService(JavaMailSender mailSender, EmailTemplateRenderer templateRenderer) {
+        this.mailSender = mailSender;
+        this.templateRenderer = templateRenderer;
+    }
+
+    /**
+     * Kiểm tra SMTP đã bật và có tài khoản gửi chưa
+     */
+    public boolean isConfigured() {
+        return emailEnabled && emailUsername != null && !emailUsername.trim().isEmpty();
+    }
+
+    /**
+     * Email thông báo tài khoản mới được tạo với password tạm thời
+     */
+    public boolean sendNewAccountEmail(String email, String username, String tempPassword) {
+        String htmlContent = templateRenderer.render("email-new-account", EmailTemplateRenderer.variables(
+                "username", username,
+                "email", email,
+                "tempPassword", tempPassword));
+        return sendHtmlEmail(email, "🎉 Tài khoản conbokhanh của bạn đã được tạo", htmlContent);
+    }
+
+    /**
+     * Email mật khẩu tạm thời cho user mới từ Google OAuth2
+     */
+    public boolean sendTempPasswordEmail(String email, String username, String tempPassword) {
+        String htmlContent = templateRenderer.render("email-temp-password", EmailTemplateRenderer.variables(
+                "username", username,
+                "email", email,
+                "tempPassword", tempPassword,
+                "changePasswordUrl", backendUrl + "/change-password?email=" + email));
+        return sendHtmlEmail(email, "🔐 Mật khẩu tạm thời cho tài khoản ConBoKhanh của bạn", htmlContent);
+    }
+
+    /**
+     * Email OTP (cùng nội dung với bản gửi qua Resend)
+     */
+    public boolean sendOtpEmail(String toEmail, String otp, String type) {
+        return sendHtmlEmail(toEmail, ResendEmailService.otpSubject(type), ResendEmailService.otpEmailHtml(otp, type));
+    }
+
+    /**
+     * Gửi HTML email qua Gmail SMTP
+     */
+    private boolean sendHtmlEmail(String toEmail, String subject, String htmlContent) {
+        try {
+            // Kiểm tra nếu email bị tắt hoặc chưa config
+            if (!isConfigured()) {
+                log.debug("SMTP disabled, skipping email to {}", toEmail);
+                return false;
+            }
+
+            MimeMessage mimeMessage = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+
+            helper.setFrom(fromEmail);
+            helper.setTo(toEmail);
+            helper.setSubject(subject);
+            helper.setText(htmlContent, true);
+
+            // Thêm headers để tránh spam
+            mimeMessage.setHeader("X-Mailer", "ConBoKhanh Social Network");
+            mimeMessage.setHeader("X-Priority", "3");
+
+            mailSender.send(mimeMessage);
+
+            log.debug("SMTP email \"{}\" sent to {}", subject, toEmail);
+            return true;
+
+        } catch (org.springframework.mail.MailAuthenticationException e) {
+            // Kiểm tra Gmail + App Password (cần bật 2-Step Verification)
+            log.error("SMTP authentication failed for {}: {}", emailUsername, e.getMessage());
+            return false;
+        } catch (org.springframework.mail.MailSendException e) {
+            log.warn("SMTP send to {} failed: {}", toEmail, e.getMessage());
+            return false;
+        } catch (Exception e) {
+            log.error("SMTP send to {} failed", toEmail, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package com.oursocialnetworks.service;
+
+import com.oursocialnetworks.entity.FriendRequest;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Index in-memory cho bảng list-and-user (domain friends).
+ * User id được intern thành int, cạnh lưu trong mảng primitive (long id + int peer) theo từng node,
+ * tách riêng Pending / Done và chiều đi / đến để đọc followers, following, pending, status không cần gọi Supabase.
+ *
+ * Bật bằng app.graph.enabled=true. FriendsService chịu trách nhiệm load, đồng bộ ghi và reconcile định kỳ.
+ */
+@Component
+public class SocialGraphIndex implements MeterBinder {
+
+    private static final String PENDING = "Pending";
+    private static final String DONE = "Done";
+
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Graph graph;              // null = chưa load xong
+    private List<FriendRequest> replayLog;      // ghi nhận thay đổi trong lúc rebuild (guarded by write lock)
+
+    public SocialGraphIndex(@Value("${app.graph.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return enabled && graph != null;
+    }
+
+    /**
+     * Load lại toàn bộ cạnh active. pageLoader nhận id cuối của trang trước, trả mảng rỗng khi hết.
+     * Các thay đổi apply() trong lúc load được replay vào graph mới trước khi swap.
+     */
+    public void rebuild(LongFunction<FriendRequest[]> pageLoader) {
+        write(() -> replayLog = new ArrayList<>());
+        try {
+            Graph fresh = new Graph();
+            long lastId = 0;
+            while (true) {
+                FriendRequest[] page = pageLoader.apply(lastId);
+                if (page == null || page.length == 0) {
+                    break;
+                }
+                for (FriendRequest row : page) {
+                    fresh.apply(row);
+                    if (row.getId() != null && row.getId() > lastId) {
+                        lastId = row.getId();
+                    }
+                }
+            }
+            write(() -> {
+                for (FriendRequest row : replayLog) {
+                    fresh.apply(row);
+                }
+                graph = fresh;
+            });
+        } finally {
+            write(() -> replayLog = null);
+        }
+    }
+
+    /**
+     * Đồng bộ 1 record sau khi ghi (insert / đổi status_fr / soft delete status = 0)
+     */
+    public void apply(FriendRequest row) {
+        if (!enabled || row == null || row.getId() == null) {
+            return;
+        }
+        write(() -> {
+            if (replayLog != null) {
+                replayLog.add(row);
+            }
+            if (graph != null) {
+                graph.apply(row);
+            }
+        });
+    }
+
+    /**
+     * Cạnh đến user (friend_id = user), ví dụ followers (Done) hoặc lời mời đang chờ (Pending)
+     */
+    public FriendRequest[] incoming(UUID userId, String statusFr, Long beforeId, int page, int size) {
+        return read(() -> graph.page(userId, statusFr, false, beforeId, page, size));
+    }
+
+    /**
+     * Cạnh đi từ user (id_user = user), ví dụ following (Done)
+     */
+    public FriendRequest[] outgoing(UUID userId, String statusFr, Long beforeId, int page, int size) {
+        return read(() -> graph.page(userId, statusFr, true, beforeId, page, size));
+    }
+
+    /**
+     * Tất cả record active giữa 2 user (cả 2 chiều)
+     */
+    public List<FriendRequest> between(UUID a, UUID b) {
+        return read(() -> graph.between(a, b));
+    }
+
+    /**
+     * Số node / cạnh và ước lượng bộ nhớ đang dùng
+     */
+    public Map<String, Object> footprint() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("ready", isReady());
+        if (graph != null) {
+            read(() -> {
+                result.put("nodes", graph.ids.size());
+                result.put("edges", graph.edges.size);
+                result.put("estimatedBytes", graph.estimateBytes());
+                return null;
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        // Đọc size() không lấy lock: chỉ để quan sát, lệch 1 nhịp không sao
+        Gauge.builder("social.graph.nodes", this, g -> g.graph != null ? g.graph.ids.size() : 0).register(registry);
+        Gauge.builder("social.graph.edges", this, g -> g.graph != null ? g.graph.edges.size : 0).register(registry);
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ========== DATA STRUCTURE ==========
+
+    /**
+     * Danh sách cạnh của 1 node: 2 mảng song song (id record, peer index), luôn sắp theo id tăng dần
+     * để phân trang chỉ cần binary search + cắt mảng, không sort lúc đọc
+     */
+    private static final class EdgeList {
+        long[] ids = new long[4];
+        int[] peers = new int[4];
+        int size;
+
+        void add(long id, int peer) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                peers = Arrays.copyOf(peers, size * 2);
+            }
+            // Record mới thường có id lớn nhất → append; load / replay lệch thứ tự thì chèn đúng chỗ
+            int pos = size == 0 || ids[size - 1] < id ? size : lowerBound(id);
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            System.arraycopy(peers, pos, peers, pos + 1, size - pos);
+            ids[pos] = id;
+            peers[pos] = peer;
+            size++;
+        }
+
+        void remove(long id) {
+            int pos = lowerBound(id);
+            if (pos < size && ids[pos] == id) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                System.arraycopy(peers, pos + 1, peers, pos, size - pos - 1);
+                size--;
+            }
+        }
+
+        /**
+         * Vị trí đầu tiên có id >= key (= size nếu không có)
+         */
+        int lowerBound(long key) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ids[mid] < key) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        long bytes() {
+            return 32L + ids.length * 8L + peers.length * 4L;
+        }
+    }
+
+    /**
+     * id record → (from << 32 | to), bit 63 = Pending. Open addressing (linear probing) trên 2 mảng long:
+     * 16-24 byte mỗi cạnh thay vì ~100+ byte và 3 object của HashMap<Long, Long>
+     */
+    private static final class EdgeMap {
+        static final long PENDING_BIT = Long.MIN_VALUE;
+        // id bigserial luôn dương: dùng giá trị âm làm ô trống
+        private static final long EMPTY = -1;
+
+        long[] keys = newKeys(16);
+        long[] values = new long[16];
+        int size;
+
+        static long pack(int from, int to, boolean pending) {
+            return ((long) from << 32) | (to & 0xffffffffL) | (pending ? PENDING_BIT : 0);
+        }
+
+        static int from(long packed) {
+            return (int) ((packed >>> 32) & 0x7fffffff);
+        }
+
+        static int to(long packed) {
+            return (int) packed;
+        }
+
+        static boolean pending(long packed) {
+            return (packed & PENDING_BIT) != 0;
+        }
+
+        /**
+         * Ô chứa id, -1 nếu không có
+         */
+        int find(long id) {
+            int mask = keys.length - 1;
+            for (int i = home(id, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == id) {
+                    return i;
+                }
+                if (keys[i] == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(long id, long packed) {
+            if ((size + 1) * 3L > keys.length * 2L) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = home(id, mask);
+            while (keys[i] != EMPTY && keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                keys[i] = id;
+                size++;
+            }
+            values[i] = packed;
+        }
+
+        /**
+         * Xóa bằng backward shift (không để tombstone): dời các entry phía sau về ô trống nếu ô đó nằm giữa
+         * vị trí gốc của entry và vị trí hiện tại
+         */
+        void removeAt(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            for (int i = (slot + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (((i - home(keys[i], mask)) & mask) >= ((i - gap) & mask)) {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    gap = i;
+                }
+            }
+            keys[gap] = EMPTY;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = newKeys(capacity);
+            values = new long[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != EMPTY) {
+                    int i = home(oldKeys[j], mask);
+                    while (keys[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int home(long id, int mask) {
+            long h = id * 0x9E3779B97F4A7C15L; // id tăng dần liên tiếp → trộn bit để không dồn cụm
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        long bytes() {
+            return 24L + 2 * (16L + keys.length * 8L);
+        }
+    }
+
+    private static final class Node {
+        EdgeList outDone, outPending, inDone, inPending;
+
+        EdgeList list(boolean outgoing, boolean pending, boolean create) {
+            if (outgoing) {
+                if (pending) return outPending != null || !create ? outPending : (outPending = new EdgeList());
+                return outDone != null || !create ? outDone : (outDone = new EdgeList());
+            }
+            if (pending) return inPending != null || !create ? inPending : (inPending = new EdgeList());
+            return inDone != null || !create ? inDone : (inDone = new EdgeList());
+        }
+    }
+
+    private static final class Graph {
+        final Map<UUID, Integer> index = new HashMap<>();
+        final List<UUID> ids = new ArrayList<>();
+        final List<Node> nodes = new ArrayList<>();
+        final EdgeMap edges = new EdgeMap();
+
+        int intern(UUID id) {
+            Integer idx = index.get(id);
+            if (idx != null) {
+                return idx;
+            }
+            int next = ids.size();
+            index.put(id, next);
+            ids.add(id);
+            nodes.add(new Node());
+            return next;
+        }
+
+        void apply(FriendRequest row) {
+            long id = row.getId();
+            remove(id);
+            boolean active = row.getStatus() == null || row.getStatus() == 1;
+            if (!active || row.getIdUser() == null || row.getFriendId() == null) {
+                return;
+            }
+            boolean pending = PENDING.equals(row.getStatusFr());
+            int from = intern(row.getIdUser());
+            int to = intern(row.getFriendId());
+            nodes.get(from).list(true, pending, true).add(id, to);
+            nodes.get(to).list(false, pending, true).add(id, from);
+            edges.put(id, EdgeMap.pack(from, to, pending));
+        }
+
+        void remove(long id) {
+            int slot = edges.find(id);
+            if (slot < 0) {
+                return;
+            }
+            long packed = edges.values[slot];
+            edges.removeAt(slot);
+            boolean pending = EdgeMap.pending(packed);
+            int from = EdgeMap.from(packed);
+            int to = EdgeMap.to(packed);
+            nodes.get(from).list(true, pending, true).remove(id);
+            nodes.get(to).list(false, pending, true).remove(id);
+        }
+
+        FriendRequest[] page(UUID userId, String statusFr, boolean outgoing, Long beforeId, int page, int size) {
+            Integer idx = index.get(userId);
+            if (idx == null) {
+                return new FriendRequest[0];
+            }
+            EdgeList list = nodes.get(idx).list(outgoing, PENDING.equals(statusFr), false);
+            if (list == null || list.size == 0) {
+                return new FriendRequest[0];
+            }
+
+            // Giống order=id.desc của Supabase: đi ngược từ end (không gồm) về đầu mảng
+            int end;
+            if (beforeId != null) {
+                end = list.lowerBound(beforeId); // keyset: chỉ lấy id < cursor
+            } else {
+                end = (int) Math.max(0, list.size - (long) Math.max(page, 0) * Math.max(size, 0));
+            }
+            int count = Math.max(0, Math.min(size, end));
+            FriendRequest[] result = new FriendRequest[count];
+            for (int i = 0; i < count; i++) {
+                int pos = end - 1 - i;
+                UUID peer = ids.get(list.peers[pos]);
+                result[i] = outgoing
+                        ? toRequest(list.ids[pos], userId, peer, statusFr)
+                        : toRequest(list.ids[pos], peer, userId, statusFr);
+            }
+            return result;
+        }
+
+        List<FriendRequest> between(UUID a, UUID b) {
+            List<FriendRequest> result = new ArrayList<>(2);
+            Integer ia = index.get(a);
+            Integer ib = index.get(b);
+            if (ia == null || ib == null) {
+                return result;
+            }
+            Node node = nodes.get(ia);
+            collect(node.outDone, ib, a, b, DONE, true, result);
+            collect(node.outPending, ib, a, b, PENDING, true, result);
+            collect(node.inDone, ib, a, b, DONE, false, result);
+            collect(node.inPending, ib, a, b, PENDING, false, result);
+            return result;
+        }
+
+        private static void collect(EdgeList list, int peer, UUID self, UUID other, String statusFr,
+                                    boolean outgoing, List<FriendRequest> out) {
+            if (list == null) {
+                return;
+            }
+            for (int i = 0; i < list.size; i++) {
+                if (list.peers[i] == peer) {
+                    out.add(outgoing
+                            ? toRequest(list.ids[i], self, other, statusFr)
+                            : toRequest(list.ids[i], other, self, statusFr));
+                }
+            }
+        }
+
+        private static FriendRequest toRequest(long id, UUID idUser, UUID friendId, String statusFr) {
+            return new FriendRequest(id, idUser, friendId, statusFr, 1);
+        }
+
+        long estimateBytes() {
+            long bytes = 0;
+            // UUID (32) + HashMap entry (~48) + Integer (16) + ArrayList slot (4) + Node (32)
+            bytes += ids.size() * (32L + 48L + 16L + 4L + 32L);
+            for (Node node : nodes) {
+                if (node.outDone != null) bytes += node.outDone.bytes();
+                if (node.outPending != null) bytes += node.outPending.bytes();
+                if (node.inDone != null) bytes += node.inDone.bytes();
+                if (node.inPending != null) bytes += node.inPending.bytes();
+            }
+            bytes += edges.bytes();
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.oursocialnetworks.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * OTP trong bảng Supabase dùng chung (domain "otp": email, otp, type, expire_at epoch ms, attempts),
+ * để send-otp và verify-otp rơi vào 2 instance khác nhau vẫn chạy đúng.
+ *
+ * Cột otp không chứa mã: chỉ lưu HMAC-SHA256(app.otp.supabase.hash-secret, type|email|otp) dạng hex, nên ai đọc được
+ * bảng (key anon, bản backup, ...) cũng không lấy được mã đang chờ. Filter và so sánh đều trên HMAC.
+ *
+ * Bảng là nguồn duy nhất. Cố ý không cache local (khác yêu cầu ban đầu "batched and cached"): bản cache trên instance A
+ * sẽ còn chấp nhận OTP đã bị xóa / gửi lại / khóa vì nhập sai trên instance B tới khi hết hạn cache.
+ * Chỉ gom đọc: các lượt đọc trong cùng batch-window-ms thành 1 query email=in.(...).
+ * Lượt nhập sai được tăng bằng compare-and-set trên cột attempts, nên N instance vẫn chỉ có max-attempts lượt đoán.
+ * Entry hết hạn được xóa định kỳ.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "supabase")
+public class SupabaseOtpStore implements OtpStore {
+
+    private static final String DOMAIN = "otp";
+    // Số lần thử lại compare-and-set khi instance khác tăng attempts cùng lúc
+    private static final int MAX_CAS_ROUNDS = 10;
+    private static final String HMAC = "HmacSHA256";
+
+    private final SupabaseUserService supabase;
+    private final SecretKeySpec hashKey;
+    private final long batchWindowMs;
+    private final int batchMaxSize;
+
+    private final ConcurrentMap<String, CompletableFuture<OtpService.OtpData>> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "otp-batch-reader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedReads = new AtomicLong();
+    private final AtomicLong swept = new AtomicLong();
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class OtpRow {
+        private String email;
+        private String otp;
+        private String type;
+        @JsonProperty("expire_at")
+        private Long expireAt;
+        private Integer attempts;
+
+        OtpService.OtpData toData() {
+            return new OtpService.OtpData(otp, expireAt, type, attempts != null ? attempts : 0);
+        }
+    }
+
+    public SupabaseOtpStore(SupabaseUserService supabase,
+                            @Value("${app.otp.supabase.hash-secret:${jwt.secret}}") String hashSecret,
+                            @Value("${app.otp.supabase.batch-window-ms:5}") long batchWindowMs,
+                            @Value("${app.otp.supabase.batch-max-size:50}") int batchMaxSize) {
+        if (hashSecret == null || hashSecret.isBlank()) {
+            throw new IllegalStateException("app.otp.supabase.hash-secret (hoặc jwt.secret) phải được cấu hình");
+        }
+        this.supabase = supabase;
+        this.hashKey = new SecretKeySpec(hashSecret.getBytes(StandardCharsets.UTF_8), HMAC);
+        this.batchWindowMs = batchWindowMs;
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    @Override
+    public void save(String email, OtpService.OtpData data) {
+        // Helper post không có upsert: xóa OTP cũ của email rồi tạo mới
+        supabase.delete(DOMAIN, emailFilter(email), String.class);
+
+        Map<String, Object> row = new HashMap<>();
+        row.put("email", email);
+        row.put("otp", hash(email, data.type, data.otp));
+        row.put("type", data.type);
+        row.put("expire_at", data.expireTime);
+        row.put("attempts", data.attempts);
+        supabase.post(DOMAIN, row, String.class);
+    }
+
+    @Override
+    public OtpService.OtpData find(String email) {
+        CompletableFuture<OtpService.OtpData> future = pending.computeIfAbsent(email, k -> new CompletableFuture<>());
+        if (flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(this::flush, batchWindowMs, TimeUnit.MILLISECONDS);
+        }
+        try {
+            return future.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bị ngắt khi đọc OTP", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Không đọc được OTP: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gom các email đang chờ thành query email=in.(...) (mỗi query tối đa batchMaxSize email)
+     */
+    private void flush() {
+        // Reset trước khi lấy snapshot: email đến sau sẽ tự hẹn lượt flush mới
+        flushScheduled.set(false);
+        List<String> keys = new ArrayList<>(pending.keySet());
+        for (int from = 0; from < keys.size(); from += batchMaxSize) {
+            List<String> chunk = keys.subList(from, Math.min(from + batchMaxSize, keys.size()));
+            Map<String, CompletableFuture<OtpService.OtpData>> waiting = new HashMap<>();
+            for (String key : chunk) {
+                CompletableFuture<OtpService.OtpData> f = pending.remove(key);
+                if (f != null) {
+                    waiting.put(key, f);
+                }
+            }
+            if (waiting.isEmpty()) {
+                continue;
+            }
+            try {
+                Map<String, OtpService.OtpData> found = fetch(waiting.keySet());
+                batches.incrementAndGet();
+                batchedReads.addAndGet(waiting.size());
+                // Mỗi caller 1 object riêng (OtpData mutable)
+                waiting.forEach((key, f) -> f.complete(copyOf(found.get(key))));
+            } catch (RuntimeException e) {
+                waiting.values().forEach(f -> f.completeExceptionally(e));
+            }
+        }
+    }
+
+    private Map<String, OtpService.OtpData> fetch(Collection<String> emails) {
+        Map<String, String> params = new HashMap<>();
+        params.put("email", "in.(" + emails.stream()
+                .map(SupabaseUserService::quoteFilterValue)
+                .collect(Collectors.joining(",")) + ")");
+        params.put("expire_at", "gt." + System.currentTimeMillis());
+        params.put("select", "email,otp,type,expire_at,attempts");
+        OtpRow[] rows = supabase.get(DOMAIN, params, OtpRow[].class).getBody();
+
+        Map<String, OtpService.OtpData> result = new HashMap<>();
+        if (rows != null) {
+            for (OtpRow row : rows) {
+                // Trùng email (2 instance cùng save) → lấy OTP mới nhất
+                result.merge(row.getEmail(), row.toData(), (a, b) -> a.expireTime >= b.expireTime ? a : b);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * PATCH attempts=n+1 chỉ khi attempts vẫn = n (và OTP chưa bị gửi lại, so trên HMAC); thua race thì đọc lại n rồi thử tiếp.
+     * OTP đã bị xóa / thay → 0 như InMemoryOtpStore; tranh chấp quá MAX_CAS_ROUNDS vòng → coi như hết lượt
+     */
+    @Override
+    public int recordFailedAttempt(String email, OtpService.OtpData data) {
+        int observed = data.attempts;
+        for (int round = 0; round < MAX_CAS_ROUNDS; round++) {
+            Map<String, String> params = emailFilter(email);
+            params.put("otp", "eq." + data.otp);
+            params.put("attempts", "eq." + observed);
+            params.put("select", "attempts");
+            Map<String, Object> body = new HashMap<>();
+            body.put("attempts", observed + 1);
+            OtpRow[] updated = supabase.patch(DOMAIN, params, body, OtpRow[].class).getBody();
+            if (updated != null && updated.length > 0) {
+                data.attempts = observed + 1;
+                return data.attempts;
+            }
+
+            OtpService.OtpData current = fetch(List.of(email)).get(email);
+            if (current == null || !current.otp.equals(data.otp)) {
+                return 0;
+            }
+            observed = current.attempts;
+        }
+        log.warn("OTP attempt counter contended for {}, revoking", email);
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean matches(String email, OtpService.OtpData data, String otp) {
+        // data.otp (từ find) đã là HMAC
+        return otp != null && MessageDigest.isEqual(
+                data.otp.getBytes(StandardCharsets.UTF_8),
+                hash(email, data.type, otp).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * HMAC gắn với email + type: copy HMAC sang dòng của email khác hoặc dùng mã register cho forgot đều không khớp
+     */
+    private String hash(String email, String type, String otp) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(hashKey);
+            byte[] digest = mac.doFinal((type + '|' + email + '|' + otp).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Không tính được HMAC cho OTP", e);
+        }
+    }
+
+    @Override
+    public void remove(String email) {
+        supabase.delete(DOMAIN, emailFilter(email), String.class);
+    }
+
+    /**
+     * Đếm bằng HEAD + Prefer: count=exact, không tải dòng nào về
+     */
+    @Override
+    public long liveCount() {
+        Map<String, String> params = new HashMap<>();
+        params.put("expire_at", "gt." + System.currentTimeMillis());
+        return supabase.count(DOMAIN, params);
+    }
+
+    /**
+     * Xóa OTP hết hạn khỏi bảng (mọi instance cùng chạy cũng không sao, DELETE idempotent)
+     */
+    @Scheduled(fixedDelayString = "${app.otp.supabase.sweep-interval-ms:60000}",
+            initialDelayString = "${app.otp.supabase.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        try {
+            Map<String, String> params = new HashMap<>();
+            params.put("expire_at", "lt." + System.currentTimeMillis());
+            params.put("select", "email");
+            OtpRow[] removed = supabase.delete(DOMAIN, params, OtpRow[].class).getBody();
+            if (removed != null) {
+                swept.addAndGet(removed.length);
+            }
+        } catch (Exception e) {
+            log.warn("Sweep of expired OTPs failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("store", "supabase");
+        result.put("live", liveCount());
+        result.put("swept", swept.get());
+        result.put("batches", batches.get());
+        result.put("batchedReads", batchedReads.get());
+        return result;
+    }
+
+    /**
+     * email=in.("...") thay vì eq.: giá trị được quote như fetch(), dấu , ( ) " trong email không phá filter
+     */
+    private static Map<String, String> emailFilter(String email) {
+        Map<String, String> params = new HashMap<>();
+        params.put("email", "in.(" + SupabaseUserService.quoteFilterValue(email) + ")");
+        return params;
+    }
+
+    private static OtpService.OtpData copyOf(OtpService.OtpData data) {
+        return data != null ? new OtpService.OtpData(data.otp, data.expireTime, data.type, data.attempts) : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+}
@@ -1,26 +1,65 @@
 package com.oursocialnetworks.service;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.oursocialnetworks.component.HttpClientPools;
+import com.oursocialnetworks.component.RequestCoalescer;
+import com.oursocialnetworks.component.SupabaseResilience;
 import com.oursocialnetworks.config.SupabaseConfig;
+import com.oursocialnetworks.dto.UserCard;
 import com.oursocialnetworks.entity.Role;
 import com.oursocialnetworks.entity.User;
+import com.oursocialnetworks.exception.BusinessException;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestClientResponseException;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class SupabaseUserService {
 
     private final SupabaseConfig config;
-    private final RestTemplate restTemplate;
+    private final HttpClientPools httpClientPools;
+    private final RequestCoalescer coalescer;
+    private final SupabaseResilience resilience;
+    private final UserCache userCache;
+    private final LoginNegativeCache unknownLogins;
+    private final PasswordHashingService passwordHashing;
+    private final UserSearchIndex searchIndex;
+    private final RoleCache roleCache;
+
+    // Header trên response trả từ cache cũ hơn soft TTL (kèm Age tính bằng giây)
+    public static final String STALE_HEADER = "X-Stale-Data";
+
+    private static final int BATCH_LOOKUP_SIZE = 100;
+    private static final int SEARCH_LIMIT = 50;
+    private static final int SEARCH_LOAD_PAGE_SIZE = 1000; // max-rows mặc định của PostgREST
+
+    // Cột UserSearchIndex cần: card + email để match, status để bỏ user đã xóa khỏi index
+    private static final String SEARCH_INDEX_SELECT = UserProjection.CARD.select() + ",email,status";
+
+    // Role gán cho user mới (đăng ký / Google login)
+    public static final String DEFAULT_ROLE = "User";
 
     private HttpHeaders buildHeaders(String apiKey) {
         HttpHeaders headers = new HttpHeaders();
@@ -31,7 +70,8 @@ public class SupabaseUserService {
         return headers;
     }
 
-    private String buildUrl(String baseUrl, String table, Map<String, String> params) {
+    // package-private để benchmark (src/test) gọi trực tiếp
+    String buildUrl(String baseUrl, String table, Map<String, String> params) {
         StringBuilder url = new StringBuilder(baseUrl)
                 .append("/rest/v1/")
                 .append(table);
@@ -49,11 +89,15 @@ public class SupabaseUserService {
     // =========================
     // HELPER: User payload without nested Role
     // =========================
-    private Map<String, Object> toUserPayload(User user) {
+    Map<String, Object> toUserPayload(User user) {
         Map<String, Object> payload = new HashMap<>();
         if (user.getId() != null) payload.put("id", user.getId());
         payload.put("username_login", user.getUsernameLogin());
-        payload.put("password_login", user.getPasswordLogin());
+        // null = không đổi mật khẩu (User đọc từ Supabase không có password_login vì @JsonIgnore)
+        if (user.getPasswordLogin() != null) {
+            String password = user.getPasswordLogin();
+            payload.put("password_login", PasswordHashingService.isHashed(password) ? password : passwordHashing.hash(password));
+        }
         payload.put("image", user.getImage());
         payload.put("username", user.getUsername());
         payload.put("description", user.getDescription());
@@ -76,16 +120,26 @@ public class SupabaseUserService {
         return payload;
     }
 
+    /**
+     * Mọi call tới Supabase đi qua bulkhead / circuit breaker của domain (GET có retry)
+     */
+    private <R> ResponseEntity<R> exchange(String domain, String url, HttpMethod method, HttpEntity<?> entity, Class<R> responseType) {
+        return resilience.call(domain, method,
+                () -> httpClientPools.forDomain(domain).exchange(url, method, entity, responseType));
+    }
+
     // =========================
-    // GENERIC GET
+    // GENERIC GET (GET giống hệt đang chạy được gộp qua RequestCoalescer)
     // =========================
     public <T> ResponseEntity<T> get(String domain, Map<String, String> params, Class<T> responseType) {
         var d = config.getDomains().get(domain);
-        var headers = buildHeaders(d.getKey());
         var url = buildUrl(d.getUrl(), d.getTable(), params);
 
-        HttpEntity<?> entity = new HttpEntity<>(headers);
-        return restTemplate.exchange(url, HttpMethod.GET, entity, responseType);
+        // Gán role trong supplier: body dùng chung cho các request được gộp, không sửa sau khi trả ra
+        return coalescer.get(domain, url, responseType, () -> {
+            HttpEntity<?> entity = new HttpEntity<>(buildHeaders(d.getKey()));
+            return resolveRoles(domain, exchange(domain, url, HttpMethod.GET, entity, responseType));
+        });
     }
 
     // =========================
@@ -99,10 +153,14 @@ public class SupabaseUserService {
 
         try {
             HttpEntity<T> entity = new HttpEntity<>(body, headers);
-            return restTemplate.exchange(url, HttpMethod.POST, entity, responseType);
+            ResponseEntity<R> response = resolveRoles(domain, exchange(domain, url, HttpMethod.POST, entity, responseType));
+            syncSearchIndex(domain, null, response);
+            return response;
         } catch (RestClientResponseException ex) {
-            System.err.println("[Supabase POST error] status=" + ex.getStatusCode() + " body=" + ex.getResponseBodyAsString());
+            log.warn("Supabase POST {} failed: status={} body={}", domain, ex.getStatusCode(), ex.getResponseBodyAsString());
             throw ex;
+        } finally {
+            forgetUnknownLogins(domain, body);
         }
     }
 
@@ -116,28 +174,20 @@ public class SupabaseUserService {
         var url = buildUrl(d.getUrl(), d.getTable(), params);
 
         try {
-            System.out.println("========== SUPABASE PUT DEBUG ==========");
-            System.out.println("URL: " + url);
-            System.out.println("Params: " + params);
-            System.out.println("Body: " + body);
-            System.out.println("Headers: " + headers);
-            System.out.println("========================================");
-            
+            // Không log body: có thể chứa hash mật khẩu / thông tin cá nhân
+            log.debug("Supabase PUT {} params={}", domain, params);
+
             HttpEntity<T> entity = new HttpEntity<>(body, headers);
-            ResponseEntity<R> response = restTemplate.exchange(url, HttpMethod.PUT, entity, responseType);
-            
-            System.out.println("========== SUPABASE PUT RESPONSE ==========");
-            System.out.println("Status: " + response.getStatusCode());
-            System.out.println("Response Headers: " + response.getHeaders());
-            System.out.println("Response Body: " + response.getBody());
-            System.out.println("==========================================");
-            
+            ResponseEntity<R> response = resolveRoles(domain, exchange(domain, url, HttpMethod.PUT, entity, responseType));
+            syncSearchIndex(domain, params, response);
+            log.debug("Supabase PUT {} → {}", domain, response.getStatusCode());
             return response;
         } catch (RestClientResponseException ex) {
-            System.err.println("[Supabase PUT error] status=" + ex.getStatusCode() + " body=" + ex.getResponseBodyAsString());
-            System.err.println("URL was: " + url);
-            System.err.println("Request body was: " + body);
+            log.warn("Supabase PUT {} failed: status={} params={} body={}", domain, ex.getStatusCode(), params, ex.getResponseBodyAsString());
             throw ex;
+        } finally {
+            invalidateUserCache(domain, params);
+            forgetUnknownLogins(domain, body);
         }
     }
 
@@ -151,18 +201,18 @@ public class SupabaseUserService {
         var url = buildUrl(d.getUrl(), d.getTable(), params);
 
         try {
-            System.out.println("========== SUPABASE PATCH DEBUG ==========");
-            System.out.println("URL: " + url);
-            System.out.println("Params: " + params);
-            System.out.println("Body: " + body);
-            System.out.println("==========================================");
-            
+            log.debug("Supabase PATCH {} params={}", domain, params);
+
             HttpEntity<T> entity = new HttpEntity<>(body, headers);
-            return restTemplate.exchange(url, HttpMethod.PATCH, entity, responseType);
+            ResponseEntity<R> response = resolveRoles(domain, exchange(domain, url, HttpMethod.PATCH, entity, responseType));
+            syncSearchIndex(domain, params, response);
+            return response;
         } catch (RestClientResponseException ex) {
-            System.err.println("[Supabase PATCH error] status=" + ex.getStatusCode() + " body=" + ex.getResponseBodyAsString());
-            System.err.println("URL was: " + url);
+            log.warn("Supabase PATCH {} failed: status={} params={} body={}", domain, ex.getStatusCode(), params, ex.getResponseBodyAsString());
             throw ex;
+        } finally {
+            invalidateUserCache(domain, params);
+            forgetUnknownLogins(domain, body);
         }
     }
 
@@ -175,7 +225,178 @@ public class SupabaseUserService {
         var url = buildUrl(d.getUrl(), d.getTable(), params);
 
         HttpEntity<?> entity = new HttpEntity<>(headers);
-        return restTemplate.exchange(url, HttpMethod.DELETE, entity, responseType);
+        try {
+            ResponseEntity<T> response = exchange(domain, url, HttpMethod.DELETE, entity, responseType);
+            syncSearchIndex(domain, params, response);
+            return response;
+        } finally {
+            invalidateUserCache(domain, params);
+        }
+    }
+
+    // =========================
+    // COUNT (HEAD + Prefer: count=exact)
+    // =========================
+
+    /**
+     * Số dòng khớp filter, đọc từ phần sau dấu / của header Content-Range - không tải dòng nào về
+     */
+    public long count(String domain, Map<String, String> params) {
+        var d = config.getDomains().get(domain);
+        var headers = buildHeaders(d.getKey());
+        headers.set("Prefer", "count=exact");
+        Map<String, String> query = new HashMap<>(params);
+        query.put("limit", "0");
+        var url = buildUrl(d.getUrl(), d.getTable(), query);
+
+        ResponseEntity<Void> response = exchange(domain, url, HttpMethod.HEAD, new HttpEntity<>(headers), Void.class);
+        String range = response.getHeaders().getFirst("Content-Range");
+        int slash = range != null ? range.lastIndexOf('/') : -1;
+        if (slash < 0 || "*".equals(range.substring(slash + 1))) {
+            throw new IllegalStateException("Supabase " + domain + " không trả số dòng (Content-Range: " + range + ")");
+        }
+        return Long.parseLong(range.substring(slash + 1));
+    }
+
+    // =========================
+    // HELPER: Role (RoleCache thay cho embed Role(...))
+    // =========================
+
+    /**
+     * User đọc / ghi trên bảng user không còn embed Role → gán từ RoleCache theo role_id
+     */
+    private <R> ResponseEntity<R> resolveRoles(String domain, ResponseEntity<R> response) {
+        if (!"user".equals(domain) || response == null) {
+            return response;
+        }
+        Object body = response.getBody();
+        if (body instanceof User[] users) {
+            for (User user : users) {
+                withRole(user);
+            }
+        } else if (body instanceof User user) {
+            withRole(user);
+        }
+        return response;
+    }
+
+    private User withRole(User user) {
+        if (user != null && user.getRoleId() != null && user.getRole() == null) {
+            Role role = roleCache.byId(user.getRoleId());
+            if (role == null && roleCache.tryAcquireMissReload()) {
+                refreshRoles(); // role mới thêm sau lần load trước
+                role = roleCache.byId(user.getRoleId());
+            }
+            user.setRole(role);
+        }
+        return user;
+    }
+
+    /**
+     * Role active theo tên, từ RoleCache (miss thì load lại bảng, có giới hạn tần suất); null nếu không có
+     */
+    public Role findRole(String name) {
+        Role role = roleCache.byName(name);
+        if (role == null && (!roleCache.isLoaded() || roleCache.tryAcquireMissReload())) {
+            refreshRoles();
+            role = roleCache.byName(name);
+        }
+        return role;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRoles() {
+        refreshRoles();
+    }
+
+    /**
+     * Đọc lại toàn bộ bảng Role (vài dòng); lỗi thì giữ bảng cũ
+     */
+    @Scheduled(fixedDelayString = "${app.cache.role.refresh-interval-ms:300000}",
+               initialDelayString = "${app.cache.role.refresh-interval-ms:300000}")
+    public void refreshRoles() {
+        try {
+            Map<String, String> params = new HashMap<>();
+            params.put("select", "id,role,status");
+            roleCache.replace(get("role", params, Role[].class).getBody());
+            log.debug("Role table loaded: {}", roleCache.stats());
+        } catch (Exception e) {
+            log.warn("Cannot load Role table (might be RLS protected), keeping previous copy: {}", e.getMessage());
+        }
+    }
+
+    // =========================
+    // HELPER: User cache invalidation
+    // =========================
+
+    /**
+     * Ghi vào bảng user → xóa cache của user đó (filter id=eq.UUID), filter khác (email, ...) → xóa toàn bộ
+     */
+    private void invalidateUserCache(String domain, Map<String, String> params) {
+        if (!"user".equals(domain)) {
+            return;
+        }
+        String idFilter = params != null ? params.get("id") : null;
+        UUID id = idFilter != null && idFilter.startsWith("eq.") ? parseUuid(idFilter.substring(3)) : null;
+        if (id != null) {
+            userCache.invalidate(id);
+        } else {
+            userCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Ghi user có username_login / email → identifier đó không còn là "không tồn tại"
+     */
+    private void forgetUnknownLogins(String domain, Object body) {
+        if (!"user".equals(domain) || body == null) {
+            return;
+        }
+        if (body instanceof User u) {
+            unknownLogins.forget(u.getUsernameLogin());
+            unknownLogins.forget(u.getEmail());
+        } else if (body instanceof Map<?, ?> m) {
+            Object usernameLogin = m.get("username_login");
+            Object email = m.get("email");
+            if (usernameLogin != null) unknownLogins.forget(usernameLogin.toString());
+            if (email != null) unknownLogins.forget(email.toString());
+        }
+    }
+
+    /**
+     * Ghi thành công vào bảng user → đánh dấu các user trong response (return=representation) để search index đọc lại.
+     * Response không phải User → dựa vào filter id=eq.UUID, filter khác thì load lại toàn bộ index
+     */
+    private void syncSearchIndex(String domain, Map<String, String> params, ResponseEntity<?> response) {
+        if (!"user".equals(domain) || !searchIndex.isEnabled()) {
+            return;
+        }
+        Object body = response != null ? response.getBody() : null;
+        if (body instanceof User[] users) {
+            for (User user : users) {
+                searchIndex.markDirty(user.getId());
+            }
+            return;
+        }
+        if (body instanceof User user) {
+            searchIndex.markDirty(user.getId());
+            return;
+        }
+        String idFilter = params != null ? params.get("id") : null;
+        UUID id = idFilter != null && idFilter.startsWith("eq.") ? parseUuid(idFilter.substring(3)) : null;
+        if (id != null) {
+            searchIndex.markDirty(id);
+        } else {
+            searchIndex.requestRebuild();
+        }
+    }
+
+    private static UUID parseUuid(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     // =========================
@@ -184,38 +405,154 @@ public class SupabaseUserService {
 
     /**
      * Get all active users with pagination
+     * Phân trang keyset: order=id.desc, afterId != null → id < afterId
      */
-    public <T> ResponseEntity<T> getAllActiveUsers(Class<T> responseType) {
+    public <T> ResponseEntity<T> getActiveUsersPage(UUID afterId, int size, Class<T> responseType) {
         Map<String, String> params = new HashMap<>();
-        params.put("select", "*,Role(*)");
+        params.put("select", UserProjection.ADMIN.select());
         params.put("status", "eq.1");
-        params.put("order", "id.desc"); // Newest first
-        params.put("limit", "100"); // Limit to prevent timeout
+        params.put("order", "id.desc"); // Cột id là khóa keyset
+        params.put("limit", String.valueOf(size));
+        if (afterId != null) {
+            params.put("id", "lt." + afterId);
+        }
 
-        System.out.println("========== GET ALL ACTIVE USERS (OPTIMIZED) SUPPERUSERSVERICE ==========");
         ResponseEntity<T> response = get("user", params, responseType);
-        System.out.println("Response status: " + response.getStatusCode());
-        if (response.getBody() != null && response.getBody().getClass().isArray()) {
-            Object[] array = (Object[]) response.getBody();
-            System.out.println("Number of users: " + array.length);
-            for (Object obj : array) {
-                System.out.println("User: " + obj);
-            }
+        if (log.isDebugEnabled() && response.getBody() instanceof Object[] array) {
+            log.debug("Active users page after {}: {} rows", afterId, array.length);
         }
-        System.out.println("====================================================");
-
         return response;
     }
 
     /**
-     * Get user by ID with status = 1
+     * Get user by ID with status = 1 (read-through UserCache khi đọc User[]).
+     * Cache giữ dòng UserProjection.ADMIN; caller cần ít cột hơn tự map sang DTO (UserProfile, ...).
+     * Dữ liệu cũ hơn soft TTL (stale-while-revalidate / stale-if-error) có header STALE_HEADER + Age, xem staleHeaders
      */
     public <T> ResponseEntity<T> getUserById(String id, Class<T> responseType) {
+        UUID uuid = parseUuid(id);
+        if (uuid != null && responseType == User[].class) {
+            return cachedResponse(userCache.lookup(uuid, this::fetchActiveUserById), responseType);
+        }
+        return get("user", activeUserByIdParams(id), responseType);
+    }
+
+    /**
+     * User active theo username_login, cùng UserCache với getUserById (id của username được nhớ lại)
+     */
+    public ResponseEntity<User[]> getActiveUserByUsername(String usernameLogin) {
+        UUID id = userCache.idForLogin(usernameLogin);
+        if (id != null) {
+            UserCache.Lookup lookup = userCache.lookup(id, this::fetchActiveUserById);
+            // username_login đã đổi / user bị xóa thì tra lại theo username
+            if (lookup.user() != null && usernameLogin.equals(lookup.user().getUsernameLogin())) {
+                return cachedResponse(lookup, User[].class);
+            }
+        }
+
+        Map<String, String> params = new HashMap<>();
+        params.put("username_login", "eq." + usernameLogin);
+        params.put("status", "eq.1");
+        params.put("select", UserProjection.ADMIN.select());
+        params.put("limit", "1");
+        User[] users = get("user", params, User[].class).getBody();
+        if (users == null || users.length == 0) {
+            return ResponseEntity.ok(new User[0]);
+        }
+        userCache.put(users[0]);
+        userCache.rememberLogin(usernameLogin, users[0].getId());
+        // Body của get() dùng chung với các request được gộp: trả bản copy vì caller có thể sửa
+        return ResponseEntity.ok(new User[]{UserCache.copyOf(users[0])});
+    }
+
+    private static <T> ResponseEntity<T> cachedResponse(UserCache.Lookup lookup, Class<T> responseType) {
+        User[] body = lookup.user() != null ? new User[]{lookup.user()} : new User[0];
+        if (!lookup.stale()) {
+            return ResponseEntity.ok(responseType.cast(body));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(STALE_HEADER, "true");
+        headers.set(HttpHeaders.AGE, String.valueOf(lookup.ageMs() / 1000));
+        return ResponseEntity.ok().headers(headers).body(responseType.cast(body));
+    }
+
+    /**
+     * Header đánh dấu câu trả lời lấy từ cache cũ (để controller chuyển tiếp cho client), rỗng nếu dữ liệu mới
+     */
+    public static HttpHeaders staleHeaders(ResponseEntity<?> response) {
+        HttpHeaders headers = new HttpHeaders();
+        String stale = response.getHeaders().getFirst(STALE_HEADER);
+        if (stale != null) {
+            headers.set(STALE_HEADER, stale);
+            headers.set(HttpHeaders.AGE, response.getHeaders().getFirst(HttpHeaders.AGE));
+        }
+        return headers;
+    }
+
+    /**
+     * Lấy card của nhiều user active cùng lúc: dùng cache trước, phần còn thiếu gom vào 1 query id=in.(...)
+     * chỉ đọc cột UserProjection.CARD.
+     * Trả về map UUID → UserCard (user không tồn tại / inactive sẽ không có trong map)
+     */
+    public Map<UUID, UserCard> getUserCardsByIds(Collection<UUID> ids) {
+        Map<UUID, UserCard> result = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID id : new LinkedHashSet<>(ids)) {
+            UserCard cached = userCache.getCardIfPresent(id);
+            if (cached != null) {
+                result.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        // Chia batch để URL không quá dài
+        for (int from = 0; from < missing.size(); from += BATCH_LOOKUP_SIZE) {
+            List<UUID> chunk = missing.subList(from, Math.min(from + BATCH_LOOKUP_SIZE, missing.size()));
+            Map<String, String> params = new HashMap<>();
+            params.put("id", "in.(" + chunk.stream().map(UUID::toString).collect(Collectors.joining(",")) + ")");
+            params.put("status", "eq.1");
+            params.put("select", UserProjection.CARD.select());
+
+            UserCard[] cards = get("user", params, UserCard[].class).getBody();
+            if (cards != null) {
+                for (UserCard card : cards) {
+                    userCache.putCard(card);
+                    result.put(card.getId(), card);
+                }
+            }
+        }
+        return result;
+    }
+
+    private User fetchActiveUserById(UUID id) {
+        User[] users = get("user", activeUserByIdParams(id.toString()), User[].class).getBody();
+        return users != null && users.length > 0 ? users[0] : null;
+    }
+
+    private Map<String, String> activeUserByIdParams(String id) {
         Map<String, String> params = new HashMap<>();
         params.put("id", "eq." + id);
         params.put("status", "eq.1");
-        params.put("select", "*,Role(*)");
-        return get("user", params, responseType);
+        params.put("select", UserProjection.ADMIN.select());
+        return params;
+    }
+
+    /**
+     * Tìm user active theo username / username_login / email: dùng UserSearchIndex khi đã load,
+     * chưa bật / chưa load xong thì fallback ilike theo username trên Supabase
+     */
+    public UserCard[] searchUsers(String query) {
+        if (searchIndex.isReady()) {
+            User[] users = searchIndex.search(query, SEARCH_LIMIT);
+            UserCard[] cards = new UserCard[users.length];
+            for (int i = 0; i < users.length; i++) {
+                cards[i] = UserCard.of(users[i]);
+            }
+            return cards;
+        }
+        UserCard[] cards = searchUserByUsername(query, UserCard[].class).getBody();
+        return cards != null ? cards : new UserCard[0];
     }
 
     /**
@@ -225,11 +562,91 @@ public class SupabaseUserService {
         Map<String, String> params = new HashMap<>();
         params.put("username", "ilike.*" + username + "*");
         params.put("status", "eq.1");
-        params.put("select", "*,Role(*)");
-        params.put("limit", "50"); // Limit search results
+        params.put("select", UserProjection.CARD.select());
+        params.put("limit", String.valueOf(SEARCH_LIMIT)); // Limit search results
         return get("user", params, responseType);
     }
 
+    // =========================
+    // USER SEARCH INDEX
+    // =========================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSearchIndex() {
+        reconcileSearchIndex();
+    }
+
+    /**
+     * Load lại toàn bộ index từ Supabase để sửa sai lệch (ghi từ instance khác, ghi trực tiếp DB, ...)
+     */
+    @Scheduled(fixedDelayString = "${app.search.reconcile-interval-ms:300000}",
+               initialDelayString = "${app.search.reconcile-interval-ms:300000}")
+    public void reconcileSearchIndex() {
+        if (!searchIndex.isEnabled()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            searchIndex.rebuild(this::loadActiveUsersAfter);
+            log.info("User search index loaded in {}ms: {}", System.currentTimeMillis() - start, searchIndex.footprint());
+        } catch (Exception e) {
+            log.warn("User search index reconcile failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Đọc lại (1 query id=in.(...) mỗi batch) các user vừa được ghi và cập nhật index
+     */
+    @Scheduled(fixedDelayString = "${app.search.flush-interval-ms:1000}")
+    public void flushSearchIndexUpdates() {
+        if (!searchIndex.isEnabled()) {
+            return;
+        }
+        if (searchIndex.isRebuildRequested()) {
+            reconcileSearchIndex();
+            return;
+        }
+        List<UUID> ids = searchIndex.drainPending();
+        for (int from = 0; from < ids.size(); from += BATCH_LOOKUP_SIZE) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + BATCH_LOOKUP_SIZE, ids.size()));
+            try {
+                // Không lọc status: user bị soft delete cũng phải được bỏ khỏi index
+                Map<String, String> params = new HashMap<>();
+                params.put("id", "in.(" + chunk.stream().map(UUID::toString).collect(Collectors.joining(",")) + ")");
+                params.put("select", SEARCH_INDEX_SELECT);
+                User[] users = get("user", params, User[].class).getBody();
+
+                Set<UUID> found = new HashSet<>();
+                if (users != null) {
+                    for (User user : users) {
+                        searchIndex.upsert(user);
+                        found.add(user.getId());
+                    }
+                }
+                for (UUID id : chunk) {
+                    if (!found.contains(id)) {
+                        searchIndex.remove(id);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("User search index update failed, retrying next flush: {}", e.getMessage());
+                chunk.forEach(searchIndex::markDirty); // thử lại ở lần flush sau
+            }
+        }
+    }
+
+    private User[] loadActiveUsersAfter(UUID lastId) {
+        Map<String, String> params = new HashMap<>();
+        params.put("select", SEARCH_INDEX_SELECT);
+        params.put("status", "eq.1");
+        params.put("order", "id.asc");
+        params.put("limit", String.valueOf(SEARCH_LOAD_PAGE_SIZE));
+        if (lastId != null) {
+            params.put("id", "gt." + lastId);
+        }
+        return get("user", params, User[].class).getBody();
+    }
+
     /**
      * Create new user
      */
@@ -335,36 +752,137 @@ public class SupabaseUserService {
     public <T> ResponseEntity<T> getDeletedUsers(Class<T> responseType) {
         Map<String, String> params = new HashMap<>();
         params.put("status", "eq.0");
-        params.put("select", "*,Role(*)");
+        params.put("select", UserProjection.ADMIN.select());
         params.put("order", "updateDate.desc");
         params.put("limit", "50");
         return get("user", params, responseType);
     }
 
     /**
-     * Login check by username
+     * Login bằng username_login hoặc email trong 1 query or=(...), chỉ lấy cột cần để phát token.
+     * Mật khẩu verify ở app (BCrypt trên PasswordHashingService, không đưa lên URL).
+     * Ưu tiên khớp username_login rồi mới tới email như trước.
+     * Mật khẩu còn plain text / cost cũ → rehash nền sau khi login thành công.
+     * Trả null nếu sai thông tin; identifier không tồn tại được nhớ trong LoginNegativeCache.
      */
-    public <T> ResponseEntity<T> loginUser(String username, String password, Class<T> responseType) {
+    public User findLoginUser(String identifier, String password) {
+        return findByCredentials(identifier, password, true);
+    }
+
+    /**
+     * Giống findLoginUser nhưng không rehash (dùng khi sắp ghi mật khẩu mới ngay sau đó)
+     */
+    public User checkCredentials(String identifier, String password) {
+        return findByCredentials(identifier, password, false);
+    }
+
+    private User findByCredentials(String identifier, String password, boolean migrate) {
+        if (identifier == null || identifier.isBlank() || password == null) {
+            return null;
+        }
+        if (unknownLogins.isUnknown(identifier)) {
+            return null;
+        }
+
+        String value = quoteFilterValue(identifier);
         Map<String, String> params = new HashMap<>();
-        params.put("username_login", "eq." + username);
-        params.put("password_login", "eq." + password);
+        params.put("or", "(username_login.eq." + value + ",email.eq." + value + ")");
         // Không filter status ở đây - để controller check và trả message phù hợp
-        params.put("select", "*,Role(*)");
-        params.put("limit", "1"); // Only need 1 user
-        return get("user", params, responseType);
+        params.put("select", UserProjection.AUTH.select());
+        params.put("limit", "2"); // Tối đa 1 dòng khớp username + 1 dòng khớp email
+        LoginRow[] rows = get("user", params, LoginRow[].class).getBody();
+
+        if (rows == null || rows.length == 0) {
+            unknownLogins.markUnknown(identifier);
+            return null;
+        }
+        LoginRow match = matchLogin(rows, identifier, password, true);
+        if (match == null) {
+            match = matchLogin(rows, identifier, password, false);
+        }
+        if (match == null) {
+            return null;
+        }
+        if (migrate && passwordHashing.needsRehash(match.getPasswordLogin())) {
+            UUID id = match.getId();
+            passwordHashing.rehashInBackground(password, hash -> storePasswordHash(id, hash));
+        }
+        return withRole(match.toUser());
+    }
+
+    private LoginRow matchLogin(LoginRow[] rows, String identifier, String password, boolean byUsername) {
+        for (LoginRow row : rows) {
+            String key = byUsername ? row.getUsernameLogin() : row.getEmail();
+            if (identifier.equals(key) && passwordHashing.matches(password, row.getPasswordLogin())) {
+                return row;
+            }
+        }
+        return null;
     }
 
     /**
-     * Login check by email
+     * Kiểm tra mật khẩu hiện tại của user theo id (đổi mật khẩu khi đã đăng nhập)
      */
-    public <T> ResponseEntity<T> loginByEmail(String email, String password, Class<T> responseType) {
+    public boolean passwordMatches(UUID id, String raw) {
         Map<String, String> params = new HashMap<>();
-        params.put("email", "eq." + email);
-        params.put("password_login", "eq." + password);
-        // Không filter status ở đây - để controller check và trả message phù hợp
-        params.put("select", "*,Role(*)");
+        params.put("id", "eq." + id);
+        params.put("select", "id,password_login");
         params.put("limit", "1");
-        return get("user", params, responseType);
+        LoginRow[] rows = get("user", params, LoginRow[].class).getBody();
+        return rows != null && rows.length > 0 && passwordHashing.matches(raw, rows[0].getPasswordLogin());
+    }
+
+    /**
+     * Tạo mật khẩu tạm mới cho user (lưu hash), trả bản plain text để gửi email
+     */
+    public String issueTempPassword(UUID id) {
+        String tempPassword = generateRandomPassword();
+        storePasswordHash(id, passwordHashing.hash(tempPassword));
+        return tempPassword;
+    }
+
+    private void storePasswordHash(UUID id, String hash) {
+        Map<String, String> params = new HashMap<>();
+        params.put("id", "eq." + id);
+        Map<String, Object> body = new HashMap<>();
+        body.put("password_login", hash);
+        patch("user", params, body, User[].class);
+    }
+
+    /**
+     * Giá trị trong or=(...) phải đặt trong "..." để dấu phẩy / ngoặc của user không phá cú pháp PostgREST
+     */
+    static String quoteFilterValue(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * Dòng user tối thiểu cho login (User.passwordLogin bị @JsonIgnore nên không đọc được qua User)
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class LoginRow {
+        private UUID id;
+        @JsonProperty("username_login")
+        private String usernameLogin;
+        private String email;
+        private String username;
+        @JsonProperty("password_login")
+        private String passwordLogin;
+        private Integer status;
+        @JsonProperty("role_id")
+        private UUID roleId;
+
+        User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setUsernameLogin(usernameLogin);
+            user.setEmail(email);
+            user.setUsername(username);
+            user.setStatus(status);
+            user.setRoleId(roleId);
+            return user;
+        }
     }
 
     /**
@@ -374,35 +892,24 @@ public class SupabaseUserService {
      */
     public UserCreationResult findOrCreateUser(String email) {
         try {
-            System.out.println("========== FIND OR CREATE USER DEBUG ==========");
-            System.out.println("Searching for email: " + email);
-            
             // 1. Tìm user theo email
             Map<String, String> params = new HashMap<>();
             params.put("email", "eq." + email);
             params.put("limit", "1");
-            params.put("select", "*,Role(*)");
+            // Đủ cột: OAuth2SuccessHandler ghi lại toàn bộ user sau khi cập nhật thông tin Google
+            params.put("select", UserProjection.ADMIN.select());
 
-            System.out.println("Query params: " + params);
             ResponseEntity<User[]> response = get("user", params, User[].class);
-            
-            System.out.println("Response status: " + response.getStatusCode());
-            System.out.println("Response body is null: " + (response.getBody() == null));
-            if (response.getBody() != null) {
-                System.out.println("Response body length: " + response.getBody().length);
-            }
 
             if (response.getBody() != null && response.getBody().length > 0) {
-                User existingUser = response.getBody()[0];
-                System.out.println("✅ User đã tồn tại: " + email);
-                System.out.println("User ID: " + existingUser.getId());
-                System.out.println("User Status: " + existingUser.getStatus());
-                System.out.println("User Provider: " + existingUser.getProvider());
-                System.out.println("===============================================");
+                // Bản copy: OAuth2SuccessHandler sửa status / openidSub / emailVerified, body gốc dùng chung qua coalescer
+                User existingUser = UserCache.copyOf(response.getBody()[0]);
+                log.debug("Google login for existing user {} (status {}, provider {})",
+                        existingUser.getId(), existingUser.getStatus(), existingUser.getProvider());
                 return new UserCreationResult(existingUser, false, null);
             }
             
-            System.out.println("❌ User không tồn tại, sẽ tạo mới: " + email);
+            log.info("No user for Google email, creating one");
 
             // 2. Tìm role "User" để lấy UUID
             UUID defaultRoleId = getDefaultRoleId();
@@ -417,7 +924,7 @@ public class SupabaseUserService {
             newUser.put("gmail", email);
             newUser.put("username", username);
             newUser.put("username_login", username);
-            newUser.put("password_login", tempPassword);
+            newUser.put("password_login", passwordHashing.hash(tempPassword));
             newUser.put("status", 2);  // ✅ Status = 2 (pending) - cần đổi mật khẩu trước khi sử dụng
             newUser.put("provider", "google");
             newUser.put("email_verified", true);
@@ -425,24 +932,19 @@ public class SupabaseUserService {
             newUser.put("updateDate", LocalDate.now().toString());
             newUser.put("role_id", defaultRoleId.toString());
 
-            System.out.println("Creating new user with data: " + newUser);
             ResponseEntity<User[]> created = post("user", newUser, User[].class);
-            
-            System.out.println("Create response status: " + created.getStatusCode());
             if (created.getBody() != null && created.getBody().length > 0) {
                 User newUserObj = created.getBody()[0];
-                System.out.println("✅ Tạo user mới thành công: " + email);
-                System.out.println("New User ID: " + newUserObj.getId());
-                System.out.println("New User Status: " + newUserObj.getStatus());
-                System.out.println("===============================================");
+                log.info("Created user {} from Google login (status {})", newUserObj.getId(), newUserObj.getStatus());
                 return new UserCreationResult(newUserObj, true, tempPassword);
             }
 
-            throw new RuntimeException("Không thể tạo user");
+            throw new BusinessException("Không thể tạo user");
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Lỗi xử lý findOrCreateUser: " + e.getMessage());
+        } catch (RestClientException e) {
+            // Chỉ bọc lỗi Supabase; BusinessException / UpstreamUnavailableException / quá tải hash đi thẳng lên caller
+            log.error("findOrCreateUser failed", e);
+            throw new BusinessException("Lỗi xử lý findOrCreateUser: " + e.getMessage());
         }
     }
 
@@ -477,42 +979,15 @@ public class SupabaseUserService {
         public String getTempPassword() { return tempPassword; }
     }
 
-    // ✅ Hàm tìm role "User"
+    // ✅ Hàm tìm role "User" (RoleCache, không query mỗi lần tạo user)
     private UUID getDefaultRoleId() {
-        try {
-            System.out.println("Querying for default 'User' role from database...");
-            
-            // Thử query role từ database
-            Map<String, String> params = new HashMap<>();
-            params.put("role", "eq.User");  // Tìm role có tên là "User"
-            params.put("status", "eq.1");
-            params.put("limit", "1");
-
-            try {
-                ResponseEntity<Role[]> response = get("role", params, Role[].class);
-
-                if (response.getBody() != null && response.getBody().length > 0) {
-                    UUID roleId = response.getBody()[0].getId();
-                    System.out.println("Found default role 'User' with ID: " + roleId);
-                    return roleId;
-                }
-            } catch (Exception queryEx) {
-                System.err.println("WARNING: Cannot query Role table (might be RLS protected): " + queryEx.getMessage());
-                // Fallback to null - let user creation fail with clear error
-            }
-
-            System.err.println("ERROR: Role 'User' not found in database!");
-            System.err.println("SOLUTION: Please ensure Role table has a record with role='User' and status=1");
-            System.err.println("ALTERNATIVE: Set role_id to NULL in User table and remove foreign key constraint");
-            throw new RuntimeException("Không tìm thấy role 'User' trong hệ thống. Vui lòng kiểm tra bảng Role hoặc tắt RLS cho bảng Role.");
-
-        } catch (RuntimeException e) {
-            throw e;
-        } catch (Exception e) {
-            System.err.println("ERROR querying default role: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Lỗi khi tìm role mặc định: " + e.getMessage());
+        Role role = findRole(DEFAULT_ROLE);
+        if (role != null) {
+            return role.getId();
         }
+        log.error("Role 'User' not found: the Role table needs a row with role='User' and status=1 "
+                + "(or drop the role_id foreign key and allow NULL)");
+        throw new BusinessException("Không tìm thấy role 'User' trong hệ thống. Vui lòng kiểm tra bảng Role hoặc tắt RLS cho bảng Role.");
     }
 
 }
\ No newline at end of file
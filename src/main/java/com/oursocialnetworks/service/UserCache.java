@@ -0,0 +1,325 @@
+package com.oursocialnetworks.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import com.oursocialnetworks.dto.UserCard;
+import com.oursocialnetworks.entity.User;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache in-process cho user active (status = 1), key = UUID của user.
+ * Giới hạn theo số lượng; nhiều request miss cùng lúc cho 1 user chỉ gọi Supabase 1 lần (single-flight qua
+ * CompletableFuture, load chạy ngoài lock của cache rồi mới put).
+ * Luôn trả bản copy để caller sửa object không làm bẩn cache.
+ * Cache phụ cho UserCard (danh sách bạn bè) vì các dòng đó chỉ đọc 4 cột, không đủ để đưa vào cache chính.
+ *
+ * Tuổi của 1 entry quyết định cách trả:
+ * - dưới ttl-seconds (soft TTL): trả luôn
+ * - dưới hard-ttl-seconds: trả bản cũ ngay (stale) và load lại nền trên executor có giới hạn (stale-while-revalidate)
+ * - quá hard TTL: load đồng bộ, Supabase lỗi / circuit mở thì vẫn trả bản cũ nếu chưa quá
+ *   stale-if-error-seconds (stale-if-error)
+ */
+@Slf4j
+@Component
+public class UserCache implements MeterBinder {
+
+    /**
+     * Kết quả đọc cache: stale = bản cũ hơn soft TTL, ageMs = tuổi của dữ liệu
+     */
+    public record Lookup(User user, boolean stale, long ageMs) {}
+
+    private record Entry(User user, long loadedAt) {}
+
+    private final Cache<UUID, Entry> cache;
+    private final Cache<UUID, UserCard> cards;
+    private final Cache<String, UUID> logins; // username_login → id, cho /users/by-username
+    private final long softTtlMs;
+    private final long hardTtlMs;
+    private final long staleIfErrorMs;
+
+    private final ThreadPoolExecutor refresher;
+    private final Set<UUID> refreshing = ConcurrentHashMap.newKeySet();
+    // Load đang chạy khi miss; invalidate xóa entry ở đây để load cũ không put đè dữ liệu vừa ghi
+    private final Map<UUID, CompletableFuture<User>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong staleRevalidate = new AtomicLong();
+    private final AtomicLong staleOnError = new AtomicLong();
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong refreshFailed = new AtomicLong();
+    private final AtomicLong refreshRejected = new AtomicLong();
+
+    public UserCache(@Value("${app.cache.user.max-size:10000}") long maxSize,
+                     @Value("${app.cache.user.ttl-seconds:60}") long ttlSeconds,
+                     @Value("${app.cache.user.hard-ttl-seconds:300}") long hardTtlSeconds,
+                     @Value("${app.cache.user.stale-if-error-seconds:1800}") long staleIfErrorSeconds,
+                     @Value("${app.cache.user.refresh-threads:2}") int refreshThreads,
+                     @Value("${app.cache.user.refresh-queue:256}") int refreshQueue) {
+        this.softTtlMs = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.hardTtlMs = Math.max(softTtlMs, TimeUnit.SECONDS.toMillis(hardTtlSeconds));
+        this.staleIfErrorMs = Math.max(hardTtlMs, TimeUnit.SECONDS.toMillis(staleIfErrorSeconds));
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(staleIfErrorMs))
+                .recordStats()
+                .build();
+        this.cards = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.logins = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(hardTtlMs))
+                .build();
+        this.refresher = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(refreshQueue), r -> {
+                    Thread t = new Thread(r, "user-cache-refresh");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Lấy user từ cache, nếu miss thì gọi loader (loader trả null = không tìm thấy, không cache)
+     */
+    public Lookup lookup(UUID id, Function<UUID, User> loader) {
+        Entry entry = cache.getIfPresent(id);
+        if (entry == null) {
+            User user = loadOnce(id, loader);
+            return new Lookup(user != null ? copyOf(user) : null, false, 0);
+        }
+
+        long age = System.currentTimeMillis() - entry.loadedAt();
+        if (age < softTtlMs) {
+            return new Lookup(copyOf(entry.user()), false, age);
+        }
+        if (age < hardTtlMs) {
+            staleRevalidate.incrementAndGet();
+            refreshInBackground(id, entry, loader);
+            return new Lookup(copyOf(entry.user()), true, age);
+        }
+
+        User user;
+        try {
+            user = loader.apply(id);
+        } catch (RuntimeException e) {
+            staleOnError.incrementAndGet();
+            log.debug("Serving stale user {} ({}ms old): {}", id, age, e.getMessage());
+            return new Lookup(copyOf(entry.user()), true, age);
+        }
+        replace(id, entry, user);
+        return new Lookup(user != null ? copyOf(user) : null, false, 0);
+    }
+
+    /**
+     * Miss: 1 caller gọi loader, các caller khác cùng id chờ kết quả. Không gọi loader trong cache.get(id, ...) vì
+     * HTTP call khi đó giữ lock bin của ConcurrentHashMap, chặn cả các key khác cùng bin.
+     * Trả bản đã cache (chỉ đọc), caller tự copy.
+     */
+    private User loadOnce(UUID id, Function<UUID, User> loader) {
+        CompletableFuture<User> mine = new CompletableFuture<>();
+        CompletableFuture<User> running = loading.putIfAbsent(id, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            loads.incrementAndGet();
+            // Body từ loader có thể là response GET dùng chung (RequestCoalescer) mà caller khác còn sửa → cache bản copy
+            User loaded = loader.apply(id);
+            User user = loaded != null ? copyOf(loaded) : null;
+            loading.computeIfPresent(id, (key, current) -> {
+                if (current == mine && user != null) {
+                    cache.put(id, new Entry(user, System.currentTimeMillis()));
+                }
+                return current == mine ? null : current;
+            });
+            mine.complete(user);
+            return user;
+        } catch (RuntimeException | Error e) {
+            loading.remove(id, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void refreshInBackground(UUID id, Entry stale, Function<UUID, User> loader) {
+        if (!refreshing.add(id)) {
+            return; // Đang có 1 lần load lại cho user này
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    replace(id, stale, loader.apply(id));
+                    refreshed.incrementAndGet();
+                } catch (RuntimeException e) {
+                    refreshFailed.incrementAndGet();
+                    log.debug("Background refresh of user {} failed: {}", id, e.getMessage());
+                } finally {
+                    refreshing.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(id);
+            refreshRejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * Thay entry cũ bằng dữ liệu vừa load; entry đã bị invalidate (có ghi) hoặc đã được thay thì bỏ qua
+     */
+    private void replace(UUID id, Entry expected, User loaded) {
+        if (loaded != null) {
+            cache.asMap().replace(id, expected, new Entry(copyOf(loaded), System.currentTimeMillis()));
+        } else {
+            cache.asMap().remove(id, expected);
+        }
+    }
+
+    /**
+     * Chỉ đọc cache, không gọi Supabase (bản quá hard TTL coi như không có)
+     */
+    public User getIfPresent(UUID id) {
+        Entry entry = cache.getIfPresent(id);
+        return entry != null && System.currentTimeMillis() - entry.loadedAt() < hardTtlMs ? copyOf(entry.user()) : null;
+    }
+
+    public void put(User user) {
+        if (user != null && user.getId() != null) {
+            cache.put(user.getId(), new Entry(copyOf(user), System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Card của user: lấy từ cache phụ, không có thì dựng từ bản đầy đủ nếu đang cache
+     */
+    public UserCard getCardIfPresent(UUID id) {
+        UserCard card = cards.getIfPresent(id);
+        if (card != null) {
+            return copyOf(card);
+        }
+        User user = getIfPresent(id);
+        return user != null ? UserCard.of(user) : null;
+    }
+
+    public void putCard(UserCard card) {
+        if (card != null && card.getId() != null) {
+            cards.put(card.getId(), copyOf(card));
+        }
+    }
+
+    /**
+     * Id của user theo username_login đã từng đọc (caller tự kiểm tra lại username_login của user lấy ra)
+     */
+    public UUID idForLogin(String usernameLogin) {
+        return logins.getIfPresent(usernameLogin);
+    }
+
+    public void rememberLogin(String usernameLogin, UUID id) {
+        if (usernameLogin != null && id != null) {
+            logins.put(usernameLogin, id);
+        }
+    }
+
+    public void invalidate(UUID id) {
+        if (id != null) {
+            loading.remove(id);
+            cache.invalidate(id);
+            cards.invalidate(id);
+        }
+    }
+
+    public void invalidateAll() {
+        loading.clear();
+        cache.invalidateAll();
+        cards.invalidateAll();
+        logins.invalidateAll();
+    }
+
+    /**
+     * Hit / miss / eviction của cache + số lần trả bản cũ / load lại nền
+     */
+    public Map<String, Object> stats() {
+        CacheStats s = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", s.hitCount());
+        result.put("misses", s.missCount());
+        result.put("hitRate", s.hitRate());
+        result.put("loads", loads.get());
+        result.put("evictions", s.evictionCount());
+        result.put("staleWhileRevalidate", staleRevalidate.get());
+        result.put("staleIfError", staleOnError.get());
+        result.put("refreshed", refreshed.get());
+        result.put("refreshFailed", refreshFailed.get());
+        result.put("refreshRejected", refreshRejected.get());
+        return result;
+    }
+
+    static User copyOf(User u) {
+        return new User(u.getId(), u.getCreateDate(), u.getUsernameLogin(), u.getPasswordLogin(), u.getImage(),
+                u.getUsername(), u.getDescription(), u.getPlaceOfResidence(), u.getIdFriends(), u.getDateOfBirth(),
+                u.getIdRelationship(), u.getUpdateDate(), u.getEmail(), u.getGmail(), u.getProvider(),
+                u.getOpenidSub(), u.getEmailVerified(), u.getStatus(), u.getRoleId(), u.getRole());
+    }
+
+    static UserCard copyOf(UserCard c) {
+        return new UserCard(c.getId(), c.getUsername(), c.getUsernameLogin(), c.getImage());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "user");
+        CaffeineCacheMetrics.monitor(registry, cards, "user.card");
+        FunctionCounter.builder("cache.user.stale", staleRevalidate, AtomicLong::get)
+                .description("User reads answered with data older than the soft TTL")
+                .tag("reason", "revalidate")
+                .register(registry);
+        FunctionCounter.builder("cache.user.stale", staleOnError, AtomicLong::get)
+                .tag("reason", "error")
+                .register(registry);
+        FunctionCounter.builder("cache.user.refresh", refreshed, AtomicLong::get)
+                .description("Background revalidations of stale user entries")
+                .tag("result", "success")
+                .register(registry);
+        FunctionCounter.builder("cache.user.refresh", refreshFailed, AtomicLong::get)
+                .tag("result", "failure")
+                .register(registry);
+        FunctionCounter.builder("cache.user.refresh", refreshRejected, AtomicLong::get)
+                .tag("result", "rejected")
+                .register(registry);
+    }
+}
@@ -0,0 +1,31 @@
+package com.oursocialnetworks.service;
+
+/**
+ * Các bộ cột (select=) khi đọc bảng user, thay cho *,Role(*).
+ * Caller chọn bộ nhỏ nhất đủ dùng. Không embed Role: SupabaseUserService gán role từ RoleCache theo role_id.
+ */
+public enum UserProjection {
+
+    /** Avatar + tên: danh sách bạn bè, kết quả tìm kiếm */
+    CARD("id,username,username_login,image"),
+
+    /** Login: kiểm tra mật khẩu + phát JWT */
+    AUTH("id,username_login,email,username,password_login,status,role_id"),
+
+    /**
+     * Đủ cột trừ mật khẩu: profile của chính mình, màn admin, UserCache, ghi lại toàn bộ user.
+     * Trang cá nhân người khác (UserProfile) cũng đọc dòng này từ UserCache rồi cắt bớt cột, không query riêng
+     */
+    ADMIN("id,createDate,updateDate,username_login,image,username,description,place_of_residence,id_friends,"
+            + "\"date-of-birth\",id_relationship,email,gmail,provider,openid_sub,email_verified,status,role_id");
+
+    private final String select;
+
+    UserProjection(String select) {
+        this.select = select;
+    }
+
+    public String select() {
+        return select;
+    }
+}
@@ -0,0 +1,484 @@
+package com.oursocialnetworks.service;
+
+import com.oursocialnetworks.entity.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Index tìm kiếm in-memory cho user active (status = 1) theo username, username_login và phần trước @ của email.
+ * Mỗi user là 1 doc id (int). Prefix của field và của từng từ trong field tra bằng TreeMap,
+ * chứa ở giữa từ tra bằng posting list bigram / trigram (mảng int tăng dần).
+ * Kết quả xếp hạng: trùng hẳn → prefix → đầu từ → chứa, trong cùng hạng theo thứ tự từ điển.
+ *
+ * Bật bằng app.search.enabled=true. SupabaseUserService chịu trách nhiệm load, đánh dấu user thay đổi khi ghi và reconcile định kỳ.
+ */
+@Component
+public class UserSearchIndex implements MeterBinder {
+
+    private static final int MAX_PENDING_IDS = 10_000;
+
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Index index;                     // null = chưa load xong
+    private List<Consumer<Index>> replayLog;           // thay đổi trong lúc rebuild (guarded by write lock)
+
+    // User vừa ghi, chờ đọc lại để cập nhật index
+    private final Set<UUID> pendingIds = ConcurrentHashMap.newKeySet();
+    private volatile boolean rebuildRequested;
+
+    public UserSearchIndex(@Value("${app.search.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return enabled && index != null;
+    }
+
+    /**
+     * Load lại toàn bộ user active. pageLoader nhận id cuối của trang trước (null = trang đầu), trả mảng rỗng khi hết.
+     * Các thay đổi upsert() / remove() trong lúc load được replay vào index mới trước khi swap.
+     */
+    public void rebuild(Function<UUID, User[]> pageLoader) {
+        rebuildRequested = false;
+        write(() -> replayLog = new ArrayList<>());
+        try {
+            Index fresh = new Index();
+            UUID lastId = null;
+            while (true) {
+                User[] page = pageLoader.apply(lastId);
+                if (page == null || page.length == 0) {
+                    break;
+                }
+                for (User user : page) {
+                    fresh.upsert(user);
+                }
+                lastId = page[page.length - 1].getId();
+            }
+            write(() -> {
+                for (Consumer<Index> change : replayLog) {
+                    change.accept(fresh);
+                }
+                index = fresh;
+            });
+        } finally {
+            write(() -> replayLog = null);
+        }
+    }
+
+    /**
+     * Cập nhật 1 user vừa đọc lại từ Supabase (status != 1 → bỏ khỏi index)
+     */
+    public void upsert(User user) {
+        if (!enabled || user == null || user.getId() == null) {
+            return;
+        }
+        change(idx -> idx.upsert(user));
+    }
+
+    public void remove(UUID id) {
+        if (!enabled || id == null) {
+            return;
+        }
+        change(idx -> idx.remove(id));
+    }
+
+    private void change(Consumer<Index> action) {
+        write(() -> {
+            if (replayLog != null) {
+                replayLog.add(action);
+            }
+            if (index != null) {
+                action.accept(index);
+                index.compactIfNeeded();
+            }
+        });
+    }
+
+    // ========== PENDING CHANGES ==========
+
+    /**
+     * Đánh dấu user vừa được ghi, lần flush tiếp theo sẽ đọc lại
+     */
+    public void markDirty(UUID id) {
+        if (!enabled || id == null) {
+            return;
+        }
+        if (pendingIds.size() >= MAX_PENDING_IDS) {
+            rebuildRequested = true;
+            return;
+        }
+        pendingIds.add(id);
+    }
+
+    /**
+     * Ghi không xác định được user nào (filter khác id) → load lại toàn bộ ở lần flush tiếp theo
+     */
+    public void requestRebuild() {
+        if (enabled) {
+            rebuildRequested = true;
+        }
+    }
+
+    public boolean isRebuildRequested() {
+        return rebuildRequested;
+    }
+
+    /**
+     * Lấy và xóa danh sách user chờ đọc lại
+     */
+    public List<UUID> drainPending() {
+        List<UUID> ids = new ArrayList<>(pendingIds);
+        pendingIds.removeAll(ids);
+        return ids;
+    }
+
+    // ========== QUERY ==========
+
+    /**
+     * Tìm user có username / username_login / email (phần trước @) chứa query, không phân biệt hoa thường.
+     * Query 1 ký tự chỉ khớp prefix / đầu từ, query có @ khớp prefix email đầy đủ.
+     */
+    public User[] search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return new User[0];
+        }
+        return read(() -> index != null ? index.search(q, limit) : new User[0]);
+    }
+
+    /**
+     * Số user / gram và ước lượng bộ nhớ đang dùng
+     */
+    public Map<String, Object> footprint() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("ready", isReady());
+        result.put("pending", pendingIds.size());
+        result.put("rebuildRequested", rebuildRequested);
+        if (index != null) {
+            read(() -> {
+                result.put("users", index.live);
+                result.put("deadSlots", index.size - index.live);
+                result.put("prefixKeys", index.prefixes.size());
+                result.put("wordStartKeys", index.wordStarts.size());
+                result.put("grams", index.grams.size());
+                result.put("estimatedBytes", index.estimateBytes());
+                return null;
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("user.search.index.users", this, s -> s.index != null ? s.index.live : 0).register(registry);
+        Gauge.builder("user.search.index.pending", pendingIds, Set::size).register(registry);
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Chỉ index phần trước @, tránh "gmail" khớp gần như mọi user
+     */
+    static String emailLocalPart(String email) {
+        String e = normalize(email);
+        int at = e.indexOf('@');
+        return at >= 0 ? e.substring(0, at) : e;
+    }
+
+    // ========== DATA STRUCTURE ==========
+
+    /**
+     * Danh sách doc id tăng dần (doc mới luôn có id lớn nhất)
+     */
+    private static final class IntList {
+        int[] items = new int[2];
+        int size;
+
+        void add(int value) {
+            if (size > 0 && items[size - 1] == value) {
+                return; // cùng key / gram xuất hiện nhiều lần trong 1 doc
+            }
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        boolean contains(int value) {
+            return Arrays.binarySearch(items, 0, size, value) >= 0;
+        }
+
+        long bytes() {
+            return 32L + items.length * 4L;
+        }
+    }
+
+    private static final class Index {
+        // Doc đã xóa để null, dọn khi số slot chết vượt số doc sống
+        User[] users = new User[1024];
+        String[][] fields = new String[1024][];   // {username, username_login, email trước @}
+        int size;
+        int live;
+
+        final Map<UUID, Integer> docs = new HashMap<>();
+        final TreeMap<String, IntList> prefixes = new TreeMap<>();     // giá trị đầy đủ của field + email đầy đủ
+        final TreeMap<String, IntList> wordStarts = new TreeMap<>();   // phần còn lại tính từ đầu mỗi từ thứ 2 trở đi
+        final Map<Long, IntList> grams = new HashMap<>();              // bigram + trigram
+
+        void upsert(User user) {
+            remove(user.getId());
+            if (user.getStatus() == null || user.getStatus() != 1) {
+                return;
+            }
+            if (size == users.length) {
+                users = Arrays.copyOf(users, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            int doc = size++;
+            String email = normalize(user.getEmail());
+            String[] keys = {normalize(user.getUsername()), normalize(user.getUsernameLogin()), emailLocalPart(email)};
+            users[doc] = user;
+            fields[doc] = keys;
+            docs.put(user.getId(), doc);
+            live++;
+
+            // Phần trước @ luôn là prefix của email đầy đủ nên chỉ cần lưu email đầy đủ
+            String[] prefixKeys = {keys[0], keys[1], email};
+            for (String key : prefixKeys) {
+                if (!key.isEmpty()) {
+                    prefixes.computeIfAbsent(key, k -> new IntList()).add(doc);
+                }
+            }
+            for (String key : keys) {
+                if (key.isEmpty()) {
+                    continue;
+                }
+                for (int i = 1; i < key.length(); i++) {
+                    if (!Character.isLetterOrDigit(key.charAt(i - 1)) && Character.isLetterOrDigit(key.charAt(i))) {
+                        wordStarts.computeIfAbsent(key.substring(i), k -> new IntList()).add(doc);
+                    }
+                }
+                for (int i = 0; i + 2 <= key.length(); i++) {
+                    grams.computeIfAbsent(gram(key, i, 2), g -> new IntList()).add(doc);
+                    if (i + 3 <= key.length()) {
+                        grams.computeIfAbsent(gram(key, i, 3), g -> new IntList()).add(doc);
+                    }
+                }
+            }
+        }
+
+        void remove(UUID id) {
+            Integer doc = docs.remove(id);
+            if (doc != null) {
+                users[doc] = null;
+                fields[doc] = null;
+                live--;
+            }
+        }
+
+        void compactIfNeeded() {
+            int dead = size - live;
+            if (dead < 1024 || dead < live) {
+                return;
+            }
+            Index compacted = new Index();
+            for (int doc = 0; doc < size; doc++) {
+                if (users[doc] != null) {
+                    compacted.upsert(users[doc]);
+                }
+            }
+            users = compacted.users;
+            fields = compacted.fields;
+            size = compacted.size;
+            live = compacted.live;
+            docs.clear();
+            docs.putAll(compacted.docs);
+            prefixes.clear();
+            prefixes.putAll(compacted.prefixes);
+            wordStarts.clear();
+            wordStarts.putAll(compacted.wordStarts);
+            grams.clear();
+            grams.putAll(compacted.grams);
+        }
+
+        /**
+         * Lấy theo từng hạng, đủ limit thì dừng (không phải chấm điểm mọi user khớp):
+         * 1. field bắt đầu bằng q (trùng hẳn đứng đầu vì nhỏ nhất theo thứ tự từ điển)
+         * 2. 1 từ bên trong field bắt đầu bằng q
+         * 3. field chứa q ở giữa từ (giao posting list gram rồi kiểm tra lại bằng contains)
+         */
+        User[] search(String q, int limit) {
+            Results results = new Results(limit);
+            collect(prefixes, q, results);
+            collect(wordStarts, q, results);
+            // Query 1 ký tự hoặc có @ chỉ khớp theo prefix
+            if (!results.isFull() && q.length() >= 2 && q.indexOf('@') < 0) {
+                collectContaining(q, results);
+            }
+            User[] found = new User[results.size];
+            for (int i = 0; i < results.size; i++) {
+                found[i] = users[results.docs[i]];
+            }
+            return found;
+        }
+
+        private void collect(TreeMap<String, IntList> keys, String q, Results results) {
+            if (results.isFull()) {
+                return;
+            }
+            for (IntList list : keys.subMap(q, true, q + Character.MAX_VALUE, false).values()) {
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.items[i];
+                    if (users[doc] != null) {
+                        results.add(doc);
+                        if (results.isFull()) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void collectContaining(String q, Results results) {
+            int width = q.length() == 2 ? 2 : 3;
+            IntList[] lists = new IntList[q.length() - width + 1];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = grams.get(gram(q, i, width));
+                if (lists[i] == null) {
+                    return;
+                }
+            }
+            // Duyệt list ngắn nhất, kiểm tra thành viên ở các list còn lại rồi xác nhận bằng contains
+            Arrays.sort(lists, Comparator.comparingInt(l -> l.size));
+            IntList smallest = lists[0];
+            outer:
+            for (int i = 0; i < smallest.size; i++) {
+                int doc = smallest.items[i];
+                String[] keys = fields[doc];
+                if (keys == null) {
+                    continue;
+                }
+                for (int j = 1; j < lists.length; j++) {
+                    if (!lists[j].contains(doc)) {
+                        continue outer;
+                    }
+                }
+                for (String key : keys) {
+                    if (key.contains(q)) {
+                        results.add(doc);
+                        if (results.isFull()) {
+                            return;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        private static long gram(String s, int from, int width) {
+            long g = width;
+            for (int i = from; i < from + width; i++) {
+                g = (g << 16) | s.charAt(i);
+            }
+            return g;
+        }
+
+        long estimateBytes() {
+            long bytes = users.length * 8L + fields.length * 8L + docs.size() * 80L;
+            for (int doc = 0; doc < size; doc++) {
+                if (fields[doc] != null) {
+                    for (String key : fields[doc]) {
+                        bytes += 40L + key.length();
+                    }
+                }
+            }
+            for (Map.Entry<String, IntList> entry : prefixes.entrySet()) {
+                bytes += 80L + entry.getKey().length() + entry.getValue().bytes();
+            }
+            for (Map.Entry<String, IntList> entry : wordStarts.entrySet()) {
+                bytes += 80L + entry.getKey().length() + entry.getValue().bytes();
+            }
+            for (IntList list : grams.values()) {
+                bytes += 48L + list.bytes();
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Doc id theo thứ tự hạng, bỏ trùng (1 user có thể khớp ở nhiều field / hạng)
+     */
+    private static final class Results {
+        final int[] docs;
+        int size;
+
+        Results(int limit) {
+            docs = new int[limit];
+        }
+
+        void add(int doc) {
+            if (isFull()) {
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                if (docs[i] == doc) {
+                    return;
+                }
+            }
+            docs[size++] = doc;
+        }
+
+        boolean isFull() {
+            return size == docs.length;
+        }
+    }
+}
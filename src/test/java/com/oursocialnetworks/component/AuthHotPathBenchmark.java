@@ -0,0 +1,94 @@
+package com.oursocialnetworks.component;
+
+import com.oursocialnetworks.entity.Role;
+import com.oursocialnetworks.entity.User;
+import com.oursocialnetworks.service.JwtService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark phần xác thực chạy trên mọi request: phát / verify JWT, JwtAuthFilter, AuthUtils.getCurrentUserId.
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Djmh.include=AuthHotPathBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthHotPathBenchmark {
+
+    // Base64 của 64 byte, giống định dạng jwt.secret thật
+    private static final String SECRET =
+            "MDEyMzQ1Njc4OTAxMjM0NTY3ODkwMTIzNDU2Nzg5MDEyMzQ1Njc4OTAxMjM0NTY3ODkwMTIzNDU2Nzg5MDEyMw==";
+
+    private JwtService jwtService;
+    private JwtAuthFilter filter;
+    private AuthUtils authUtils;
+    private User user;
+    private String token;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private final FilterChain chain = (req, res) -> { };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "SECRET", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtService, "refreshExpiration", 604_800_000L);
+        jwtService.init();
+
+        filter = new JwtAuthFilter();
+        ReflectionTestUtils.setField(filter, "jwtService", jwtService);
+        ReflectionTestUtils.setField(filter, "verifiedTokenCache", new VerifiedTokenCache(50_000));
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        filter.registerMeters();
+
+        authUtils = new AuthUtils();
+
+        user = new User();
+        user.setId(UUID.randomUUID());
+        user.setUsernameLogin("bench@example.com");
+        user.setRole(new Role(UUID.randomUUID(), null, null, "user", 1));
+
+        token = jwtService.generateToken(user);
+        request = new MockHttpServletRequest("GET", "/api/friends/followers");
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+
+        // Làm nóng cache token để đo đường đi thường gặp (cùng token nhiều request)
+        filter.doFilter(request, response, chain);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public Object verify() {
+        return jwtService.verify(token);
+    }
+
+    @Benchmark
+    public Object filterEndToEnd() throws Exception {
+        filter.doFilter(request, response, chain);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Benchmark
+    public void getCurrentUserId(Blackhole bh) {
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthentication(user.getId().toString(), "USER"));
+        bh.consume(authUtils.getCurrentUserId());
+    }
+}
@@ -0,0 +1,238 @@
+package com.oursocialnetworks.component;
+
+import com.oursocialnetworks.config.SupabaseConfig;
+import com.oursocialnetworks.exception.UpstreamUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Circuit breaker / half-open / retry budget / bulkhead của SupabaseResilience với đồng hồ giả (không sleep thật)
+ */
+class SupabaseResilienceTest {
+
+    private static final String DOMAIN = "friends";
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    private SupabaseResilience resilience(Consumer<SupabaseConfig.ResilienceConfig> customize) {
+        SupabaseConfig.ResilienceConfig cfg = new SupabaseConfig.ResilienceConfig();
+        cfg.setWindowSize(4);
+        cfg.setMinimumCalls(4);
+        cfg.setFailureRatePercent(50);
+        cfg.setOpenMs(10_000);
+        cfg.setHalfOpenProbes(2);
+        cfg.setRetryBackoffMs(0);
+        cfg.setRetryBackoffMaxMs(0);
+        customize.accept(cfg);
+
+        SupabaseConfig.DomainConfig domain = new SupabaseConfig.DomainConfig();
+        domain.setResilience(cfg);
+        SupabaseConfig config = new SupabaseConfig();
+        config.getDomains().put(DOMAIN, domain);
+        return new SupabaseResilience(config, now::get);
+    }
+
+    private Supplier<String> ok() {
+        return () -> {
+            invocations.incrementAndGet();
+            return "ok";
+        };
+    }
+
+    private Supplier<String> failing(RuntimeException e) {
+        return () -> {
+            invocations.incrementAndGet();
+            throw e;
+        };
+    }
+
+    private static String state(SupabaseResilience resilience) {
+        return (String) resilience.stats().get(DOMAIN).get("state");
+    }
+
+    private static void callIgnoringError(SupabaseResilience resilience, HttpMethod method, Supplier<String> call) {
+        try {
+            resilience.call(DOMAIN, method, call);
+        } catch (RuntimeException ignored) {
+            // lỗi mong đợi
+        }
+    }
+
+    private void trip(SupabaseResilience resilience) {
+        for (int i = 0; i < 4; i++) {
+            callIgnoringError(resilience, HttpMethod.POST, failing(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR)));
+        }
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThresholdAndFailsFast() {
+        SupabaseResilience resilience = resilience(cfg -> {});
+        callIgnoringError(resilience, HttpMethod.POST, ok());
+        callIgnoringError(resilience, HttpMethod.POST, ok());
+        callIgnoringError(resilience, HttpMethod.POST, failing(new ResourceAccessException("io")));
+        assertThat(state(resilience)).isEqualTo("CLOSED"); // chưa đủ minimum-calls
+
+        callIgnoringError(resilience, HttpMethod.POST, failing(new ResourceAccessException("io")));
+        assertThat(state(resilience)).isEqualTo("OPEN");
+
+        invocations.set(0);
+        assertThatThrownBy(() -> resilience.call(DOMAIN, HttpMethod.GET, ok()))
+                .isInstanceOf(UpstreamUnavailableException.class)
+                .satisfies(e -> assertThat(((UpstreamUnavailableException) e).getRetryAfterMs()).isEqualTo(10_000));
+        assertThat(invocations).hasValue(0);
+    }
+
+    @Test
+    void clientErrorsDoNotCountAsFailures() {
+        SupabaseResilience resilience = resilience(cfg -> {});
+        for (int i = 0; i < 8; i++) {
+            callIgnoringError(resilience, HttpMethod.GET, failing(new HttpClientErrorException(HttpStatus.NOT_FOUND)));
+        }
+        assertThat(state(resilience)).isEqualTo("CLOSED");
+        assertThat(invocations).hasValue(8); // 404 không retry
+    }
+
+    @Test
+    void slowSuccessCountsAsFailure() {
+        SupabaseResilience resilience = resilience(cfg -> cfg.setSlowCallMs(100));
+        for (int i = 0; i < 4; i++) {
+            resilience.call(DOMAIN, HttpMethod.GET, () -> {
+                now.addAndGet(150);
+                return "slow";
+            });
+        }
+        assertThat(state(resilience)).isEqualTo("OPEN");
+    }
+
+    @Test
+    void halfOpenClosesAfterAllProbesSucceed() {
+        SupabaseResilience resilience = resilience(cfg -> {});
+        trip(resilience);
+
+        now.addAndGet(9_999);
+        assertThatThrownBy(() -> resilience.call(DOMAIN, HttpMethod.GET, ok()))
+                .isInstanceOf(UpstreamUnavailableException.class);
+
+        now.addAndGet(1);
+        assertThat(resilience.call(DOMAIN, HttpMethod.GET, ok())).isEqualTo("ok");
+        assertThat(state(resilience)).isEqualTo("HALF_OPEN");
+        resilience.call(DOMAIN, HttpMethod.GET, ok());
+        assertThat(state(resilience)).isEqualTo("CLOSED");
+
+        // Cửa sổ được xóa khi đóng: 1 lỗi mới không mở lại ngay
+        callIgnoringError(resilience, HttpMethod.POST, failing(new ResourceAccessException("io")));
+        assertThat(state(resilience)).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void failedProbeReopensForAnotherOpenPeriod() {
+        SupabaseResilience resilience = resilience(cfg -> {});
+        trip(resilience);
+        now.addAndGet(10_000);
+
+        callIgnoringError(resilience, HttpMethod.POST, failing(new HttpServerErrorException(HttpStatus.BAD_GATEWAY)));
+        assertThat(state(resilience)).isEqualTo("OPEN");
+
+        now.addAndGet(5_000);
+        assertThatThrownBy(() -> resilience.call(DOMAIN, HttpMethod.GET, ok()))
+                .isInstanceOf(UpstreamUnavailableException.class);
+    }
+
+    @Test
+    void halfOpenAdmitsOnlyConfiguredNumberOfProbes() {
+        SupabaseResilience resilience = resilience(cfg -> cfg.setHalfOpenProbes(1));
+        trip(resilience);
+        now.addAndGet(10_000);
+
+        // Probe duy nhất đang chạy → call thứ 2 (lồng bên trong) bị từ chối
+        String result = resilience.call(DOMAIN, HttpMethod.GET, () -> {
+            assertThatThrownBy(() -> resilience.call(DOMAIN, HttpMethod.GET, ok()))
+                    .isInstanceOf(UpstreamUnavailableException.class);
+            return "probe";
+        });
+        assertThat(result).isEqualTo("probe");
+        assertThat(state(resilience)).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void retriesTransientGetErrorsButNotWrites() {
+        SupabaseResilience resilience = resilience(cfg -> {
+            cfg.setMinimumCalls(100);
+            cfg.setRetryBudgetRatio(1.0);
+        });
+        AtomicInteger attempts = new AtomicInteger();
+        String result = resilience.call(DOMAIN, HttpMethod.GET, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return "ok";
+        });
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(3);
+
+        callIgnoringError(resilience, HttpMethod.POST, failing(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE)));
+        callIgnoringError(resilience, HttpMethod.GET, failing(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR)));
+        callIgnoringError(resilience, HttpMethod.GET,
+                failing(HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "slow down", HttpHeaders.EMPTY, null, null)));
+        // POST 503: 1 lần, GET 500: không retry, GET 429: 3 lần
+        assertThat(invocations).hasValue(1 + 1 + 3);
+    }
+
+    @Test
+    void retryBudgetLimitsRetries() {
+        // window 10 × ratio 0.1 = 1 token; mỗi call nạp lại 0.1 token
+        SupabaseResilience resilience = resilience(cfg -> {
+            cfg.setWindowSize(10);
+            cfg.setMinimumCalls(100);
+            cfg.setRetryBudgetRatio(0.1);
+        });
+        Supplier<String> unavailable = failing(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+
+        callIgnoringError(resilience, HttpMethod.GET, unavailable);
+        assertThat(invocations).hasValue(2); // dùng token duy nhất
+
+        for (int i = 0; i < 9; i++) {
+            callIgnoringError(resilience, HttpMethod.GET, unavailable);
+        }
+        assertThat(invocations).hasValue(2 + 9); // hết budget: không retry
+
+        callIgnoringError(resilience, HttpMethod.GET, unavailable);
+        assertThat(invocations).hasValue(2 + 9 + 2); // 10 call đã nạp đủ 1 token
+    }
+
+    @Test
+    void bulkheadRejectsWhenAllSlotsAreBusy() {
+        SupabaseResilience resilience = resilience(cfg -> {
+            cfg.setMaxConcurrent(1);
+            cfg.setBulkheadWaitMs(0);
+        });
+        resilience.call(DOMAIN, HttpMethod.GET, () -> {
+            assertThatThrownBy(() -> resilience.call(DOMAIN, HttpMethod.GET, ok()))
+                    .isInstanceOf(UpstreamUnavailableException.class);
+            return "ok";
+        });
+        assertThat(resilience.stats().get(DOMAIN).get("bulkheadAvailable")).isEqualTo(1);
+    }
+
+    @Test
+    void domainsWithoutPolicyPassThrough() {
+        SupabaseResilience resilience = resilience(cfg -> cfg.setEnabled(false));
+        trip(resilience);
+        assertThat(resilience.call(DOMAIN, HttpMethod.GET, ok())).isEqualTo("ok");
+        assertThat(resilience.stats()).isEmpty();
+    }
+}
@@ -0,0 +1,55 @@
+package com.oursocialnetworks.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ghi latency (micro giây) của 1 flow, thread-safe. Lưu mẫu thô để tính percentile chính xác.
+ */
+final class LatencyRecorder {
+
+    private long[] samples = new long[1 << 14];
+    private int size;
+    private long errors;
+
+    synchronized void record(long micros, boolean ok) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = micros;
+        if (!ok) {
+            errors++;
+        }
+    }
+
+    synchronized void reset() {
+        size = 0;
+        errors = 0;
+    }
+
+    /**
+     * count, errors, throughput (req/s) và p50/p90/p99/max (ms) trong khoảng đo
+     */
+    synchronized Map<String, Object> summary(double elapsedSeconds) {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", size);
+        result.put("errors", errors);
+        result.put("throughput", size / elapsedSeconds);
+        result.put("p50", percentile(sorted, 50));
+        result.put("p90", percentile(sorted, 90));
+        result.put("p99", percentile(sorted, 99));
+        result.put("max", sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1000.0);
+        return result;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000.0;
+    }
+}
@@ -0,0 +1,317 @@
+package com.oursocialnetworks.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.oursocialnetworks.OurSocialNetworksApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Load test end-to-end chạy offline: PostgrestStandIn thay Supabase, app Spring Boot thật trên port ngẫu nhiên,
+ * N thread (closed-loop) chạy hỗn hợp flow login / profile / search / friends rồi in throughput + percentile.
+ *
+ * Chạy: mvn -Ploadtest test-compile exec:exec -Dloadtest.args="-Dloadtest.threads=64 -Dloadtest.duration-seconds=60"
+ * Tham số: loadtest.users, loadtest.follows, loadtest.threads, loadtest.warmup-seconds,
+ * loadtest.duration-seconds, loadtest.latency-ms, loadtest.jitter-ms,
+ * loadtest.friends-latency-ms / loadtest.users-latency-ms (giả lập bảng friends / Users chậm, -1 = như latency chung),
+ * loadtest.min-throughput / loadtest.max-p99-ms (gate: exit 1 nếu không đạt).
+ * Property của app cũng truyền qua loadtest.args, ví dụ -Dapp.graph.enabled=true.
+ */
+public final class LoadTestRunner {
+
+    private static final String USERS = "Users";
+    private static final String ROLE = "Role";
+    private static final String FRIENDS = "list-and-user";
+    private static final String OTP = "otp_codes"; // app.otp.store=supabase
+    private static final String PASSWORD = "loadtest-password";
+    private static final int TOKEN_POOL = 200;
+
+    // Trọng số các flow trong 1 vòng lặp của virtual user
+    // popular: mọi user cùng mở 1 profile nổi tiếng (GET trùng nhau → RequestCoalescer)
+    private static final String[] FLOWS = {"login", "profile", "popular", "search", "followers", "following", "status"};
+    private static final int[] WEIGHTS = {10, 20, 10, 20, 15, 15, 10};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final int users = Integer.getInteger("loadtest.users", 2000);
+    private final int follows = Integer.getInteger("loadtest.follows", 30);
+    private final int threads = Integer.getInteger("loadtest.threads", 32);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+    private final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 30);
+    private final long latencyMs = Long.getLong("loadtest.latency-ms", 20);
+    private final long jitterMs = Long.getLong("loadtest.jitter-ms", 10);
+    private final long friendsLatencyMs = Long.getLong("loadtest.friends-latency-ms", -1);
+    private final long usersLatencyMs = Long.getLong("loadtest.users-latency-ms", -1);
+    private final double minThroughput = Double.parseDouble(System.getProperty("loadtest.min-throughput", "0"));
+    private final double maxP99Ms = Double.parseDouble(System.getProperty("loadtest.max-p99-ms", "0"));
+
+    private final Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+    private final List<String> tokens = new ArrayList<>();
+    private String baseUrl;
+
+    public static void main(String[] args) throws Exception {
+        boolean passed = new LoadTestRunner().run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        for (String flow : FLOWS) {
+            recorders.put(flow, new LatencyRecorder());
+        }
+        try (PostgrestStandIn standIn = new PostgrestStandIn()
+                .table(USERS, false)
+                .table(ROLE, false)
+                .table(FRIENDS, true)
+                .table(OTP, true)
+                .start(0, 256)) {
+            seed(standIn);
+            standIn.setLatency(latencyMs, jitterMs);
+            if (friendsLatencyMs >= 0) {
+                standIn.setTableLatency(FRIENDS, friendsLatencyMs);
+            }
+
+            try (ConfigurableApplicationContext app = startApp(standIn.baseUrl())) {
+                int port = ((ServletWebServerApplicationContext) app).getWebServer().getPort();
+                baseUrl = "http://127.0.0.1:" + port;
+                loginTokenPool();
+
+                System.out.printf("Warmup %ds, đo %ds, %d threads, latency Supabase %d±%dms%n",
+                        warmupSeconds, durationSeconds, threads, latencyMs, jitterMs);
+                drive(warmupSeconds);
+                if (usersLatencyMs >= 0) {
+                    // Sự cố bắt đầu sau warmup, khi cache đã nóng
+                    standIn.setTableLatency(USERS, usersLatencyMs);
+                }
+                recorders.values().forEach(LatencyRecorder::reset);
+                long supabaseBefore = standIn.getRequestCount();
+                long start = System.nanoTime();
+                drive(durationSeconds);
+                double elapsed = (System.nanoTime() - start) / 1e9;
+                return report(elapsed, standIn.getRequestCount() - supabaseBefore);
+            }
+        }
+    }
+
+    // ========== SETUP ==========
+
+    private void seed(PostgrestStandIn standIn) {
+        String userRoleId = new UUID(0x701e, 1).toString();
+        standIn.seed(ROLE, row("id", userRoleId, "role", "User", "status", 1, "createDate", "2024-01-01"));
+        standIn.seed(ROLE, row("id", new UUID(0x701e, 2).toString(), "role", "Admin", "status", 1, "createDate", "2024-01-01"));
+
+        for (int i = 0; i < users; i++) {
+            standIn.seed(USERS, row(
+                    "id", userId(i),
+                    "username_login", "user" + i,
+                    "password_login", PASSWORD,
+                    "username", "User " + i,
+                    "email", "user" + i + "@loadtest.local",
+                    "description", "Load test user " + i,
+                    "place_of_residence", "Hà Nội",
+                    "provider", "password",
+                    "email_verified", true,
+                    "status", 1,
+                    "role_id", userRoleId,
+                    "createDate", "2024-01-01",
+                    "updateDate", "2024-01-01"));
+        }
+        // Mỗi user follow `follows` user khác, 1/5 còn Pending
+        for (int i = 0; i < users; i++) {
+            for (int k = 1; k <= follows; k++) {
+                int j = (i + k * 7) % users;
+                if (j == i) continue;
+                standIn.seed(FRIENDS, row(
+                        "id_user", userId(i),
+                        "friend_id", userId(j),
+                        "status_fr", k % 5 == 0 ? "Pending" : "Done",
+                        "status", 1));
+            }
+        }
+        System.out.printf("Seed: %d users, %d roles, %d list-and-user rows%n",
+                standIn.rowCount(USERS), standIn.rowCount(ROLE), standIn.rowCount(FRIENDS));
+    }
+
+    private ConfigurableApplicationContext startApp(String supabaseUrl) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--jwt.secret=bG9hZHRlc3Qtc2VjcmV0LWxvYWR0ZXN0LXNlY3JldC1sb2FkdGVzdC1zZWNyZXQtbG9hZHRlc3Q=",
+                "--spring.security.oauth2.client.registration.google.client-id=loadtest",
+                "--spring.security.oauth2.client.registration.google.client-secret=loadtest",
+                "--spring.security.oauth2.client.registration.google.redirect-uri=http://127.0.0.1/login/oauth2/code/google",
+                "--app.frontend.url=http://127.0.0.1:4200",
+                "--logging.level.com.oursocialnetworks=INFO",
+                "--logging.level.org.springframework.web=INFO",
+                "--logging.level.org.springframework.security=INFO"));
+        for (String domain : List.of("user", "role", "friends", "otp")) {
+            args.add("--supabase.domains." + domain + ".url=" + supabaseUrl);
+            args.add("--supabase.domains." + domain + ".key=loadtest");
+        }
+        return SpringApplication.run(OurSocialNetworksApplication.class, args.toArray(new String[0]));
+    }
+
+    private void loginTokenPool() throws Exception {
+        for (int i = 0; i < Math.min(TOKEN_POOL, users); i++) {
+            HttpResponse<String> res = http.send(loginRequest(i), HttpResponse.BodyHandlers.ofString());
+            JsonNode body = mapper.readTree(res.body());
+            if (res.statusCode() != 200 || !body.hasNonNull("accessToken")) {
+                throw new IllegalStateException("Login user" + i + " thất bại: " + res.statusCode() + " " + res.body());
+            }
+            tokens.add(body.get("accessToken").asText());
+        }
+    }
+
+    // ========== LOAD ==========
+
+    private void drive(int seconds) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        runOnce(pickFlow());
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "loadtest-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        done.await();
+    }
+
+    private String pickFlow() {
+        int total = Arrays.stream(WEIGHTS).sum();
+        int r = ThreadLocalRandom.current().nextInt(total);
+        for (int i = 0; i < FLOWS.length; i++) {
+            r -= WEIGHTS[i];
+            if (r < 0) return FLOWS[i];
+        }
+        return FLOWS[0];
+    }
+
+    private void runOnce(String flow) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int self = random.nextInt(tokens.size());
+        String token = tokens.get(self);
+        HttpRequest request = switch (flow) {
+            case "login" -> loginRequest(random.nextInt(users));
+            case "profile" -> authorized("/api/client/profile", token);
+            case "popular" -> authorized("/api/client/users/by-username/user0", token);
+            case "search" -> authorized("/api/client/users/search?q=user" + random.nextInt(100), token);
+            case "followers" -> authorized("/api/friends/followers?size=20", token);
+            case "following" -> authorized("/api/friends/following?size=20", token);
+            case "status" -> authorized("/api/friends/status/" + userId(random.nextInt(users)), token);
+            default -> throw new IllegalArgumentException(flow);
+        };
+        long start = System.nanoTime();
+        boolean ok;
+        try {
+            HttpResponse<String> res = http.send(request, HttpResponse.BodyHandlers.ofString());
+            ok = res.statusCode() == 200 && !res.body().contains("\"status\":\"error\"");
+        } catch (Exception e) {
+            ok = false;
+        }
+        recorders.get(flow).record((System.nanoTime() - start) / 1000, ok);
+    }
+
+    private HttpRequest loginRequest(int i) {
+        String body = "{\"username_login\":\"user" + i + "\",\"password_login\":\"" + PASSWORD + "\"}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/auth/login/basic"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest authorized(String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    // ========== REPORT ==========
+
+    private boolean report(double elapsed, long supabaseRequests) throws Exception {
+        Map<String, Object> flows = new LinkedHashMap<>();
+        long total = 0;
+        long errors = 0;
+        double worstP99 = 0;
+        System.out.printf("%n%-10s %9s %7s %10s %9s %9s %9s %9s%n",
+                "flow", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, LatencyRecorder> entry : recorders.entrySet()) {
+            Map<String, Object> s = entry.getValue().summary(elapsed);
+            flows.put(entry.getKey(), s);
+            total += ((Number) s.get("count")).longValue();
+            errors += ((Number) s.get("errors")).longValue();
+            worstP99 = Math.max(worstP99, (double) s.get("p99"));
+            System.out.printf("%-10s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(),
+                    s.get("count"), s.get("errors"), s.get("throughput"),
+                    s.get("p50"), s.get("p90"), s.get("p99"), s.get("max"));
+        }
+        double throughput = total / elapsed;
+        System.out.printf("%nTổng: %d request, %d lỗi, %.1f req/s, %d request tới Supabase (%.2f / request)%n",
+                total, errors, throughput, supabaseRequests, total == 0 ? 0.0 : (double) supabaseRequests / total);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("threads", threads);
+        result.put("durationSeconds", elapsed);
+        result.put("supabaseLatencyMs", latencyMs);
+        result.put("supabaseJitterMs", jitterMs);
+        result.put("totalRequests", total);
+        result.put("errors", errors);
+        result.put("throughput", throughput);
+        result.put("supabaseRequests", supabaseRequests);
+        result.put("flows", flows);
+        File out = new File("target/loadtest-result.json");
+        out.getParentFile().mkdirs();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(out, result);
+        System.out.println("Kết quả: " + out.getPath());
+
+        boolean passed = true;
+        if (minThroughput > 0 && throughput < minThroughput) {
+            System.out.printf("FAIL: throughput %.1f < %.1f req/s%n", throughput, minThroughput);
+            passed = false;
+        }
+        if (maxP99Ms > 0 && worstP99 > maxP99Ms) {
+            System.out.printf("FAIL: p99 %.2fms > %.2fms%n", worstP99, maxP99Ms);
+            passed = false;
+        }
+        return passed;
+    }
+
+    // ========== HELPERS ==========
+
+    private static String userId(int i) {
+        return new UUID(0x10adL, i).toString();
+    }
+
+    private static Map<String, Object> row(Object... keyValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            row.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return row;
+    }
+}
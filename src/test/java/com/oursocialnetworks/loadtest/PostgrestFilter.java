@@ -0,0 +1,206 @@
+package com.oursocialnetworks.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Parse + evaluate phần filter PostgREST mà code đang dùng:
+ * col=eq./neq./lt./lte./gt./gte./ilike./like./in.()/is.null, tiền tố not.,
+ * và nhóm logic or=(...) / and=(...) lồng and(...) / or(...).
+ */
+final class PostgrestFilter {
+
+    private PostgrestFilter() {
+    }
+
+    /**
+     * Filter cho 1 cặp query param (key=value). Trả null nếu key không phải filter (select, order, limit...)
+     */
+    static Predicate<Map<String, Object>> fromParam(String key, String value) {
+        if ("or".equals(key) || "and".equals(key)) {
+            return group("or".equals(key), stripParens(value));
+        }
+        if ("not.or".equals(key) || "not.and".equals(key)) {
+            return group("not.or".equals(key), stripParens(value)).negate();
+        }
+        return condition(key, value);
+    }
+
+    // ========== LOGIC GROUP ==========
+
+    private static Predicate<Map<String, Object>> group(boolean any, String body) {
+        List<Predicate<Map<String, Object>>> parts = new ArrayList<>();
+        for (String item : splitTopLevel(body)) {
+            parts.add(groupItem(item.trim()));
+        }
+        return row -> {
+            for (Predicate<Map<String, Object>> p : parts) {
+                boolean match = p.test(row);
+                if (any && match) return true;
+                if (!any && !match) return false;
+            }
+            return !any;
+        };
+    }
+
+    private static Predicate<Map<String, Object>> groupItem(String item) {
+        if (item.startsWith("and(") || item.startsWith("or(")) {
+            boolean any = item.startsWith("or(");
+            return group(any, item.substring(item.indexOf('(') + 1, item.length() - 1));
+        }
+        if (item.startsWith("not.and(") || item.startsWith("not.or(")) {
+            boolean any = item.startsWith("not.or(");
+            return group(any, item.substring(item.indexOf('(') + 1, item.length() - 1)).negate();
+        }
+        // col.op.value
+        int dot = item.indexOf('.');
+        if (dot < 0) {
+            throw new IllegalArgumentException("filter không hợp lệ: " + item);
+        }
+        return condition(item.substring(0, dot), item.substring(dot + 1));
+    }
+
+    // ========== CONDITION ==========
+
+    private static Predicate<Map<String, Object>> condition(String column, String expr) {
+        boolean negate = false;
+        if (expr.startsWith("not.")) {
+            negate = true;
+            expr = expr.substring(4);
+        }
+        int dot = expr.indexOf('.');
+        if (dot < 0) {
+            throw new IllegalArgumentException("operator không hợp lệ: " + column + "=" + expr);
+        }
+        String op = expr.substring(0, dot);
+        String arg = expr.substring(dot + 1);
+        Predicate<Map<String, Object>> p = switch (op) {
+            case "eq" -> row -> compare(row.get(column), arg) == 0;
+            case "neq" -> row -> row.get(column) != null && compare(row.get(column), arg) != 0;
+            case "lt" -> row -> row.get(column) != null && compare(row.get(column), arg) < 0;
+            case "lte" -> row -> row.get(column) != null && compare(row.get(column), arg) <= 0;
+            case "gt" -> row -> row.get(column) != null && compare(row.get(column), arg) > 0;
+            case "gte" -> row -> row.get(column) != null && compare(row.get(column), arg) >= 0;
+            case "like" -> likePredicate(column, arg, false);
+            case "ilike" -> likePredicate(column, arg, true);
+            case "in" -> inPredicate(column, arg);
+            case "is" -> isPredicate(column, arg);
+            default -> throw new IllegalArgumentException("operator chưa hỗ trợ: " + op);
+        };
+        return negate ? p.negate() : p;
+    }
+
+    private static Predicate<Map<String, Object>> likePredicate(String column, String pattern, boolean ignoreCase) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : pattern.toCharArray()) {
+            if (c == '*' || c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        Pattern compiled = Pattern.compile(regex.toString(),
+                ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL : Pattern.DOTALL);
+        return row -> {
+            Object v = row.get(column);
+            return v != null && compiled.matcher(v.toString()).matches();
+        };
+    }
+
+    private static Predicate<Map<String, Object>> inPredicate(String column, String list) {
+        Set<String> values = Set.copyOf(splitTopLevel(stripParens(list)).stream()
+                .map(String::trim)
+                .map(PostgrestFilter::unquote)
+                .toList());
+        return row -> {
+            Object v = row.get(column);
+            return v != null && values.contains(v.toString());
+        };
+    }
+
+    private static Predicate<Map<String, Object>> isPredicate(String column, String arg) {
+        return switch (arg) {
+            case "null" -> row -> row.get(column) == null;
+            case "true" -> row -> Boolean.TRUE.equals(row.get(column));
+            case "false" -> row -> Boolean.FALSE.equals(row.get(column));
+            default -> throw new IllegalArgumentException("is." + arg + " chưa hỗ trợ");
+        };
+    }
+
+    /**
+     * So sánh giá trị trong bảng với tham số dạng chuỗi: số thì so theo số, còn lại so chuỗi (ngày ISO vẫn đúng thứ tự)
+     */
+    static int compare(Object value, String arg) {
+        if (value == null) {
+            return "null".equals(arg) ? 0 : -1;
+        }
+        String unquoted = unquote(arg);
+        if (value instanceof Number n) {
+            try {
+                return Double.compare(n.doubleValue(), Double.parseDouble(unquoted));
+            } catch (NumberFormatException ignored) {
+                // rơi xuống so chuỗi
+            }
+        }
+        if (value instanceof Boolean b) {
+            return b.toString().equalsIgnoreCase(unquoted) ? 0 : 1;
+        }
+        return value.toString().compareTo(unquoted);
+    }
+
+    // ========== PARSE HELPERS ==========
+
+    static String stripParens(String s) {
+        s = s.trim();
+        if (s.startsWith("(") && s.endsWith(")")) {
+            return s.substring(1, s.length() - 1);
+        }
+        return s;
+    }
+
+    /**
+     * "..." → nội dung bên trong, bỏ escape \" và \\ như PostgREST
+     */
+    private static String unquote(String s) {
+        if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"")) {
+            return s.substring(1, s.length() - 1).replaceAll("\\\\(.)", "$1");
+        }
+        return s;
+    }
+
+    /**
+     * Tách theo dấu phẩy ở mức ngoài cùng (bỏ qua phẩy trong ngoặc và trong chuỗi "...")
+     */
+    static List<String> splitTopLevel(String s) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (quoted && c == '\\') {
+                i++; // ký tự được escape trong "..."
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && c == '(') {
+                depth++;
+            } else if (!quoted && c == ')') {
+                depth--;
+            } else if (!quoted && depth == 0 && c == ',') {
+                parts.add(s.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (start < s.length()) {
+            parts.add(s.substring(start));
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,435 @@
+package com.oursocialnetworks.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Server giả lập Supabase PostgREST chạy in-process (JDK HttpServer), phục vụ /rest/v1/{table}.
+ * Hỗ trợ đúng phần grammar code đang dùng: filter (xem PostgrestFilter), order, limit, offset,
+ * select=*,Role(*) (embed theo cột {table}_id), Prefer: return=representation,
+ * GET / POST / PATCH / PUT / DELETE, HEAD + Prefer: count=exact (Content-Range). Có thể chèn độ trễ cố định + jitter cho mỗi request.
+ */
+public class PostgrestStandIn implements AutoCloseable {
+
+    private static final Set<String> RESERVED_PARAMS = Set.of("select", "order", "limit", "offset", "on_conflict", "columns");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, List<Map<String, Object>>> tables = new HashMap<>();
+    private final Map<String, AtomicLong> sequences = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private volatile long latencyMs;
+    private volatile long jitterMs;
+    private final Map<String, Long> tableLatencyMs = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Tạo bảng rỗng. Bảng có cột id kiểu số (bigint identity) thì insert tự tăng id, còn lại sinh UUID.
+     */
+    public PostgrestStandIn table(String name, boolean numericId) {
+        tables.put(name, new ArrayList<>());
+        if (numericId) {
+            sequences.put(name, new AtomicLong());
+        }
+        return this;
+    }
+
+    /**
+     * Thêm sẵn dữ liệu (không tính latency)
+     */
+    public void seed(String table, Map<String, Object> row) {
+        lock.writeLock().lock();
+        try {
+            insertRow(table, new LinkedHashMap<>(row));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setLatency(long latencyMs, long jitterMs) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+    }
+
+    /**
+     * Độ trễ riêng cho 1 bảng (thay cho latency chung), vd. giả lập project friends chậm
+     */
+    public void setTableLatency(String table, long latencyMs) {
+        tableLatencyMs.put(table, latencyMs);
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public int rowCount(String table) {
+        lock.readLock().lock();
+        try {
+            return tables.get(table).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public PostgrestStandIn start(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/rest/v1/", this::handle);
+        server.start();
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // ========== HTTP ==========
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            String table = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring("/rest/v1/".length()),
+                    StandardCharsets.UTF_8);
+            injectLatency(table);
+            if (!tables.containsKey(table)) {
+                send(exchange, 404, error("PGRST205", "Could not find the table '" + table + "'"));
+                return;
+            }
+            List<String[]> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            boolean representation = Optional.ofNullable(exchange.getRequestHeaders().getFirst("Prefer"))
+                    .map(p -> p.contains("return=representation"))
+                    .orElse(false);
+
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> send(exchange, 200, mapper.writeValueAsBytes(select(table, params)));
+                case "HEAD" -> {
+                    exchange.getResponseHeaders().set("Content-Range", "*/" + count(table, params));
+                    send(exchange, 200, null);
+                }
+                case "POST" -> {
+                    List<Map<String, Object>> inserted = insert(table, readBody(exchange));
+                    send(exchange, 201, representation ? mapper.writeValueAsBytes(project(table, inserted, params)) : null);
+                }
+                case "PATCH", "PUT" -> {
+                    List<Map<String, Object>> updated = update(table, params, readBody(exchange));
+                    send(exchange, representation ? 200 : 204,
+                            representation ? mapper.writeValueAsBytes(project(table, updated, params)) : null);
+                }
+                case "DELETE" -> {
+                    List<Map<String, Object>> deleted = delete(table, params);
+                    send(exchange, representation ? 200 : 204,
+                            representation ? mapper.writeValueAsBytes(project(table, deleted, params)) : null);
+                }
+                default -> send(exchange, 405, error("PGRST000", "method not allowed"));
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error("PGRST100", e.getMessage()));
+        } catch (Exception e) {
+            send(exchange, 500, error("PGRST000", String.valueOf(e)));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void injectLatency(String table) throws InterruptedException {
+        long delay = tableLatencyMs.getOrDefault(table, latencyMs);
+        if (jitterMs > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitterMs + 1);
+        }
+        if (delay > 0) {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        }
+    }
+
+    private List<Map<String, Object>> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            JsonNode node = mapper.readTree(in);
+            if (node == null || node.isNull() || node.isMissingNode()) {
+                return List.of();
+            }
+            if (node.isArray()) {
+                return mapper.convertValue(node, new TypeReference<>() {});
+            }
+            return List.of(mapper.convertValue(node, new TypeReference<Map<String, Object>>() {}));
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private byte[] error(String code, String message) throws IOException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("code", code);
+        body.put("message", message);
+        return mapper.writeValueAsBytes(body);
+    }
+
+    /**
+     * Tách query string thành các cặp (key, value) đã decode, giữ thứ tự và key trùng.
+     * '+' giữ nguyên (RestTemplate không encode '+', PostgREST cũng không coi là dấu cách).
+     */
+    static List<String[]> parseQuery(String rawQuery) {
+        List<String[]> params = new ArrayList<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.add(new String[]{decode(key), decode(value)});
+        }
+        return params;
+    }
+
+    private static String decode(String s) {
+        return URLDecoder.decode(s.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    // ========== QUERY ==========
+
+    private List<Map<String, Object>> select(String table, List<String[]> params) {
+        Predicate<Map<String, Object>> filter = filterOf(params);
+        List<Map<String, Object>> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map<String, Object> row : tables.get(table)) {
+                if (filter.test(row)) {
+                    result.add(row);
+                }
+            }
+            String order = param(params, "order");
+            if (order != null) {
+                result.sort(comparatorOf(order));
+            }
+            int offset = intParam(params, "offset", 0);
+            int limit = intParam(params, "limit", Integer.MAX_VALUE);
+            int from = Math.min(offset, result.size());
+            int to = (int) Math.min((long) from + limit, result.size());
+            return project(table, result.subList(from, to), params);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long count(String table, List<String[]> params) {
+        Predicate<Map<String, Object>> filter = filterOf(params);
+        lock.readLock().lock();
+        try {
+            return tables.get(table).stream().filter(filter).count();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Map<String, Object>> insert(String table, List<Map<String, Object>> rows) {
+        List<Map<String, Object>> inserted = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (Map<String, Object> row : rows) {
+                inserted.add(insertRow(table, new LinkedHashMap<>(row)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return inserted;
+    }
+
+    private Map<String, Object> insertRow(String table, Map<String, Object> row) {
+        AtomicLong sequence = sequences.get(table);
+        if (row.get("id") == null) {
+            row.put("id", sequence != null ? sequence.incrementAndGet() : UUID.randomUUID().toString());
+        } else if (sequence != null) {
+            long id = ((Number) row.get("id")).longValue();
+            sequence.accumulateAndGet(id, Math::max);
+        }
+        tables.get(table).add(row);
+        return row;
+    }
+
+    private List<Map<String, Object>> update(String table, List<String[]> params, List<Map<String, Object>> body) {
+        Predicate<Map<String, Object>> filter = filterOf(params);
+        Map<String, Object> changes = body.isEmpty() ? Map.of() : body.get(0);
+        List<Map<String, Object>> updated = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (Map<String, Object> row : tables.get(table)) {
+                if (filter.test(row)) {
+                    row.putAll(changes);
+                    updated.add(row);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return updated;
+    }
+
+    private List<Map<String, Object>> delete(String table, List<String[]> params) {
+        Predicate<Map<String, Object>> filter = filterOf(params);
+        List<Map<String, Object>> deleted = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            Iterator<Map<String, Object>> it = tables.get(table).iterator();
+            while (it.hasNext()) {
+                Map<String, Object> row = it.next();
+                if (filter.test(row)) {
+                    deleted.add(row);
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return deleted;
+    }
+
+    private static Predicate<Map<String, Object>> filterOf(List<String[]> params) {
+        Predicate<Map<String, Object>> filter = row -> true;
+        for (String[] p : params) {
+            if (RESERVED_PARAMS.contains(p[0])) {
+                continue;
+            }
+            filter = filter.and(PostgrestFilter.fromParam(p[0], p[1]));
+        }
+        return filter;
+    }
+
+    /**
+     * order=col.desc,col2.asc (mặc định asc, null xếp cuối như PostgreSQL)
+     */
+    private static Comparator<Map<String, Object>> comparatorOf(String order) {
+        Comparator<Map<String, Object>> comparator = null;
+        for (String part : order.split(",")) {
+            String[] tokens = part.trim().split("\\.");
+            String column = tokens[0];
+            boolean desc = tokens.length > 1 && "desc".equals(tokens[1]);
+            Comparator<Map<String, Object>> c = (a, b) -> compareValues(a.get(column), b.get(column));
+            if (desc) {
+                c = c.reversed();
+            }
+            comparator = comparator == null ? c : comparator.thenComparing(c);
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : (a == null ? 1 : -1);
+        }
+        if (a instanceof Number x && b instanceof Number y) {
+            return Double.compare(x.doubleValue(), y.doubleValue());
+        }
+        if (a instanceof Comparable && a.getClass() == b.getClass()) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    // ========== SELECT / EMBED ==========
+
+    /**
+     * Áp dụng select: cột thường, * và embed Table(cols) theo khóa ngoại {table lowercase}_id → Table.id
+     */
+    private List<Map<String, Object>> project(String table, List<Map<String, Object>> rows, List<String[]> params) {
+        String select = param(params, "select");
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            result.add(project(row, select == null ? "*" : select));
+        }
+        return result;
+    }
+
+    private Map<String, Object> project(Map<String, Object> row, String select) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (String item : PostgrestFilter.splitTopLevel(select)) {
+            item = item.trim();
+            int paren = item.indexOf('(');
+            if ("*".equals(item)) {
+                out.putAll(row);
+            } else if (paren > 0) {
+                String embedded = item.substring(0, paren);
+                String columns = item.substring(paren + 1, item.length() - 1);
+                out.put(embedded, embed(row, embedded, columns));
+            } else {
+                // Cột có ký tự đặc biệt được quote: "date-of-birth"
+                String column = item.length() > 1 && item.startsWith("\"") && item.endsWith("\"")
+                        ? item.substring(1, item.length() - 1) : item;
+                out.put(column, row.get(column));
+            }
+        }
+        return out;
+    }
+
+    private Map<String, Object> embed(Map<String, Object> row, String embedded, String columns) {
+        List<Map<String, Object>> target = tables.get(embedded);
+        Object fk = row.get(embedded.toLowerCase(Locale.ROOT) + "_id");
+        if (target == null || fk == null) {
+            return null;
+        }
+        for (Map<String, Object> candidate : target) {
+            if (fk.toString().equals(String.valueOf(candidate.get("id")))) {
+                return project(candidate, columns);
+            }
+        }
+        return null;
+    }
+
+    private static String param(List<String[]> params, String key) {
+        for (String[] p : params) {
+            if (p[0].equals(key)) {
+                return p[1];
+            }
+        }
+        return null;
+    }
+
+    private static int intParam(List<String[]> params, String key, int defaultValue) {
+        String value = param(params, key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+}
@@ -0,0 +1,86 @@
+package com.oursocialnetworks.loadtest;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh platform thread (pool 200 như Tomcat mặc định) với virtual thread khi mỗi request
+ * block chờ upstream chậm (giả lập Supabase / Resend bằng sleep, virtual thread unmount giống blocking socket I/O).
+ * Mỗi op = 1 đợt `requests` request đồng thời, đo thời gian tới khi xong hết.
+ *
+ * Chạy trên JDK 21+: mvn -Pbenchmark test-compile exec:exec -Djmh.include=ThreadModeBenchmark
+ * (JDK 17 chỉ chạy được mode=platform). End-to-end: LoadTestRunner với -Dspring.threads.virtual.enabled=true.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadModeBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"200", "1000", "5000"})
+    public int requests;
+
+    @Param({"50"})
+    public long upstreamLatencyMs;
+
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if ("virtual".equals(mode)) {
+            try {
+                // Gọi qua reflection để source vẫn build được trên JDK 17
+                executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Virtual threads cần JDK 21+, đang chạy " + System.getProperty("java.version"));
+            }
+        } else {
+            executor = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public long burst() throws Exception {
+        List<Callable<Long>> tasks = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            tasks.add(this::blockingRequest);
+        }
+        long total = 0;
+        for (Future<Long> f : executor.invokeAll(tasks)) {
+            total += f.get();
+        }
+        return total;
+    }
+
+    /**
+     * 1 request: chút CPU (parse / build URL) + block chờ upstream
+     */
+    private long blockingRequest() throws InterruptedException {
+        long hash = 17;
+        for (int i = 0; i < 200; i++) {
+            hash = hash * 31 + i;
+        }
+        TimeUnit.MILLISECONDS.sleep(upstreamLatencyMs);
+        return hash;
+    }
+}
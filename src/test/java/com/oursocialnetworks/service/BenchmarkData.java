@@ -0,0 +1,43 @@
+package com.oursocialnetworks.service;
+
+import com.oursocialnetworks.entity.FriendRequest;
+import com.oursocialnetworks.entity.Role;
+import com.oursocialnetworks.entity.User;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Dữ liệu mẫu dùng chung cho các benchmark (giá trị cố định để kết quả lặp lại được)
+ */
+final class BenchmarkData {
+
+    private static final Role USER_ROLE =
+            new Role(new UUID(1, 1), LocalDate.of(2024, 1, 1), null, "user", 1);
+
+    private BenchmarkData() {
+    }
+
+    static User user(int i) {
+        User user = new User();
+        user.setId(new UUID(42, i));
+        user.setCreateDate(LocalDate.of(2024, 1, 1));
+        user.setUpdateDate(LocalDate.of(2024, 6, 1));
+        user.setUsernameLogin("user" + i + "@example.com");
+        user.setUsername("User " + i);
+        user.setImage("https://cdn.example.com/avatar/" + i + ".png");
+        user.setDescription("Xin chào, mình là user " + i);
+        user.setPlaceOfResidence("Hà Nội");
+        user.setEmail("user" + i + "@example.com");
+        user.setProvider("password");
+        user.setEmailVerified(Boolean.TRUE);
+        user.setStatus(1);
+        user.setRoleId(USER_ROLE.getId());
+        user.setRole(USER_ROLE);
+        return user;
+    }
+
+    static FriendRequest friendRequest(int i) {
+        return new FriendRequest((long) i + 1, new UUID(42, i), new UUID(43, i), i % 3 == 0 ? "Pending" : "Done", 1);
+    }
+}
@@ -0,0 +1,104 @@
+package com.oursocialnetworks.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render email: TemplateEngine.process mỗi lần gửi (cách cũ) vs EmailTemplateRenderer (đoạn tĩnh dựng sẵn).
+ * engine* dùng template cache của Thymeleaf (như production); engineNoCache* giống khi chạy với devtools (cache tắt).
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Djmh.include=EmailRenderingBenchmark  (-prof gc cho B/op)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailRenderingBenchmark {
+
+    private TemplateEngine engine;
+    private TemplateEngine engineNoCache;
+    private EmailTemplateRenderer renderer;
+    private Map<String, String> tempPasswordVars;
+    private Map<String, String> newAccountVars;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = engine(true);
+        engineNoCache = engine(false);
+        renderer = new EmailTemplateRenderer(engine);
+        tempPasswordVars = EmailTemplateRenderer.variables(
+                "username", "Nguyễn <Văn> A",
+                "email", "user42@example.com",
+                "tempPassword", "aB3$xY9&kL",
+                "changePasswordUrl", "https://example.com/change-password?email=user42@example.com");
+        newAccountVars = EmailTemplateRenderer.variables(
+                "username", "Nguyễn <Văn> A",
+                "email", "user42@example.com",
+                "tempPassword", "aB3$xY9&kL");
+
+        // Hai cách phải cho cùng HTML
+        for (String template : new String[]{"email-temp-password", "email-new-account"}) {
+            Map<String, String> vars = template.equals("email-temp-password") ? tempPasswordVars : newAccountVars;
+            if (!process(engine, template, vars).equals(renderer.render(template, vars))) {
+                throw new IllegalStateException("EmailTemplateRenderer khác TemplateEngine cho " + template);
+            }
+        }
+    }
+
+    private static TemplateEngine engine(boolean cacheable) {
+        // Giống cấu hình Spring Boot: classpath:/templates/*.html, mode HTML
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(cacheable);
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    private static String process(TemplateEngine engine, String template, Map<String, String> vars) {
+        Context context = new Context();
+        vars.forEach(context::setVariable);
+        return engine.process(template, context);
+    }
+
+    @Benchmark
+    public String engineTempPassword() {
+        return process(engine, "email-temp-password", tempPasswordVars);
+    }
+
+    @Benchmark
+    public String engineNoCacheTempPassword() {
+        return process(engineNoCache, "email-temp-password", tempPasswordVars);
+    }
+
+    @Benchmark
+    public String cachedTempPassword() {
+        return renderer.render("email-temp-password", tempPasswordVars);
+    }
+
+    @Benchmark
+    public String engineNewAccount() {
+        return process(engine, "email-new-account", newAccountVars);
+    }
+
+    @Benchmark
+    public String cachedNewAccount() {
+        return renderer.render("email-new-account", newAccountVars);
+    }
+
+    @Benchmark
+    public String otpEmail() {
+        return ResendEmailService.otpEmailHtml("123456", "register");
+    }
+}
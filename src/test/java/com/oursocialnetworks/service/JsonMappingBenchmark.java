@@ -0,0 +1,82 @@
+package com.oursocialnetworks.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oursocialnetworks.dto.UserCard;
+import com.oursocialnetworks.entity.FriendRequest;
+import com.oursocialnetworks.entity.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark Jackson (de)serialize User[] / UserCard[] / FriendRequest[] với ObjectMapper giống RestTemplate dùng.
+ * User[] ~ select=UserProjection.ADMIN, UserCard[] ~ select=UserProjection.CARD (search, danh sách bạn bè).
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Djmh.include=JsonMappingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonMappingBenchmark {
+
+    @Param({"1", "20", "100"})
+    public int rows;
+
+    private ObjectMapper mapper;
+    private User[] users;
+    private UserCard[] cards;
+    private FriendRequest[] requests;
+    private byte[] usersJson;
+    private byte[] cardsJson;
+    private byte[] requestsJson;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        // MappingJackson2HttpMessageConverter mặc định của RestTemplate dựng mapper bằng builder này
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        users = new User[rows];
+        cards = new UserCard[rows];
+        requests = new FriendRequest[rows];
+        for (int i = 0; i < rows; i++) {
+            users[i] = BenchmarkData.user(i);
+            cards[i] = UserCard.of(users[i]);
+            requests[i] = BenchmarkData.friendRequest(i);
+        }
+        usersJson = mapper.writeValueAsBytes(users);
+        cardsJson = mapper.writeValueAsBytes(cards);
+        requestsJson = mapper.writeValueAsBytes(requests);
+    }
+
+    @Benchmark
+    public byte[] serializeUsers() throws Exception {
+        return mapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public User[] deserializeUsers() throws Exception {
+        return mapper.readValue(usersJson, User[].class);
+    }
+
+    @Benchmark
+    public byte[] serializeUserCards() throws Exception {
+        return mapper.writeValueAsBytes(cards);
+    }
+
+    @Benchmark
+    public UserCard[] deserializeUserCards() throws Exception {
+        return mapper.readValue(cardsJson, UserCard[].class);
+    }
+
+    @Benchmark
+    public byte[] serializeFriendRequests() throws Exception {
+        return mapper.writeValueAsBytes(requests);
+    }
+
+    @Benchmark
+    public FriendRequest[] deserializeFriendRequests() throws Exception {
+        return mapper.readValue(requestsJson, FriendRequest[].class);
+    }
+}
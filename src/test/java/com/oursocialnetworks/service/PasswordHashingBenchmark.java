@@ -0,0 +1,75 @@
+package com.oursocialnetworks.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency BCrypt.matches qua PasswordHashingService (pool = số core) khi mọi thread cùng login,
+ * theo từng cost. SampleTime nên JMH in p0.99 cho mỗi strength.
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Djmh.include=PasswordHashingBenchmark
+ *
+ * main() chạy hết các strength rồi gợi ý cost cao nhất có p99 ≤ password.target-p99-ms (mặc định 250):
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.main=com.oursocialnetworks.service.PasswordHashingBenchmark \
+ *     -Djmh.jvm.args=-Dpassword.target-p99-ms=200
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(Threads.MAX)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "loadtest-password";
+
+    @Param({"8", "10", "11", "12", "13"})
+    public int strength;
+
+    private PasswordHashingService service;
+    private String stored;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        // Queue đủ lớn và timeout dài: đo latency bão hòa, không đo reject
+        service = new PasswordHashingService(encoder, 0, 4096, 60_000, Runnable::run);
+        stored = encoder.encode(PASSWORD);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public boolean matchesSaturated() {
+        return service.matches(PASSWORD, stored);
+    }
+
+    public static void main(String[] args) throws Exception {
+        double targetP99 = Double.parseDouble(System.getProperty("password.target-p99-ms", "250"));
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(PasswordHashingBenchmark.class.getSimpleName());
+
+        int recommended = -1;
+        for (RunResult result : new Runner(options.build()).run()) {
+            int strength = Integer.parseInt(result.getParams().getParam("strength"));
+            double p99 = result.getPrimaryResult().getStatistics().getPercentile(99);
+            System.out.printf("strength=%d p99=%.1f ms%n", strength, p99);
+            if (p99 <= targetP99 && strength > recommended) {
+                recommended = strength;
+            }
+        }
+        if (recommended < 0) {
+            System.out.printf("Không strength nào đạt p99 ≤ %.0f ms trên máy này%n", targetP99);
+        } else {
+            System.out.printf("Đề xuất PASSWORD_BCRYPT_STRENGTH=%d (p99 ≤ %.0f ms)%n", recommended, targetP99);
+        }
+    }
+}
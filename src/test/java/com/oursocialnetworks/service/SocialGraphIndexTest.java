@@ -0,0 +1,160 @@
+package com.oursocialnetworks.service;
+
+import com.oursocialnetworks.entity.FriendRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Thứ tự id giảm dần (như order=id.desc của Supabase) qua upsert / remove / replay lúc rebuild
+ */
+class SocialGraphIndexTest {
+
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-00000000000b");
+    private static final UUID CAROL = UUID.fromString("00000000-0000-0000-0000-00000000000c");
+    private static final UUID DAVE = UUID.fromString("00000000-0000-0000-0000-00000000000d");
+
+    private static FriendRequest row(long id, UUID from, UUID to, String statusFr, int status) {
+        return FriendRequest.builder().id(id).idUser(from).friendId(to).statusFr(statusFr).status(status).build();
+    }
+
+    private static SocialGraphIndex loaded(FriendRequest... rows) {
+        SocialGraphIndex index = new SocialGraphIndex(true);
+        index.rebuild(lastId -> lastId == 0 ? rows : new FriendRequest[0]);
+        return index;
+    }
+
+    private static List<Long> ids(FriendRequest[] rows) {
+        return Arrays.stream(rows).map(FriendRequest::getId).toList();
+    }
+
+    @Test
+    void pagesAreOrderedByIdDescendingRegardlessOfInsertOrder() {
+        SocialGraphIndex index = loaded(
+                row(5, BOB, ALICE, "Done", 1),
+                row(2, CAROL, ALICE, "Done", 1),
+                row(9, DAVE, ALICE, "Done", 1));
+        index.apply(row(7, CAROL, ALICE, "Done", 1));
+        index.apply(row(1, BOB, ALICE, "Done", 1));
+
+        FriendRequest[] followers = index.incoming(ALICE, "Done", null, 0, 10);
+        assertThat(ids(followers)).containsExactly(9L, 7L, 5L, 2L, 1L);
+        assertThat(followers[0].getIdUser()).isEqualTo(DAVE);
+        assertThat(followers[0].getFriendId()).isEqualTo(ALICE);
+
+        assertThat(ids(index.outgoing(BOB, "Done", null, 0, 10))).containsExactly(5L, 1L);
+    }
+
+    @Test
+    void statusChangeMovesEdgeAndSoftDeleteRemovesIt() {
+        SocialGraphIndex index = loaded(
+                row(1, BOB, ALICE, "Pending", 1),
+                row(2, CAROL, ALICE, "Pending", 1),
+                row(3, DAVE, ALICE, "Pending", 1));
+
+        index.apply(row(2, CAROL, ALICE, "Done", 1));
+        assertThat(ids(index.incoming(ALICE, "Pending", null, 0, 10))).containsExactly(3L, 1L);
+        assertThat(ids(index.incoming(ALICE, "Done", null, 0, 10))).containsExactly(2L);
+        assertThat(ids(index.outgoing(CAROL, "Done", null, 0, 10))).containsExactly(2L);
+
+        index.apply(row(3, DAVE, ALICE, "Pending", 0));
+        assertThat(ids(index.incoming(ALICE, "Pending", null, 0, 10))).containsExactly(1L);
+        assertThat(index.outgoing(DAVE, "Pending", null, 0, 10)).isEmpty();
+        assertThat(index.between(ALICE, DAVE)).isEmpty();
+        assertThat(index.between(ALICE, CAROL)).extracting(FriendRequest::getId).containsExactly(2L);
+    }
+
+    @Test
+    void offsetAndKeysetPagingSliceTheSortedList() {
+        FriendRequest[] rows = new FriendRequest[10];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = row((i + 1) * 10L, UUID.randomUUID(), ALICE, "Done", 1);
+        }
+        SocialGraphIndex index = loaded(rows);
+
+        assertThat(ids(index.incoming(ALICE, "Done", null, 0, 3))).containsExactly(100L, 90L, 80L);
+        assertThat(ids(index.incoming(ALICE, "Done", null, 3, 3))).containsExactly(10L);
+        assertThat(index.incoming(ALICE, "Done", null, 4, 3)).isEmpty();
+        assertThat(index.incoming(ALICE, "Done", null, Integer.MAX_VALUE, Integer.MAX_VALUE)).isEmpty();
+
+        // Cursor không cần trùng id đang có
+        assertThat(ids(index.incoming(ALICE, "Done", 80L, 0, 3))).containsExactly(70L, 60L, 50L);
+        assertThat(ids(index.incoming(ALICE, "Done", 75L, 0, 3))).containsExactly(70L, 60L, 50L);
+        assertThat(ids(index.incoming(ALICE, "Done", 20L, 0, 3))).containsExactly(10L);
+        assertThat(index.incoming(ALICE, "Done", 10L, 0, 3)).isEmpty();
+
+        // Giá trị không hợp lệ không ném lỗi
+        assertThat(ids(index.incoming(ALICE, "Done", null, -1, 2))).containsExactly(100L, 90L);
+        assertThat(index.incoming(ALICE, "Done", null, 0, 0)).isEmpty();
+        assertThat(index.incoming(ALICE, "Done", null, 0, -5)).isEmpty();
+        assertThat(index.incoming(BOB, "Done", null, 0, 10)).isEmpty();
+    }
+
+    @Test
+    void rebuildReplaysWritesMadeWhileLoading() {
+        SocialGraphIndex index = new SocialGraphIndex(true);
+        FriendRequest[][] pages = {
+                {row(1, BOB, ALICE, "Pending", 1), row(4, CAROL, ALICE, "Done", 1)},
+                {row(6, DAVE, ALICE, "Pending", 1)},
+        };
+        index.rebuild(lastId -> {
+            if (lastId == 0) {
+                // Ghi xen giữa lúc load: chấp nhận id 1, xóa id 6 (trang sau vẫn đọc bản cũ), thêm id 3
+                index.apply(row(1, BOB, ALICE, "Done", 1));
+                index.apply(row(6, DAVE, ALICE, "Pending", 0));
+                index.apply(row(3, DAVE, ALICE, "Done", 1));
+                return pages[0];
+            }
+            return lastId == 4 ? pages[1] : new FriendRequest[0];
+        });
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(ids(index.incoming(ALICE, "Done", null, 0, 10))).containsExactly(4L, 3L, 1L);
+        assertThat(index.incoming(ALICE, "Pending", null, 0, 10)).isEmpty();
+        assertThat(index.between(ALICE, DAVE)).extracting(FriendRequest::getId).containsExactly(3L);
+    }
+
+    @Test
+    void randomUpsertsAndDeletesMatchAPlainMap() {
+        // Đủ nhiều id để bảng cạnh resize vài lần và xóa giữa cụm probe
+        UUID[] users = {ALICE, BOB, CAROL, DAVE};
+        String[] statuses = {"Pending", "Done"};
+        Random random = new Random(42);
+        SocialGraphIndex index = loaded();
+        Map<Long, FriendRequest> expected = new HashMap<>();
+
+        for (int step = 0; step < 20_000; step++) {
+            long id = 1 + random.nextInt(3_000);
+            FriendRequest r = row(id, users[random.nextInt(users.length)], users[random.nextInt(users.length)],
+                    statuses[random.nextInt(statuses.length)], random.nextInt(4) == 0 ? 0 : 1);
+            index.apply(r);
+            if (r.getStatus() == 1) {
+                expected.put(id, r);
+            } else {
+                expected.remove(id);
+            }
+        }
+
+        for (UUID user : users) {
+            for (String statusFr : statuses) {
+                List<Long> incoming = expected.values().stream()
+                        .filter(r -> r.getFriendId().equals(user) && r.getStatusFr().equals(statusFr))
+                        .map(FriendRequest::getId).sorted(Comparator.reverseOrder()).toList();
+                List<Long> outgoing = expected.values().stream()
+                        .filter(r -> r.getIdUser().equals(user) && r.getStatusFr().equals(statusFr))
+                        .map(FriendRequest::getId).sorted(Comparator.reverseOrder()).toList();
+                assertThat(ids(index.incoming(user, statusFr, null, 0, Integer.MAX_VALUE))).isEqualTo(incoming);
+                assertThat(ids(index.outgoing(user, statusFr, null, 0, Integer.MAX_VALUE))).isEqualTo(outgoing);
+            }
+        }
+    }
+}
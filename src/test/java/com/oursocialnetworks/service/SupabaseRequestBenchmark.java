@@ -0,0 +1,80 @@
+package com.oursocialnetworks.service;
+
+import com.oursocialnetworks.config.SupabaseConfig;
+import com.oursocialnetworks.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark dựng URL PostgREST và payload user trước mỗi lần gọi Supabase.
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Djmh.include=SupabaseRequestBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SupabaseRequestBenchmark {
+
+    private static final String BASE_URL = "https://abcdefghijklmnop.supabase.co";
+
+    private SupabaseUserService userService;
+    private FriendsService friendsService;
+    private Map<String, String> userParams;
+    private Map<String, String> friendsParams;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SupabaseConfig config = new SupabaseConfig();
+        SupabaseConfig.DomainConfig friends = new SupabaseConfig.DomainConfig();
+        friends.setUrl(BASE_URL);
+        friends.setTable("list-and-user");
+        friends.setKey("key");
+        Map<String, SupabaseConfig.DomainConfig> domains = new LinkedHashMap<>();
+        domains.put("friends", friends);
+        config.setDomains(domains);
+
+        userService = new SupabaseUserService(config, null, null, null, null, null, null, null, null);
+        friendsService = new FriendsService(config, null, null, null, userService, null, null);
+
+        // Query điển hình: getUserById
+        userParams = new LinkedHashMap<>();
+        userParams.put("id", "eq." + UUID.randomUUID());
+        userParams.put("status", "eq.1");
+        userParams.put("select", UserProjection.ADMIN.select());
+
+        // Query điển hình: getFollowers theo keyset
+        friendsParams = new LinkedHashMap<>();
+        friendsParams.put("friend_id", "eq." + UUID.randomUUID());
+        friendsParams.put("status_fr", "eq.Done");
+        friendsParams.put("status", "eq.1");
+        friendsParams.put("id", "lt.123456");
+        friendsParams.put("order", "id.desc");
+        friendsParams.put("limit", "20");
+
+        user = BenchmarkData.user(0);
+        user.setDateOfBirth(LocalDate.of(1999, 1, 1));
+    }
+
+    @Benchmark
+    public String userBuildUrl() {
+        return userService.buildUrl(BASE_URL, "Users", userParams);
+    }
+
+    @Benchmark
+    public String friendsBuildUrl() {
+        return friendsService.buildUrl(friendsParams);
+    }
+
+    @Benchmark
+    public Map<String, Object> toUserPayload() {
+        return userService.toUserPayload(user);
+    }
+}
@@ -0,0 +1,74 @@
+package com.oursocialnetworks.service;
+
+import com.oursocialnetworks.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserSearchIndex.search trên N user giả lập (tên tiếng Việt không dấu + số), query 1 / 2 / 3 / 6 ký tự và email.
+ * Mục tiêu: p99 dưới 1 ms ở 100k user.
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Djmh.include=UserSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSearchBenchmark {
+
+    private static final String[] FAMILY = {"nguyen", "tran", "le", "pham", "hoang", "huynh", "phan", "vu", "vo", "dang"};
+    private static final String[] GIVEN = {"anh", "minh", "tuan", "linh", "huong", "khanh", "duc", "trang", "nam", "thao",
+            "hieu", "phuong", "long", "ngoc", "quang", "mai", "son", "thu", "bao", "chi"};
+
+    @Param({"10000", "100000"})
+    public int users;
+
+    @Param({"k", "kh", "kha", "khanh1", "tran.tuan", "user42@"})
+    public String query;
+
+    private UserSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        User[] all = new User[users];
+        for (int i = 0; i < users; i++) {
+            String family = FAMILY[random.nextInt(FAMILY.length)];
+            String given = GIVEN[random.nextInt(GIVEN.length)];
+            User user = new User();
+            user.setId(new UUID(0, i + 1));
+            user.setUsername(capitalize(family) + " " + capitalize(given) + " " + i);
+            user.setUsernameLogin(given + i);
+            user.setEmail(family + "." + given + i + "@gmail.com");
+            user.setStatus(1);
+            all[i] = user;
+        }
+        if (users >= 42) {
+            all[41].setEmail("user42@example.com");
+        }
+
+        index = new UserSearchIndex(true);
+        int pageSize = 1000;
+        index.rebuild(lastId -> {
+            int from = lastId == null ? 0 : (int) lastId.getLeastSignificantBits();
+            int to = Math.min(from + pageSize, users);
+            User[] page = new User[Math.max(0, to - from)];
+            System.arraycopy(all, from, page, 0, page.length);
+            return page;
+        });
+        System.out.println(index.footprint());
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    @Benchmark
+    public User[] search() {
+        return index.search(query, 50);
+    }
+}